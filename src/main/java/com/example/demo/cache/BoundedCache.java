@@ -0,0 +1,252 @@
+package com.example.demo.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Size-bounded, least-recently-used cache with a time-to-live per entry.
+ * <p>
+ * Keys are spread over independently locked segments, each an access-ordered
+ * {@link LinkedHashMap} that drops its eldest entry once full, so lookups on
+ * different segments never contend. Loaders run outside the segment lock.
+ * {@code null} values are never cached.
+ */
+public class BoundedCache<K, V> {
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment<K, V>[] segments;
+	private final long ttlNanos;
+	private final LongSupplier nanoClock;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public BoundedCache(int maxSize, long ttlMillis) {
+		this(maxSize, ttlMillis, System::nanoTime);
+	}
+
+	@SuppressWarnings("unchecked")
+	public BoundedCache(int maxSize, long ttlMillis, LongSupplier nanoClock) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be positive");
+		}
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		this.nanoClock = nanoClock;
+		this.segments = new Segment[SEGMENTS];
+		int segmentCapacity = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment<>(segmentCapacity, evictions);
+		}
+	}
+
+	public V getIfPresent(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		long now = nanoClock.getAsLong();
+		synchronized (segment) {
+			Entry<V> entry = segment.get(key);
+			if (entry != null && entry.expiresAt - now > 0) {
+				hits.increment();
+				return entry.value;
+			}
+			if (entry != null) {
+				segment.remove(key);
+				evictions.increment();
+			}
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Returns the cached value, or computes it with {@code loader} and caches
+	 * it when it is not {@code null}.
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V value = getIfPresent(key);
+		if (value == null) {
+			value = loader.apply(key);
+			if (value != null) {
+				put(key, value);
+			}
+		}
+		return value;
+	}
+
+	public void put(K key, V value) {
+		put(key, value, ttlNanos);
+	}
+
+	/**
+	 * Caches {@code value} with its own time-to-live instead of the cache-wide
+	 * one; a non-positive {@code ttlNanos} is a no-op.
+	 */
+	public void put(K key, V value, long ttlNanos) {
+		if (ttlNanos <= 0) {
+			return;
+		}
+		Segment<K, V> segment = segmentFor(key);
+		long expiresAt = nanoClock.getAsLong() + ttlNanos;
+		synchronized (segment) {
+			segment.put(key, new Entry<>(value, expiresAt));
+		}
+	}
+
+	/**
+	 * Caches {@code value} unless a live entry already exists, atomically.
+	 * Returns the existing value, or {@code null} if {@code value} was
+	 * stored.
+	 */
+	public V putIfAbsent(K key, V value) {
+		Segment<K, V> segment = segmentFor(key);
+		long now = nanoClock.getAsLong();
+		synchronized (segment) {
+			Entry<V> entry = segment.get(key);
+			if (entry != null && entry.expiresAt - now > 0) {
+				hits.increment();
+				return entry.value;
+			}
+			misses.increment();
+			segment.put(key, new Entry<>(value, now + ttlNanos));
+			return null;
+		}
+	}
+
+	/**
+	 * Removes the entry for {@code key} only if it still holds
+	 * {@code value}.
+	 */
+	public void remove(K key, V value) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			Entry<V> entry = segment.get(key);
+			if (entry != null && entry.value == value) {
+				segment.remove(key);
+			}
+		}
+	}
+
+	public void invalidate(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			segment.remove(key);
+		}
+	}
+
+	public void invalidateAll() {
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Removes every expired entry. Expired entries are otherwise only dropped
+	 * when they are looked up or pushed out by newer ones.
+	 */
+	public void purgeExpired() {
+		long now = nanoClock.getAsLong();
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				Iterator<Entry<V>> it = segment.values().iterator();
+				while (it.hasNext()) {
+					if (it.next().expiresAt - now <= 0) {
+						it.remove();
+						evictions.increment();
+					}
+				}
+			}
+		}
+	}
+
+	public long size() {
+		long size = 0;
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public long hitCount() {
+		return hits.sum();
+	}
+
+	public long missCount() {
+		return misses.sum();
+	}
+
+	public long evictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Publishes size, hit, miss and eviction counts under the standard
+	 * Micrometer cache meter names, tagged with {@code cacheName}.
+	 */
+	public void bindTo(MeterRegistry registry, String cacheName) {
+		Gauge.builder("cache.size", this, BoundedCache::size)
+			.tag("cache", cacheName)
+			.register(registry);
+		FunctionCounter.builder("cache.gets", hits, LongAdder::doubleValue)
+			.tags("cache", cacheName, "result", "hit")
+			.register(registry);
+		FunctionCounter.builder("cache.gets", misses, LongAdder::doubleValue)
+			.tags("cache", cacheName, "result", "miss")
+			.register(registry);
+		FunctionCounter.builder("cache.evictions", evictions, LongAdder::doubleValue)
+			.tag("cache", cacheName)
+			.register(registry);
+	}
+
+	private Segment<K, V> segmentFor(Object key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (SEGMENTS - 1)];
+	}
+
+	private static final class Entry<V> {
+		private final V value;
+		private final long expiresAt;
+
+		private Entry(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private static final class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+		private final LongAdder evictions;
+
+		private Segment(int capacity, LongAdder evictions) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+			this.evictions = evictions;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+}
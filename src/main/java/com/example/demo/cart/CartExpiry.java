@@ -0,0 +1,279 @@
+package com.example.demo.cart;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.inventory.InventoryLedger;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.CartRepository.ActiveCartRow;
+import com.example.demo.model.persistence.repositories.CartRepository.LineRow;
+import com.example.demo.user.UserIdentity;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Empties carts that have not changed for {@code cart.expiry.ttl-ms} and
+ * releases the stock they were holding.
+ * <p>
+ * Every cart with contents has one entry in a {@link TimingWheel}. Touching
+ * a cart only moves the entry's deadline; when the wheel hands the entry
+ * back, it is either scheduled again for its new deadline or queued for
+ * clearing. Queued carts are cleared a batch at a time with set-based SQL,
+ * and only if the database agrees they have not changed since the cutoff,
+ * so a cart touched while its expiry was in flight keeps its contents. The
+ * {@link CartStore} holds the batch's carts while that happens.
+ */
+@Component
+public class CartExpiry implements MeterBinder {
+
+	private static final Logger logger = LoggerFactory.getLogger(CartExpiry.class);
+
+	private static final int WHEEL_LEVELS = 4;
+	private static final long RETRY_DELAY_MILLIS = 60_000;
+
+	private final CartRepository cartRepository;
+	private final CartStore cartStore;
+	private final InventoryLedger inventoryLedger;
+	private final TransactionTemplate transactionTemplate;
+	private final long ttlMillis;
+	private final int batchSize;
+	private final int maxPerSweep;
+
+	private final Map<Long, Tracked> tracked = new ConcurrentHashMap<>();
+	private final TimingWheel<Tracked> wheel;
+	private final ArrayDeque<Tracked> due = new ArrayDeque<>();
+
+	private final LongAdder clearedCarts = new LongAdder();
+	private final LongAdder releasedUnits = new LongAdder();
+	private final LongAdder failedBatches = new LongAdder();
+	private final LongAdder sweeps = new LongAdder();
+	private final LongAdder sweepNanos = new LongAdder();
+
+	public CartExpiry(CartRepository cartRepository, CartStore cartStore, InventoryLedger inventoryLedger,
+			PlatformTransactionManager transactionManager,
+			@Value("${cart.expiry.ttl-ms:1800000}") long ttlMillis,
+			@Value("${cart.expiry.tick-ms:1000}") long tickMillis,
+			@Value("${cart.expiry.batch-size:500}") int batchSize,
+			@Value("${cart.expiry.max-per-sweep:10000}") int maxPerSweep) {
+		this.cartRepository = cartRepository;
+		this.cartStore = cartStore;
+		this.inventoryLedger = inventoryLedger;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.ttlMillis = ttlMillis;
+		this.batchSize = batchSize;
+		this.maxPerSweep = maxPerSweep;
+		this.wheel = new TimingWheel<>(tickMillis, WHEEL_LEVELS, System.currentTimeMillis());
+	}
+
+	@PostConstruct
+	public void load() {
+		long now = System.currentTimeMillis();
+		for (ActiveCartRow row : cartRepository.findActiveCarts()) {
+			long lastModified = row.getLastModified() == null ? now : row.getLastModified().getTime();
+			schedule(new Tracked(row.getUserId(), row.getCartId(), lastModified + ttlMillis));
+		}
+		logger.info("Cart expiry scheduled for {} carts", tracked.size());
+	}
+
+	/**
+	 * Restarts the user's cart expiry; called whenever the cart changes.
+	 */
+	public void touch(UserIdentity user) {
+		if (user.getCartId() == null) {
+			return;
+		}
+		long deadline = System.currentTimeMillis() + ttlMillis;
+		Tracked existing = tracked.get(user.getCartId());
+		if (existing != null) {
+			existing.deadline = deadline;
+			return;
+		}
+		Tracked created = new Tracked(user.getId(), user.getCartId(), deadline);
+		existing = tracked.putIfAbsent(user.getCartId(), created);
+		if (existing != null) {
+			existing.deadline = deadline;
+			return;
+		}
+		synchronized (wheel) {
+			wheel.schedule(created, deadline);
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${cart.expiry.tick-ms:1000}")
+	public void scheduledSweep() {
+		try {
+			sweep();
+		} catch (RuntimeException e) {
+			logger.error("FAIL: cart expiry sweep", e);
+		}
+	}
+
+	/**
+	 * Clears up to {@code cart.expiry.max-per-sweep} expired carts; the rest
+	 * wait for the next sweep.
+	 */
+	public void sweep() {
+		long start = System.nanoTime();
+		long now = System.currentTimeMillis();
+		List<Tracked> batch = new ArrayList<>(batchSize);
+		int taken = 0;
+		synchronized (wheel) {
+			List<Tracked> fired = new ArrayList<>();
+			wheel.advance(now, fired::add);
+			for (Tracked entry : fired) {
+				if (entry.deadline > now) {
+					wheel.schedule(entry, entry.deadline);
+				} else {
+					due.add(entry);
+				}
+			}
+		}
+		while (taken < maxPerSweep) {
+			batch.clear();
+			synchronized (wheel) {
+				while (batch.size() < batchSize && taken < maxPerSweep && !due.isEmpty()) {
+					batch.add(due.poll());
+					taken++;
+				}
+			}
+			if (batch.isEmpty()) {
+				break;
+			}
+			clear(batch, now);
+		}
+		sweeps.increment();
+		sweepNanos.add(System.nanoTime() - start);
+	}
+
+	private void clear(List<Tracked> batch, long now) {
+		Map<Long, Long> cartIdsByUser = new HashMap<>(batch.size() * 2);
+		for (Tracked entry : batch) {
+			cartIdsByUser.put(entry.userId, entry.cartId);
+		}
+		List<LineRow> released = new ArrayList<>();
+		Set<Long> cleared;
+		try {
+			Instant cutoff = Instant.ofEpochMilli(now - ttlMillis);
+			// the store keeps these carts out of memory until the transaction
+			// is done, so a request cannot refill one that is being emptied
+			cleared = new HashSet<>(cartStore.evictWhile(cartIdsByUser.keySet(), userIds -> {
+				if (userIds.isEmpty()) {
+					return Collections.<Long>emptyList();
+				}
+				List<Long> cartIds = new ArrayList<>(userIds.size());
+				for (Long userId : userIds) {
+					cartIds.add(cartIdsByUser.get(userId));
+				}
+				return transactionTemplate.execute(status -> {
+					List<Long> ids = cartRepository.lockUnchangedSince(cartIds, cutoff);
+					if (!ids.isEmpty()) {
+						released.addAll(cartRepository.findLines(ids));
+						cartRepository.deleteLines(ids);
+						cartRepository.resetTotals(ids);
+					}
+					return ids;
+				});
+			}));
+		} catch (RuntimeException e) {
+			failedBatches.increment();
+			logger.error("FAIL: clearing {} expired carts, will retry", batch.size(), e);
+			synchronized (wheel) {
+				for (Tracked entry : batch) {
+					wheel.schedule(entry, now + RETRY_DELAY_MILLIS);
+				}
+			}
+			return;
+		}
+		for (LineRow line : released) {
+			inventoryLedger.release(line.getItemId(), line.getReserved());
+			releasedUnits.add(line.getReserved());
+		}
+		clearedCarts.add(cleared.size());
+		synchronized (wheel) {
+			for (Tracked entry : batch) {
+				if (!cleared.contains(entry.cartId)) {
+					// changed after all, possibly by a touch this sweep missed
+					entry.deadline = Math.max(entry.deadline, now + ttlMillis);
+					wheel.schedule(entry, entry.deadline);
+				} else if (entry.deadline > now) {
+					wheel.schedule(entry, entry.deadline);
+				} else {
+					tracked.remove(entry.cartId, entry);
+				}
+			}
+		}
+	}
+
+	private void schedule(Tracked entry) {
+		if (tracked.putIfAbsent(entry.cartId, entry) == null) {
+			synchronized (wheel) {
+				wheel.schedule(entry, entry.deadline);
+			}
+		}
+	}
+
+	public int getBacklog() {
+		synchronized (wheel) {
+			return due.size();
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("cart.expiry.tracked", tracked, Map::size)
+			.description("Carts with a pending expiry")
+			.register(registry);
+		Gauge.builder("cart.expiry.backlog", this, CartExpiry::getBacklog)
+			.description("Expired carts waiting to be cleared")
+			.register(registry);
+		FunctionCounter.builder("cart.expiry.cleared", clearedCarts, LongAdder::doubleValue)
+			.description("Expired carts emptied")
+			.register(registry);
+		FunctionCounter.builder("cart.expiry.released", releasedUnits, LongAdder::doubleValue)
+			.description("Reserved units returned to stock by cart expiry")
+			.register(registry);
+		FunctionCounter.builder("cart.expiry.failures", failedBatches, LongAdder::doubleValue)
+			.description("Expiry batches that failed and were rescheduled")
+			.register(registry);
+		FunctionTimer.builder("cart.expiry.sweep", this, e -> e.sweeps.sum(), e -> e.sweepNanos.doubleValue(),
+				TimeUnit.NANOSECONDS)
+			.description("Time spent sweeping expired carts")
+			.register(registry);
+	}
+
+	private static final class Tracked {
+		private final long userId;
+		private final long cartId;
+		private volatile long deadline;
+
+		private Tracked(long userId, long cartId, long deadline) {
+			this.userId = userId;
+			this.cartId = cartId;
+			this.deadline = deadline;
+		}
+	}
+}
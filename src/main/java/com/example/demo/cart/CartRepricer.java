@@ -0,0 +1,212 @@
+package com.example.demo.cart;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.catalog.ItemChangedEvent;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.RepricingProgress;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Carries item price changes into open carts.
+ * <p>
+ * Changed items are collected, latest price winning, and repriced on a
+ * dedicated thread {@code cart.reprice.chunk-size} items at a time. Each
+ * chunk is one short transaction of two set-based updates, one for the
+ * cart lines and one for the totals of the carts holding them, so request
+ * threads never wait on repricing and row locks are held only per chunk.
+ * Carts the write-behind store holds in memory are repriced there as well,
+ * before the chunk and again once it is committed, so a cart loaded from the
+ * database in between does not keep the old prices.
+ */
+@Component
+public class CartRepricer implements MeterBinder {
+
+	private static final Logger logger = LoggerFactory.getLogger(CartRepricer.class);
+
+	private final CartRepository cartRepository;
+	private final ItemRepository itemRepository;
+	private final CartStore cartStore;
+	private final TransactionTemplate transactionTemplate;
+	private final int chunkSize;
+	private final long chunkPauseMillis;
+
+	private final Map<Long, Money> pending = new ConcurrentHashMap<>();
+	private final AtomicBoolean running = new AtomicBoolean();
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "cart-repricer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final LongAdder repricedItems = new LongAdder();
+	private final LongAdder linesUpdated = new LongAdder();
+	private final LongAdder cartsUpdated = new LongAdder();
+	private final LongAdder failedChunks = new LongAdder();
+	private volatile Instant lastCompletedAt;
+
+	public CartRepricer(CartRepository cartRepository, ItemRepository itemRepository, CartStore cartStore,
+			PlatformTransactionManager transactionManager,
+			@Value("${cart.reprice.chunk-size:1000}") int chunkSize,
+			@Value("${cart.reprice.chunk-pause-ms:5}") long chunkPauseMillis) {
+		this.cartRepository = cartRepository;
+		this.itemRepository = itemRepository;
+		this.cartStore = cartStore;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.chunkSize = chunkSize;
+		this.chunkPauseMillis = chunkPauseMillis;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onItemChanged(ItemChangedEvent event) {
+		if (event.isPriceChanged()) {
+			pending.put(event.getItem().getId(), event.getItem().getPrice());
+			start();
+		}
+	}
+
+	/**
+	 * Reprices carts for every item, for prices changed without going
+	 * through JPA.
+	 */
+	public void repriceAll() {
+		for (ItemRepository.PriceRow row : itemRepository.findAllPrices()) {
+			pending.put(row.getId(), Money.of(row.getPrice()));
+		}
+		start();
+	}
+
+	public RepricingProgress progress() {
+		return new RepricingProgress(running.get(), pending.size(), repricedItems.sum(), linesUpdated.sum(),
+				cartsUpdated.sum(), failedChunks.sum(), lastCompletedAt);
+	}
+
+	/**
+	 * Picks up items left behind by a failed chunk.
+	 */
+	@Scheduled(fixedDelayString = "${cart.reprice.retry-interval-ms:60000}")
+	public void retryPending() {
+		if (!pending.isEmpty()) {
+			start();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	private void start() {
+		if (running.compareAndSet(false, true)) {
+			try {
+				executor.execute(this::drain);
+			} catch (RejectedExecutionException e) {
+				// shutting down
+				running.set(false);
+			}
+		}
+	}
+
+	private void drain() {
+		boolean failed = false;
+		try {
+			while (!pending.isEmpty()) {
+				if (!reprice(takeChunk())) {
+					failed = true;
+					break;
+				}
+				if (chunkPauseMillis > 0 && !pending.isEmpty()) {
+					Thread.sleep(chunkPauseMillis);
+				}
+			}
+			if (!failed) {
+				lastCompletedAt = Instant.now();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failed = true;
+		} finally {
+			running.set(false);
+		}
+		// a change may have arrived after the loop saw nothing pending
+		if (!failed && !pending.isEmpty()) {
+			start();
+		}
+	}
+
+	private Map<Long, Money> takeChunk() {
+		Map<Long, Money> chunk = new HashMap<>();
+		Iterator<Long> it = pending.keySet().iterator();
+		while (chunk.size() < chunkSize && it.hasNext()) {
+			Long itemId = it.next();
+			Money price = pending.remove(itemId);
+			if (price != null) {
+				chunk.put(itemId, price);
+			}
+		}
+		return chunk;
+	}
+
+	private boolean reprice(Map<Long, Money> chunk) {
+		try {
+			cartStore.reprice(chunk);
+			int[] counts = transactionTemplate.execute(status -> new int[] {
+				cartRepository.repriceLines(chunk.keySet()),
+				cartRepository.recomputeTotals(chunk.keySet()) });
+			cartStore.reprice(chunk);
+			repricedItems.add(chunk.size());
+			linesUpdated.add(counts[0]);
+			cartsUpdated.add(counts[1]);
+			return true;
+		} catch (RuntimeException e) {
+			failedChunks.increment();
+			logger.error("FAIL: repricing carts for {} items, will retry", chunk.size(), e);
+			chunk.forEach(pending::putIfAbsent);
+			return false;
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("cart.reprice.pending", pending, Map::size)
+			.description("Items whose new price has not reached carts yet")
+			.register(registry);
+		FunctionCounter.builder("cart.reprice.items", repricedItems, LongAdder::doubleValue)
+			.description("Items whose price was carried into carts")
+			.register(registry);
+		FunctionCounter.builder("cart.reprice.lines", linesUpdated, LongAdder::doubleValue)
+			.description("Cart lines moved to a new price")
+			.register(registry);
+		FunctionCounter.builder("cart.reprice.failures", failedChunks, LongAdder::doubleValue)
+			.description("Repricing chunks that failed and were requeued")
+			.register(registry);
+	}
+}
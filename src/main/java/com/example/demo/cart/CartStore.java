@@ -0,0 +1,50 @@
+package com.example.demo.cart;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.user.UserIdentity;
+
+/**
+ * Access point for the live state of a user's cart. Controllers go through
+ * this instead of {@code CartRepository} so the persistence strategy can be
+ * switched with the {@code cart.store.mode} property.
+ */
+public interface CartStore {
+
+	/**
+	 * Returns the latest state of the user's cart, including changes that
+	 * have not been written to the database yet.
+	 */
+	Cart read(UserIdentity user);
+
+	/**
+	 * Applies {@code mutation} to the user's cart and returns the resulting
+	 * state. Mutations for the same user are applied one at a time. A
+	 * mutation may be run again on a freshly loaded cart if its first result
+	 * could not be saved, so it must not accumulate state across runs.
+	 */
+	Cart update(UserIdentity user, Consumer<Cart> mutation);
+
+	/**
+	 * Writes any pending changes to the given users' carts, forgets them and
+	 * runs {@code action} with the ids of the users whose cart is now only in
+	 * the database. Those carts cannot be loaded or changed through the store
+	 * until the action returns, so it may change them with SQL behind the
+	 * store's back.
+	 */
+	default <T> T evictWhile(Collection<Long> userIds, Function<Collection<Long>, T> action) {
+		return action.apply(userIds);
+	}
+
+	/**
+	 * Applies new unit prices, keyed by item id, to carts held outside the
+	 * database. Carts in the database are repriced with SQL.
+	 */
+	default void reprice(Map<Long, Money> unitPrices) {
+	}
+}
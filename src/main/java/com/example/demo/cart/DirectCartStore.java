@@ -0,0 +1,64 @@
+package com.example.demo.cart;
+
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.user.UserIdentity;
+
+/**
+ * Default store: every change is saved through {@link CartRepository} before
+ * the request returns.
+ * <p>
+ * Load, mutation and save run in one transaction. A save that finds the cart
+ * changed since it was loaded, by another request or by {@link CartRepricer},
+ * fails on the cart's version and is tried again from a fresh load.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store.mode", havingValue = "direct", matchIfMissing = true)
+public class DirectCartStore implements CartStore {
+
+	private static final int MAX_ATTEMPTS = 3;
+
+	private final CartRepository cartRepository;
+	private final TransactionTemplate transactionTemplate;
+
+	public DirectCartStore(CartRepository cartRepository, PlatformTransactionManager transactionManager) {
+		this.cartRepository = cartRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	@Override
+	public Cart read(UserIdentity user) {
+		return load(cartRepository, user);
+	}
+
+	@Override
+	public Cart update(UserIdentity user, Consumer<Cart> mutation) {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return transactionTemplate.execute(status -> {
+					Cart cart = load(cartRepository, user);
+					mutation.accept(cart);
+					cartRepository.save(cart);
+					return cart;
+				});
+			} catch (ConcurrencyFailureException e) {
+				if (attempt == MAX_ATTEMPTS) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	static Cart load(CartRepository cartRepository, UserIdentity user) {
+		return cartRepository.findById(user.getCartId())
+			.orElseThrow(() -> new IllegalStateException("No cart for user " + user.getUsername()));
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.demo.cart;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: scheduling is O(1) whatever the number of
+ * pending timeouts, and advancing the clock only touches the slots whose
+ * time has come.
+ * <p>
+ * Level 0 has one slot per tick; each level above covers a whole revolution
+ * of the level below in each of its slots. A timeout sits in the lowest
+ * level whose span reaches its deadline and cascades down as the clock
+ * approaches it. Timeouts further out than the top level can see are parked
+ * there and placed again each time their slot comes round.
+ * <p>
+ * Not thread-safe.
+ */
+final class TimingWheel<T> {
+
+	private static final int BITS = 6;
+	private static final int SLOTS = 1 << BITS;
+	private static final int MASK = SLOTS - 1;
+
+	private final long tickMillis;
+	private final ArrayDeque<Node<T>>[][] wheels;
+	private final ArrayDeque<Node<T>> overdue = new ArrayDeque<>();
+	private long currentTick;
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	TimingWheel(long tickMillis, int levels, long startMillis) {
+		if (tickMillis <= 0 || levels < 1 || levels * BITS > 62) {
+			throw new IllegalArgumentException("tickMillis must be positive and levels between 1 and " + 62 / BITS);
+		}
+		this.tickMillis = tickMillis;
+		this.wheels = new ArrayDeque[levels][SLOTS];
+		this.currentTick = startMillis / tickMillis;
+	}
+
+	/**
+	 * Schedules {@code value} to come out of {@link #advance} once the clock
+	 * reaches {@code deadlineMillis}.
+	 */
+	void schedule(T value, long deadlineMillis) {
+		// round up so nothing fires before its deadline
+		place(new Node<>(value, (deadlineMillis + tickMillis - 1) / tickMillis));
+		size++;
+	}
+
+	/**
+	 * Moves the clock to {@code nowMillis} and hands every timeout that is
+	 * due to {@code expired}, in no particular order.
+	 */
+	void advance(long nowMillis, Consumer<T> expired) {
+		drain(overdue, expired);
+		long targetTick = nowMillis / tickMillis;
+		while (currentTick < targetTick) {
+			currentTick++;
+			for (int level = wheels.length - 1; level > 0; level--) {
+				if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+					cascade(level, (int) ((currentTick >>> (BITS * level)) & MASK));
+				}
+			}
+			ArrayDeque<Node<T>> slot = wheels[0][(int) (currentTick & MASK)];
+			if (slot != null) {
+				wheels[0][(int) (currentTick & MASK)] = null;
+				drain(slot, expired);
+			}
+			// cascading can land timeouts due on exactly this tick
+			drain(overdue, expired);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void drain(ArrayDeque<Node<T>> nodes, Consumer<T> expired) {
+		Node<T> node;
+		while ((node = nodes.poll()) != null) {
+			if (node.deadlineTick <= currentTick) {
+				size--;
+				expired.accept(node.value);
+			} else {
+				place(node);
+			}
+		}
+	}
+
+	private void cascade(int level, int index) {
+		ArrayDeque<Node<T>> slot = wheels[level][index];
+		if (slot == null) {
+			return;
+		}
+		wheels[level][index] = null;
+		for (Node<T> node : slot) {
+			place(node);
+		}
+	}
+
+	private void place(Node<T> node) {
+		long delta = node.deadlineTick - currentTick;
+		if (delta <= 0) {
+			overdue.add(node);
+			return;
+		}
+		int level = 0;
+		while (level < wheels.length - 1 && delta >= 1L << (BITS * (level + 1))) {
+			level++;
+		}
+		int index = (int) ((node.deadlineTick >>> (BITS * level)) & MASK);
+		ArrayDeque<Node<T>> slot = wheels[level][index];
+		if (slot == null) {
+			slot = new ArrayDeque<>();
+			wheels[level][index] = slot;
+		}
+		slot.add(node);
+	}
+
+	private static final class Node<T> {
+		private final T value;
+		private final long deadlineTick;
+
+		private Node(T value, long deadlineTick) {
+			this.value = value;
+			this.deadlineTick = deadlineTick;
+		}
+	}
+}
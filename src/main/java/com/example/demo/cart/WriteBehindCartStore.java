@@ -0,0 +1,402 @@
+package com.example.demo.cart;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.user.UserIdentity;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Keeps live carts in memory and writes dirty ones back to the database in
+ * batches, on a fixed schedule, whenever too many carts are dirty, and on
+ * shutdown. Enabled with {@code cart.store.mode=write-behind}.
+ * <p>
+ * Carts are keyed by user id. Changes to carts that hash to the same stripe
+ * are serialized on that stripe's lock; everything handed out is a copy, so
+ * callers never observe a cart while it is being mutated or flushed.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store.mode", havingValue = "write-behind")
+public class WriteBehindCartStore implements CartStore, MeterBinder {
+
+	private static final Logger logger = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+	private static final int STRIPES = 64;
+
+	private final CartRepository cartRepository;
+	private final int maxDirtyCarts;
+	private final int flushBatchSize;
+	private final long idleEvictionMillis;
+
+	private final Map<Long, Entry> carts = new ConcurrentHashMap<>();
+	private final Set<Long> dirtyUserIds = ConcurrentHashMap.newKeySet();
+	private final Object[] stripes = new Object[STRIPES];
+	// bumped under the stripe lock whenever a cart leaves memory, so a load
+	// that raced an eviction is not mistaken for the current contents
+	private final long[] evictions = new long[STRIPES];
+	// bumped before every repricing pass, so a load that may have read the
+	// old prices is not kept once the pass has gone by
+	private final AtomicLong reprices = new AtomicLong();
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	private final LongAdder flushedCarts = new LongAdder();
+	private final LongAdder failedFlushes = new LongAdder();
+
+	public WriteBehindCartStore(CartRepository cartRepository,
+			@Value("${cart.store.max-dirty-carts:10000}") int maxDirtyCarts,
+			@Value("${cart.store.flush-batch-size:200}") int flushBatchSize,
+			@Value("${cart.store.idle-eviction-ms:600000}") long idleEvictionMillis) {
+		this.cartRepository = cartRepository;
+		this.maxDirtyCarts = maxDirtyCarts;
+		this.flushBatchSize = flushBatchSize;
+		this.idleEvictionMillis = idleEvictionMillis;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+	}
+
+	@Override
+	public Cart read(UserIdentity user) {
+		synchronized (stripeFor(user.getId())) {
+			Entry entry = carts.get(user.getId());
+			if (entry != null) {
+				entry.lastAccess = System.currentTimeMillis();
+				return entry.cart.copy();
+			}
+		}
+		return DirectCartStore.load(cartRepository, user);
+	}
+
+	@Override
+	public Cart update(UserIdentity user, Consumer<Cart> mutation) {
+		int stripe = stripeIndex(user.getId());
+		Cart loaded = null;
+		long evictionsAtLoad = 0;
+		long repricesAtLoad = 0;
+		Cart snapshot;
+		while (true) {
+			synchronized (stripes[stripe]) {
+				Entry entry = carts.get(user.getId());
+				if (entry == null && loaded != null && evictions[stripe] == evictionsAtLoad) {
+					entry = new Entry(loaded);
+					carts.put(user.getId(), entry);
+					// checked after the put, so a pass that started since is
+					// either seen here or finds the entry
+					if (reprices.get() != repricesAtLoad) {
+						carts.remove(user.getId());
+						entry = null;
+					}
+				}
+				if (entry != null) {
+					mutation.accept(entry.cart);
+					long now = System.currentTimeMillis();
+					if (entry.dirtySince == 0) {
+						entry.dirtySince = now;
+						dirtyUserIds.add(user.getId());
+					}
+					entry.lastAccess = now;
+					snapshot = entry.cart.copy();
+					break;
+				}
+				evictionsAtLoad = evictions[stripe];
+				repricesAtLoad = reprices.get();
+			}
+			// the query runs without the stripe held, so a slow load only
+			// delays this user
+			loaded = DirectCartStore.load(cartRepository, user).copy();
+		}
+		if (dirtyUserIds.size() > maxDirtyCarts) {
+			flush();
+		}
+		return snapshot;
+	}
+
+	@Scheduled(fixedDelayString = "${cart.store.flush-interval-ms:2000}")
+	public void scheduledFlush() {
+		try {
+			flush();
+			evictIdleCarts();
+		} catch (RuntimeException e) {
+			logger.error("FAIL: scheduled cart flush", e);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flush();
+		logger.info("SUCCESS: cart store flushed on shutdown, {} carts written in total", flushedCarts.sum());
+	}
+
+	/**
+	 * Writes every cart that is dirty at the time of the call. Carts that
+	 * fail to save are marked dirty again and retried on the next flush.
+	 */
+	public void flush() {
+		flushLock.lock();
+		try {
+			List<PendingWrite> batch = new ArrayList<>(flushBatchSize);
+			for (Long userId : dirtyUserIds) {
+				synchronized (stripeFor(userId)) {
+					dirtyUserIds.remove(userId);
+					Entry entry = carts.get(userId);
+					if (entry == null || entry.dirtySince == 0) {
+						continue;
+					}
+					batch.add(new PendingWrite(userId, entry.dirtySince, entry.cart.copy()));
+					entry.dirtySince = 0;
+				}
+				if (batch.size() >= flushBatchSize) {
+					write(batch);
+					batch.clear();
+				}
+			}
+			if (!batch.isEmpty()) {
+				write(batch);
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private void write(List<PendingWrite> batch) {
+		List<Cart> snapshots = new ArrayList<>(batch.size());
+		for (PendingWrite write : batch) {
+			snapshots.add(write.snapshot);
+		}
+		List<Cart> saved;
+		try {
+			saved = cartRepository.saveAll(snapshots);
+			flushedCarts.add(batch.size());
+		} catch (RuntimeException e) {
+			failedFlushes.increment();
+			logger.error("FAIL: flushing {} carts, will retry", batch.size(), e);
+			for (PendingWrite write : batch) {
+				synchronized (stripeFor(write.userId)) {
+					Entry entry = carts.get(write.userId);
+					if (entry != null && (entry.dirtySince == 0 || entry.dirtySince > write.dirtySince)) {
+						entry.dirtySince = write.dirtySince;
+					}
+					dirtyUserIds.add(write.userId);
+				}
+			}
+			if (e instanceof ConcurrencyFailureException) {
+				adoptDatabaseVersions(batch);
+			}
+			return;
+		}
+		for (int i = 0; i < saved.size() && i < batch.size(); i++) {
+			setVersion(batch.get(i).userId, saved.get(i).getVersion());
+		}
+	}
+
+	/**
+	 * The copies held here already carry repricing, and carts being expired
+	 * are not held at all, so after a set-based update moved a version the
+	 * copy in memory is still the one to keep: it is written over the row
+	 * with the row's current version on the next flush.
+	 */
+	private void adoptDatabaseVersions(List<PendingWrite> batch) {
+		Map<Long, Long> userIds = new HashMap<>(batch.size() * 2);
+		for (PendingWrite write : batch) {
+			userIds.put(write.snapshot.getId(), write.userId);
+		}
+		try {
+			for (CartRepository.VersionRow row : cartRepository.findVersions(userIds.keySet())) {
+				setVersion(userIds.get(row.getCartId()), row.getVersion());
+			}
+		} catch (RuntimeException e) {
+			logger.error("FAIL: reading versions of {} carts", batch.size(), e);
+		}
+	}
+
+	private void setVersion(Long userId, Long version) {
+		if (userId == null) {
+			return;
+		}
+		synchronized (stripeFor(userId)) {
+			Entry entry = carts.get(userId);
+			if (entry != null) {
+				entry.cart.setVersion(version);
+			}
+		}
+	}
+
+	/**
+	 * Holds the flush lock and the stripes of the given users while the
+	 * action runs, so no flush can write an older copy over what the action
+	 * does and no request can load a cart the action is about to change.
+	 * Carts changed after the flush below are still dirty; they stay in
+	 * memory and are left out of the action.
+	 */
+	@Override
+	public <T> T evictWhile(Collection<Long> userIds, Function<Collection<Long>, T> action) {
+		flushLock.lock();
+		try {
+			flush();
+			int[] held = userIds.stream().mapToInt(WriteBehindCartStore::stripeIndex).distinct().sorted().toArray();
+			return holding(held, 0, () -> {
+				List<Long> evicted = new ArrayList<>(userIds.size());
+				for (Long userId : userIds) {
+					Entry entry = carts.get(userId);
+					if (entry == null) {
+						evicted.add(userId);
+					} else if (entry.dirtySince == 0) {
+						carts.remove(userId);
+						evictions[stripeIndex(userId)]++;
+						evicted.add(userId);
+					}
+				}
+				return action.apply(evicted);
+			});
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	// stripes are always taken in index order, so two callers cannot deadlock
+	private <T> T holding(int[] stripeIndexes, int next, Supplier<T> action) {
+		if (next == stripeIndexes.length) {
+			return action.get();
+		}
+		synchronized (stripes[stripeIndexes[next]]) {
+			return holding(stripeIndexes, next + 1, action);
+		}
+	}
+
+	/**
+	 * Repriced carts are marked dirty so the new prices are written with
+	 * the next flush instead of being overwritten by it. Carts being loaded
+	 * while this runs are loaded again.
+	 */
+	@Override
+	public void reprice(Map<Long, Money> unitPrices) {
+		reprices.incrementAndGet();
+		for (Map.Entry<Long, Entry> candidate : carts.entrySet()) {
+			synchronized (stripeFor(candidate.getKey())) {
+				Entry entry = candidate.getValue();
+				if (entry.cart.reprice(unitPrices) && entry.dirtySince == 0) {
+					entry.dirtySince = System.currentTimeMillis();
+					dirtyUserIds.add(candidate.getKey());
+				}
+			}
+		}
+	}
+
+	private void evictIdleCarts() {
+		long cutoff = System.currentTimeMillis() - idleEvictionMillis;
+		Iterator<Map.Entry<Long, Entry>> it = carts.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Long, Entry> candidate = it.next();
+			int stripe = stripeIndex(candidate.getKey());
+			synchronized (stripes[stripe]) {
+				Entry entry = candidate.getValue();
+				if (entry.dirtySince == 0 && entry.lastAccess < cutoff) {
+					it.remove();
+					evictions[stripe]++;
+				}
+			}
+		}
+	}
+
+	public int getDirtyCount() {
+		return dirtyUserIds.size();
+	}
+
+	/**
+	 * Age in milliseconds of the oldest change that has not reached the
+	 * database yet, or zero when nothing is pending.
+	 */
+	public long getFlushLagMillis() {
+		long oldest = Long.MAX_VALUE;
+		for (Long userId : dirtyUserIds) {
+			Entry entry = carts.get(userId);
+			long dirtySince = entry == null ? 0 : entry.dirtySince;
+			if (dirtySince != 0 && dirtySince < oldest) {
+				oldest = dirtySince;
+			}
+		}
+		return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("cart.store.dirty", this, WriteBehindCartStore::getDirtyCount)
+			.description("Carts changed in memory but not yet written")
+			.register(registry);
+		Gauge.builder("cart.store.cached", carts, Map::size)
+			.description("Carts held in memory")
+			.register(registry);
+		TimeGauge.builder("cart.store.flush.lag", this, TimeUnit.MILLISECONDS, WriteBehindCartStore::getFlushLagMillis)
+			.description("Age of the oldest unflushed cart change")
+			.register(registry);
+		FunctionCounter.builder("cart.store.flushed", flushedCarts, LongAdder::doubleValue)
+			.description("Carts written to the database")
+			.register(registry);
+		FunctionCounter.builder("cart.store.flush.failures", failedFlushes, LongAdder::doubleValue)
+			.description("Flush batches that failed and were requeued")
+			.register(registry);
+	}
+
+	private Object stripeFor(long userId) {
+		return stripes[stripeIndex(userId)];
+	}
+
+	private static int stripeIndex(long userId) {
+		int h = Long.hashCode(userId);
+		h ^= (h >>> 16);
+		return h & (STRIPES - 1);
+	}
+
+	private static final class Entry {
+		private final Cart cart;
+		private volatile long dirtySince;
+		private long lastAccess;
+
+		private Entry(Cart cart) {
+			this.cart = cart;
+		}
+	}
+
+	private static final class PendingWrite {
+		private final long userId;
+		private final long dirtySince;
+		private final Cart snapshot;
+
+		private PendingWrite(long userId, long dirtySince, Cart snapshot) {
+			this.userId = userId;
+			this.dirtySince = dirtySince;
+			this.snapshot = snapshot;
+		}
+	}
+}
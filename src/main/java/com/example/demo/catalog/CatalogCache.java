@@ -0,0 +1,115 @@
+package com.example.demo.catalog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Read-through cache in front of {@link ItemRepository} for lookups by id and
+ * by name. Entries are evicted once the transaction that wrote an item has
+ * committed. A load that overlaps such an eviction may have read the old row,
+ * so its result is returned to the caller but not cached.
+ */
+@Component
+public class CatalogCache implements MeterBinder {
+
+	private final ItemRepository itemRepository;
+	private final BoundedCache<Long, Item> itemsById;
+	private final BoundedCache<String, List<Item>> itemsByName;
+	private final AtomicLong invalidations = new AtomicLong();
+
+	public CatalogCache(ItemRepository itemRepository,
+			@Value("${catalog.cache.max-size:10000}") int maxSize,
+			@Value("${catalog.cache.ttl-ms:600000}") long ttlMillis) {
+		this.itemRepository = itemRepository;
+		this.itemsById = new BoundedCache<>(maxSize, ttlMillis);
+		this.itemsByName = new BoundedCache<>(maxSize, ttlMillis);
+	}
+
+	public Optional<Item> findById(Long id) {
+		return Optional.ofNullable(load(itemsById, id, k -> itemRepository.findById(k).orElse(null)));
+	}
+
+	/**
+	 * Looks up every id, loading the ones that are not cached with a single
+	 * query. Ids that do not exist are absent from the result.
+	 */
+	public Map<Long, Item> findAllById(Collection<Long> ids) {
+		Map<Long, Item> found = new HashMap<>();
+		List<Long> missing = new ArrayList<>();
+		for (Long id : ids) {
+			Item item = itemsById.getIfPresent(id);
+			if (item != null) {
+				found.put(id, item);
+			} else {
+				missing.add(id);
+			}
+		}
+		if (!missing.isEmpty()) {
+			long generation = invalidations.get();
+			List<Item> loaded = itemRepository.findAllById(missing);
+			boolean current = generation == invalidations.get();
+			for (Item item : loaded) {
+				if (current) {
+					itemsById.put(item.getId(), item);
+				}
+				found.put(item.getId(), item);
+			}
+		}
+		return found;
+	}
+
+	public List<Item> findByName(String name) {
+		return load(itemsByName, name, k -> Collections.unmodifiableList(new ArrayList<>(itemRepository.findByName(k))));
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onItemChanged(ItemChangedEvent event) {
+		invalidations.incrementAndGet();
+		itemsById.invalidate(event.getItem().getId());
+		// Names are not unique and may have changed, and item writes are rare.
+		itemsByName.invalidateAll();
+	}
+
+	private <K, V> V load(BoundedCache<K, V> cache, K key, Function<K, V> loader) {
+		V value = cache.getIfPresent(key);
+		if (value == null) {
+			long generation = invalidations.get();
+			value = loader.apply(key);
+			if (value != null && generation == invalidations.get()) {
+				cache.put(key, value);
+			}
+		}
+		return value;
+	}
+
+	@Scheduled(fixedDelayString = "${catalog.cache.purge-interval-ms:60000}")
+	public void purgeExpired() {
+		itemsById.purgeExpired();
+		itemsByName.purgeExpired();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		itemsById.bindTo(registry, "catalog.itemsById");
+		itemsByName.bindTo(registry, "catalog.itemsByName");
+	}
+}
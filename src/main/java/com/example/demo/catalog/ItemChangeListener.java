@@ -0,0 +1,41 @@
+package com.example.demo.catalog;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.example.demo.model.persistence.Item;
+
+/**
+ * JPA entity listener that turns item writes into {@link ItemChangedEvent}s.
+ * Hibernate obtains it from the Spring context, which injects the publisher.
+ */
+public class ItemChangeListener {
+
+	@Autowired
+	private ApplicationEventPublisher publisher;
+
+	@PostPersist
+	public void created(Item item) {
+		publish(new ItemChangedEvent(item, ItemChangedEvent.Type.CREATED));
+	}
+
+	@PostUpdate
+	public void updated(Item item) {
+		publish(new ItemChangedEvent(item, ItemChangedEvent.Type.UPDATED, item.getPersistedPrice()));
+	}
+
+	@PostRemove
+	public void deleted(Item item) {
+		publish(new ItemChangedEvent(item, ItemChangedEvent.Type.DELETED));
+	}
+
+	private void publish(ItemChangedEvent event) {
+		if (publisher != null) {
+			publisher.publishEvent(event);
+		}
+	}
+}
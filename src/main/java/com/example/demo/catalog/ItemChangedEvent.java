@@ -0,0 +1,48 @@
+package com.example.demo.catalog;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
+
+/**
+ * Published whenever an {@link Item} row is inserted, updated or deleted
+ * through JPA.
+ */
+public class ItemChangedEvent {
+
+	public enum Type {
+		CREATED, UPDATED, DELETED
+	}
+
+	private final Item item;
+	private final Type type;
+	private final Money previousPrice;
+
+	public ItemChangedEvent(Item item, Type type) {
+		this(item, type, null);
+	}
+
+	public ItemChangedEvent(Item item, Type type, Money previousPrice) {
+		this.item = item;
+		this.type = type;
+		this.previousPrice = previousPrice;
+	}
+
+	public Item getItem() {
+		return item;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Price before this update, when known.
+	 */
+	public Money getPreviousPrice() {
+		return previousPrice;
+	}
+
+	public boolean isPriceChanged() {
+		return type == Type.UPDATED && previousPrice != null && !previousPrice.equals(item.getPrice());
+	}
+}
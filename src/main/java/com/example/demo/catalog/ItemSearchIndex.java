@@ -0,0 +1,242 @@
+package com.example.demo.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+
+/**
+ * In-memory inverted index over item names and descriptions.
+ * <p>
+ * Tokens are kept in sorted maps so a query term can match whole tokens or,
+ * for autocomplete, any token it is a prefix of. The index is loaded once at
+ * startup and then kept current from {@link ItemChangedEvent}s; searches never
+ * touch the database.
+ * <p>
+ * A single-term query reads at most {@code search.max-postings-per-term}
+ * postings per field, exact token first, so a one-letter autocomplete prefix
+ * costs the same as a rare word. Past the exact token every match scores the
+ * same, so the cap drops equally ranked prefix matches in token order.
+ * Queries with several terms are not capped: a match must contain every
+ * term, and capping each term before intersecting would drop items that
+ * match all of them. Only the best {@code offset + limit} matches are kept
+ * while ranking.
+ */
+@Component
+public class ItemSearchIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(ItemSearchIndex.class);
+
+	private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+	private static final int LOAD_BATCH_SIZE = 1000;
+
+	private static final double NAME_EXACT = 4;
+	private static final double NAME_PREFIX = 2;
+	private static final double DESCRIPTION_EXACT = 1;
+	private static final double DESCRIPTION_PREFIX = 0.5;
+
+	private static final Comparator<Map.Entry<Long, Double>> BEST_FIRST =
+			Comparator.<Map.Entry<Long, Double>>comparingDouble(Map.Entry::getValue).reversed()
+				.thenComparing(Map.Entry::getKey);
+
+	private final ItemRepository itemRepository;
+	private final int maxPostingsPerTerm;
+
+	private final NavigableMap<String, Set<Long>> nameTokens = new ConcurrentSkipListMap<>();
+	private final NavigableMap<String, Set<Long>> descriptionTokens = new ConcurrentSkipListMap<>();
+	private final Map<Long, Item> documents = new ConcurrentHashMap<>();
+
+	public ItemSearchIndex(ItemRepository itemRepository,
+			@Value("${search.max-postings-per-term:5000}") int maxPostingsPerTerm) {
+		this.itemRepository = itemRepository;
+		this.maxPostingsPerTerm = maxPostingsPerTerm;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		long afterId = Long.MIN_VALUE;
+		int indexed = 0;
+		PageRequest batch = PageRequest.of(0, LOAD_BATCH_SIZE);
+		List<Item> items;
+		do {
+			items = itemRepository.findPageOrderById(afterId, Money.ZERO, Money.ofMinor(Long.MAX_VALUE), batch);
+			for (Item item : items) {
+				index(item);
+				afterId = item.getId();
+			}
+			indexed += items.size();
+		} while (items.size() == LOAD_BATCH_SIZE);
+		logger.info("SUCCESS: search index built with {} items", indexed);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onItemChanged(ItemChangedEvent event) {
+		if (event.getType() == ItemChangedEvent.Type.DELETED) {
+			remove(event.getItem().getId());
+		} else {
+			index(event.getItem());
+		}
+	}
+
+	public synchronized void index(Item item) {
+		remove(item.getId());
+		Item document = new Item();
+		document.setId(item.getId());
+		document.setName(item.getName());
+		document.setDescription(item.getDescription());
+		document.setPrice(item.getPrice());
+		documents.put(document.getId(), document);
+		addPostings(nameTokens, tokenize(document.getName()), document.getId());
+		addPostings(descriptionTokens, tokenize(document.getDescription()), document.getId());
+	}
+
+	public synchronized void remove(Long itemId) {
+		Item previous = documents.remove(itemId);
+		if (previous != null) {
+			removePostings(nameTokens, tokenize(previous.getName()), itemId);
+			removePostings(descriptionTokens, tokenize(previous.getDescription()), itemId);
+		}
+	}
+
+	/**
+	 * Returns items matching every term of {@code query}, best match first.
+	 * Each term scores highest as a whole word of the name, then as a prefix
+	 * of a name word, then the same for the description.
+	 */
+	public List<Item> search(String query, int offset, int limit) {
+		Set<String> terms = tokenize(query);
+		if (terms.isEmpty()) {
+			return Collections.emptyList();
+		}
+		int maxPostings = terms.size() == 1 ? maxPostingsPerTerm : Integer.MAX_VALUE;
+		Map<Long, Double> scores = null;
+		for (String term : terms) {
+			Map<Long, Double> termScores = new HashMap<>();
+			collect(nameTokens, term, NAME_EXACT, NAME_PREFIX, maxPostings, termScores);
+			collect(descriptionTokens, term, DESCRIPTION_EXACT, DESCRIPTION_PREFIX, maxPostings, termScores);
+			if (scores == null) {
+				scores = termScores;
+			} else {
+				scores.keySet().retainAll(termScores.keySet());
+				for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+					entry.setValue(entry.getValue() + termScores.get(entry.getKey()));
+				}
+			}
+			if (scores.isEmpty()) {
+				return Collections.emptyList();
+			}
+		}
+
+		List<Map.Entry<Long, Double>> ranked = top(scores, offset > Integer.MAX_VALUE - limit ? Integer.MAX_VALUE : offset + limit);
+		List<Item> page = new ArrayList<>(Math.min(limit, Math.max(0, ranked.size() - offset)));
+		for (int i = offset; i < ranked.size() && page.size() < limit; i++) {
+			Item item = documents.get(ranked.get(i).getKey());
+			if (item != null) {
+				page.add(item);
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * The best {@code k} entries of {@code scores}, best first, through a
+	 * heap of size {@code k} rather than a sort of every match.
+	 */
+	static List<Map.Entry<Long, Double>> top(Map<Long, Double> scores, int k) {
+		if (k <= 0) {
+			return Collections.emptyList();
+		}
+		PriorityQueue<Map.Entry<Long, Double>> worstFirst = new PriorityQueue<>(Math.min(k, scores.size()) + 1, BEST_FIRST.reversed());
+		for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+			if (worstFirst.size() < k) {
+				worstFirst.add(entry);
+			} else if (BEST_FIRST.compare(entry, worstFirst.peek()) < 0) {
+				worstFirst.poll();
+				worstFirst.add(entry);
+			}
+		}
+		List<Map.Entry<Long, Double>> ranked = new ArrayList<>(worstFirst.size());
+		while (!worstFirst.isEmpty()) {
+			ranked.add(worstFirst.poll());
+		}
+		Collections.reverse(ranked);
+		return ranked;
+	}
+
+	public int size() {
+		return documents.size();
+	}
+
+	/**
+	 * Scores items whose tokens equal or start with {@code term}, reading at
+	 * most {@code maxPostings} postings. The exact token sorts first in the
+	 * map, so only prefix matches, which all score alike, are cut off.
+	 */
+	private static void collect(NavigableMap<String, Set<Long>> tokens, String term,
+			double exactScore, double prefixScore, int maxPostings, Map<Long, Double> scores) {
+		int budget = maxPostings;
+		for (Map.Entry<String, Set<Long>> posting : tokens.subMap(term, true, term + Character.MAX_VALUE, true).entrySet()) {
+			double score = posting.getKey().equals(term) ? exactScore : prefixScore;
+			for (Long itemId : posting.getValue()) {
+				if (budget-- <= 0) {
+					return;
+				}
+				scores.merge(itemId, score, Math::max);
+			}
+		}
+	}
+
+	private static void addPostings(NavigableMap<String, Set<Long>> tokens, Set<String> terms, Long itemId) {
+		for (String term : terms) {
+			tokens.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(itemId);
+		}
+	}
+
+	private static void removePostings(NavigableMap<String, Set<Long>> tokens, Set<String> terms, Long itemId) {
+		for (String term : terms) {
+			Set<Long> ids = tokens.get(term);
+			if (ids != null) {
+				ids.remove(itemId);
+				if (ids.isEmpty()) {
+					tokens.remove(term);
+				}
+			}
+		}
+	}
+
+	static Set<String> tokenize(String text) {
+		Set<String> tokens = new LinkedHashSet<>();
+		if (text == null) {
+			return tokens;
+		}
+		for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+			if (!token.isEmpty()) {
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+}
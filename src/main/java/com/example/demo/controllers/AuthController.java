@@ -0,0 +1,87 @@
+package com.example.demo.controllers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.example.demo.security.JwtTokenIssuer;
+import com.example.demo.security.JwtTokenVerifier;
+import com.example.demo.security.SecurityConstants;
+import com.example.demo.security.TokenRevocationList;
+import com.example.demo.security.VerifiedToken;
+
+@RestController
+@RequestMapping("/api/auth")
+public class AuthController {
+
+	private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
+
+	@Autowired
+	private JwtTokenVerifier tokenVerifier;
+
+	@Autowired
+	private JwtTokenIssuer tokenIssuer;
+
+	@Autowired
+	private TokenRevocationList tokenRevocationList;
+
+	/**
+	 * Trades a refresh token for a new access token and a new refresh token,
+	 * returned in the same headers as at login. Each refresh token works
+	 * once.
+	 */
+	@PostMapping("/refresh")
+	public ResponseEntity<Void> refresh(
+			@RequestHeader(value = SecurityConstants.REFRESH_HEADER_STRING, required = false) String refreshToken) {
+		if(refreshToken == null) {
+			return ResponseEntity.badRequest().build();
+		}
+		VerifiedToken token;
+		try {
+			token = tokenVerifier.verifyRefresh(refreshToken);
+		} catch (JWTVerificationException e) {
+			logger.error("FAIL: refresh token rejected: {}", e.getMessage());
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+		}
+		if(!tokenRevocationList.revoke(token.getId(), token.getExpiresAt())) {
+			logger.error("FAIL: refresh token for username {} was already used or revoked", token.getSubject());
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+		}
+		logger.info("SUCCESS: tokens refreshed for username {}", token.getSubject());
+		return ResponseEntity.ok()
+				.header(SecurityConstants.HEADER_STRING,
+						SecurityConstants.TOKEN_PREFIX + tokenIssuer.issueAccessToken(token.getSubject()))
+				.header(SecurityConstants.REFRESH_HEADER_STRING, tokenIssuer.issueRefreshToken(token.getSubject()))
+				.build();
+	}
+
+	/**
+	 * Revokes the access token the request was made with and, if sent, the
+	 * user's refresh token.
+	 */
+	@PostMapping("/logout")
+	public ResponseEntity<Void> logout(@RequestHeader(SecurityConstants.HEADER_STRING) String authorization,
+			@RequestHeader(value = SecurityConstants.REFRESH_HEADER_STRING, required = false) String refreshToken) {
+		VerifiedToken access = tokenVerifier.verify(authorization.replace(SecurityConstants.TOKEN_PREFIX, ""));
+		tokenRevocationList.revoke(access.getId(), access.getExpiresAt());
+		if(refreshToken != null) {
+			try {
+				VerifiedToken refresh = tokenVerifier.verifyRefresh(refreshToken);
+				if(refresh.getSubject().equals(access.getSubject())) {
+					tokenRevocationList.revoke(refresh.getId(), refresh.getExpiresAt());
+				}
+			} catch (JWTVerificationException e) {
+				// no longer usable anyway
+			}
+		}
+		logger.info("SUCCESS: username {} logged out", access.getSubject());
+		return ResponseEntity.noContent().build();
+	}
+}
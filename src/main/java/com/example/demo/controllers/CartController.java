@@ -1,9 +1,13 @@
 package com.example.demo.controllers;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -11,59 +15,175 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.cart.CartExpiry;
+import com.example.demo.cart.CartStore;
+import com.example.demo.catalog.CatalogCache;
+import com.example.demo.inventory.FlashSaleSequencer;
+import com.example.demo.inventory.InventoryLedger;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
-import com.example.demo.model.persistence.User;
-import com.example.demo.model.persistence.repositories.CartRepository;
-import com.example.demo.model.persistence.repositories.ItemRepository;
-import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.CartOperation;
+import com.example.demo.model.requests.ModifyCartBatchRequest;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.user.UserIdentity;
+import com.example.demo.user.UserIdentityCache;
 
 @RestController
 @RequestMapping("/api/cart")
 public class CartController {
 	
 	@Autowired
-	private UserRepository userRepository;
+	private UserIdentityCache userIdentityCache;
 	
 	@Autowired
-	private CartRepository cartRepository;
+	private CartStore cartStore;
 	
 	@Autowired
-	private ItemRepository itemRepository;
+	private CatalogCache catalogCache;
 	
+	@Autowired
+	private InventoryLedger inventoryLedger;
+	
+	@Autowired
+	private FlashSaleSequencer flashSaleSequencer;
+	
+	@Autowired
+	private CartExpiry cartExpiry;
+	
+	/**
+	 * Reserves the units before adding them, answering 409 when the item
+	 * does not have enough stock and 503 when its flash-sale queue is full.
+	 */
 	@PostMapping("/addToCart")
 	public ResponseEntity<Cart> addTocart(@RequestBody ModifyCartRequest request) {
-		User user = userRepository.findByUsername(request.getUsername());
-		if(user == null) {
+		Optional<UserIdentity> user = userIdentityCache.resolve(request.getUsername());
+		if(!user.isPresent()) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Optional<Item> item = itemRepository.findById(request.getItemId());
+		Optional<Item> item = catalogCache.findById(request.getItemId());
 		if(!item.isPresent()) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Cart cart = user.getCart();
-		IntStream.range(0, request.getQuantity())
-			.forEach(i -> cart.addItem(item.get()));
-		cartRepository.save(cart);
+		Map<Long, Integer> held = new HashMap<>();
+		HttpStatus refusal = reserve(request.getItemId(), request.getQuantity(), held);
+		if(refusal != null) {
+			return refused(refusal);
+		}
+		Cart cart;
+		try {
+			cart = cartStore.update(user.get(), c -> c.addItem(item.get(), request.getQuantity(), held.get(request.getItemId())));
+		} catch (RuntimeException e) {
+			held.forEach(inventoryLedger::release);
+			throw e;
+		}
+		cartExpiry.touch(user.get());
 		return ResponseEntity.ok(cart);
 	}
 	
 	@PostMapping("/removeFromCart")
 	public ResponseEntity<Cart> removeFromcart(@RequestBody ModifyCartRequest request) {
-		User user = userRepository.findByUsername(request.getUsername());
-		if(user == null) {
+		Optional<UserIdentity> user = userIdentityCache.resolve(request.getUsername());
+		if(!user.isPresent()) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Optional<Item> item = itemRepository.findById(request.getItemId());
+		Optional<Item> item = catalogCache.findById(request.getItemId());
 		if(!item.isPresent()) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
 		}
-		Cart cart = user.getCart();
-		IntStream.range(0, request.getQuantity())
-			.forEach(i -> cart.removeItem(item.get()));
-		cartRepository.save(cart);
+		int[] removed = new int[1];
+		Cart cart = cartStore.update(user.get(), c -> removed[0] = c.removeItem(item.get(), request.getQuantity()));
+		inventoryLedger.release(request.getItemId(), removed[0]);
+		cartExpiry.touch(user.get());
 		return ResponseEntity.ok(cart);
 	}
-		
+
+	@PostMapping("/batch")
+	public ResponseEntity<Cart> batchUpdate(@RequestBody ModifyCartBatchRequest request) {
+		if(request.getOperations() == null || request.getOperations().isEmpty()) {
+			return ResponseEntity.badRequest().build();
+		}
+		Optional<UserIdentity> user = userIdentityCache.resolve(request.getUsername());
+		if(!user.isPresent()) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		Set<Long> itemIds = request.getOperations().stream()
+			.map(CartOperation::getItemId)
+			.collect(Collectors.toSet());
+		Map<Long, Item> items = catalogCache.findAllById(itemIds);
+		if(items.size() != itemIds.size()) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+		Map<Long, Integer> added = new HashMap<>();
+		for(CartOperation operation : request.getOperations()) {
+			if(operation.getAction() != CartOperation.Action.REMOVE && operation.getQuantity() > 0) {
+				added.merge(operation.getItemId(), operation.getQuantity(), Integer::sum);
+			}
+		}
+		Map<Long, Integer> held = new HashMap<>();
+		for(Map.Entry<Long, Integer> entry : added.entrySet()) {
+			HttpStatus refusal = reserve(entry.getKey(), entry.getValue(), held);
+			if(refusal != null) {
+				held.forEach(inventoryLedger::release);
+				return refused(refusal);
+			}
+		}
+		Map<Long, Integer> removed = new HashMap<>();
+		Cart cart;
+		try {
+			cart = cartStore.update(user.get(), c -> {
+				removed.clear();
+				for(CartOperation operation : request.getOperations()) {
+					Item item = items.get(operation.getItemId());
+					if(operation.getAction() == CartOperation.Action.REMOVE) {
+						removed.merge(item.getId(), c.removeItem(item, operation.getQuantity()), Integer::sum);
+					} else {
+						// an item's units are either all held or, untracked, none
+						int reserved = held.getOrDefault(item.getId(), 0) > 0 ? operation.getQuantity() : 0;
+						c.addItem(item, operation.getQuantity(), reserved);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			held.forEach(inventoryLedger::release);
+			throw e;
+		}
+		removed.forEach(inventoryLedger::release);
+		cartExpiry.touch(user.get());
+		return ResponseEntity.ok(cart);
+	}
+
+	/**
+	 * Reserves stock for units being added, through the item's flash-sale
+	 * queue if it has one. Returns the status to refuse the request with,
+	 * or {@code null} once the units are reserved and the number actually
+	 * held, none for an untracked item, is recorded in {@code held}.
+	 */
+	private HttpStatus reserve(long itemId, int quantity, Map<Long, Integer> held) {
+		if(flashSaleSequencer.handles(itemId)) {
+			switch(flashSaleSequencer.reserve(itemId, quantity)) {
+			case GRANTED:
+				// the sequencer only grants tracked items
+				held.put(itemId, quantity);
+				return null;
+			case SOLD_OUT:
+				return HttpStatus.CONFLICT;
+			default:
+				return HttpStatus.SERVICE_UNAVAILABLE;
+			}
+		}
+		int units = inventoryLedger.hold(itemId, quantity);
+		if(units < 0) {
+			return HttpStatus.CONFLICT;
+		}
+		held.put(itemId, units);
+		return null;
+	}
+
+	private static ResponseEntity<Cart> refused(HttpStatus status) {
+		if(status == HttpStatus.SERVICE_UNAVAILABLE) {
+			return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, "1").build();
+		}
+		return ResponseEntity.status(status).build();
+	}
+
 }
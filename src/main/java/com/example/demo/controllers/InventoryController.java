@@ -0,0 +1,52 @@
+package com.example.demo.controllers;
+
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.catalog.CatalogCache;
+import com.example.demo.inventory.InventoryLedger;
+import com.example.demo.model.persistence.ItemStock;
+
+@RestController
+@RequestMapping("/api/inventory")
+public class InventoryController {
+
+	private static final Logger logger = LoggerFactory.getLogger(InventoryController.class);
+
+	@Autowired
+	private InventoryLedger inventoryLedger;
+
+	@Autowired
+	private CatalogCache catalogCache;
+
+	/**
+	 * Current stock of the item; 404 if its stock is not tracked.
+	 */
+	@GetMapping("/{itemId}")
+	public ResponseEntity<ItemStock> getStock(@PathVariable long itemId) {
+		return ResponseEntity.of(Optional.ofNullable(inventoryLedger.level(itemId)));
+	}
+
+	@PostMapping("/{itemId}/restock")
+	public ResponseEntity<ItemStock> restock(@PathVariable long itemId, @RequestParam int quantity) {
+		if (quantity < 1) {
+			return ResponseEntity.badRequest().build();
+		}
+		if (!catalogCache.findById(itemId).isPresent()) {
+			return ResponseEntity.notFound().build();
+		}
+		inventoryLedger.restock(itemId, quantity);
+		logger.info("SUCCESS: item id {} restocked with {} units", itemId, quantity);
+		return ResponseEntity.ok(inventoryLedger.level(itemId));
+	}
+}
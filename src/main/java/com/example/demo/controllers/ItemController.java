@@ -1,37 +1,136 @@
 package com.example.demo.controllers;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.catalog.CatalogCache;
+import com.example.demo.catalog.ItemSearchIndex;
 import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
 import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ItemPage;
 
 @RestController
 @RequestMapping("/api/item")
 public class ItemController {
 
+	static final int DEFAULT_PAGE_SIZE = 50;
+	static final int MAX_PAGE_SIZE = 200;
+
+	private static final Money MAX_PRICE = Money.ofMinor(Long.MAX_VALUE);
+
 	@Autowired
 	private ItemRepository itemRepository;
+
+	@Autowired
+	private CatalogCache catalogCache;
+
+	@Autowired
+	private ItemSearchIndex itemSearchIndex;
 	
+	/**
+	 * Keyset-paginated catalog. Pages are ordered by {@code id} or by
+	 * {@code price} (ties broken by id); {@code after} is the
+	 * {@code nextCursor} of the previous page.
+	 */
 	@GetMapping
-	public ResponseEntity<List<Item>> getItems() {
-		return ResponseEntity.ok(itemRepository.findAll());
+	public ResponseEntity<ItemPage> getItems(
+			@RequestParam(defaultValue = "id") String sort,
+			@RequestParam(required = false) String after,
+			@RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+			@RequestParam(required = false) BigDecimal minPrice,
+			@RequestParam(required = false) BigDecimal maxPrice) {
+		Money min;
+		Money max;
+		try {
+			min = minPrice == null ? Money.ZERO : Money.of(minPrice);
+			max = maxPrice == null ? MAX_PRICE : Money.of(maxPrice);
+		} catch (ArithmeticException e) {
+			// more minor units than a price can hold
+			return ResponseEntity.badRequest().build();
+		}
+		if (size < 1 || min.compareTo(max) > 0) {
+			return ResponseEntity.badRequest().build();
+		}
+		int pageSize = Math.min(size, MAX_PAGE_SIZE);
+		PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+		List<Item> items;
+		try {
+			if ("id".equals(sort)) {
+				long afterId = after == null ? Long.MIN_VALUE : Long.parseLong(after);
+				items = itemRepository.findPageOrderById(afterId, min, max, limit);
+			} else if ("price".equals(sort)) {
+				Money afterPrice = min;
+				long afterId = Long.MIN_VALUE;
+				if (after != null) {
+					int separator = after.indexOf(':');
+					afterPrice = Money.ofMinor(Long.parseLong(after.substring(0, separator)));
+					afterId = Long.parseLong(after.substring(separator + 1));
+				}
+				items = itemRepository.findPageOrderByPrice(afterPrice, afterId, min, max, limit);
+			} else {
+				return ResponseEntity.badRequest().build();
+			}
+		} catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+			return ResponseEntity.badRequest().build();
+		}
+
+		String nextCursor = null;
+		if (items.size() > pageSize) {
+			items = items.subList(0, pageSize);
+			Item last = items.get(pageSize - 1);
+			nextCursor = "id".equals(sort) ? String.valueOf(last.getId())
+					: last.getPrice().getMinorUnits() + ":" + last.getId();
+		}
+		return ResponseEntity.ok(new ItemPage(items, nextCursor));
 	}
 	
+	/**
+	 * Ranked full-text search over item names and descriptions, served from
+	 * the in-memory index. The last word of {@code q} may be partial.
+	 */
+	@GetMapping("/search")
+	public ResponseEntity<ItemPage> search(
+			@RequestParam String q,
+			@RequestParam(required = false) String after,
+			@RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+		int offset;
+		try {
+			offset = after == null ? 0 : Integer.parseInt(after);
+		} catch (NumberFormatException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		if (q.trim().isEmpty() || size < 1 || offset < 0) {
+			return ResponseEntity.badRequest().build();
+		}
+		int pageSize = Math.min(size, MAX_PAGE_SIZE);
+		List<Item> items = itemSearchIndex.search(q, offset, pageSize + 1);
+		String nextCursor = null;
+		if (items.size() > pageSize) {
+			items = items.subList(0, pageSize);
+			nextCursor = String.valueOf(offset + pageSize);
+		}
+		return ResponseEntity.ok(new ItemPage(items, nextCursor));
+	}
+
 	@GetMapping("/{id}")
 	public ResponseEntity<Item> getItemById(@PathVariable Long id) {
-		return ResponseEntity.of(itemRepository.findById(id));
+		return ResponseEntity.of(catalogCache.findById(id));
 	}
 	
 	@GetMapping("/name/{name}")
 	public ResponseEntity<List<Item>> getItemsByName(@PathVariable String name) {
-		List<Item> items = itemRepository.findByName(name);
+		List<Item> items = catalogCache.findByName(name);
 		return items == null || items.isEmpty() ? ResponseEntity.notFound().build()
 				: ResponseEntity.ok(items);
 			
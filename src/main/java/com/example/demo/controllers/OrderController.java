@@ -1,56 +1,240 @@
 package com.example.demo.controllers;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.example.demo.model.persistence.User;
+import com.example.demo.cart.CartStore;
+import com.example.demo.inventory.InventoryLedger;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartLine;
+import com.example.demo.model.persistence.Money;
 import com.example.demo.model.persistence.UserOrder;
 import com.example.demo.model.persistence.repositories.OrderRepository;
-import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.OrderPage;
+import com.example.demo.model.responses.OrderSummary;
+import com.example.demo.order.AsyncOrderWriter;
+import com.example.demo.order.IdempotencyStore;
+import com.example.demo.order.OrderSubmission;
+import com.example.demo.user.UserIdentity;
+import com.example.demo.user.UserIdentityCache;
 
 @RestController
 @RequestMapping("/api/order")
 public class OrderController {
 
+	static final int DEFAULT_PAGE_SIZE = 20;
+	static final int MAX_PAGE_SIZE = 100;
+	static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+	static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
 	private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
 
 	@Autowired
-	private UserRepository userRepository;
+	private UserIdentityCache userIdentityCache;
 	
 	@Autowired
 	private OrderRepository orderRepository;
+
+	@Autowired
+	private CartStore cartStore;
+
+	@Autowired(required = false)
+	private AsyncOrderWriter asyncOrderWriter;
+
+	@Autowired
+	private IdempotencyStore idempotencyStore;
+
+	@Autowired
+	private InventoryLedger inventoryLedger;
 	
 	
+	/**
+	 * Creates an order from the user's cart, empties the cart and marks the
+	 * stock it held as sold. Requests that repeat an
+	 * {@code Idempotency-Key} get the order created by the first one.
+	 */
 	@PostMapping("/submit/{username}")
-	public ResponseEntity<UserOrder> submit(@PathVariable String username) {
-		User user = userRepository.findByUsername(username);
-		if(user == null) {
+	public ResponseEntity<UserOrder> submit(@PathVariable String username,
+			@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+		if(idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+			return ResponseEntity.badRequest().build();
+		}
+		Optional<UserIdentity> user = userIdentityCache.resolve(username);
+		if(!user.isPresent()) {
 			logger.error("FAIL: username {} is not found", username);
 			return ResponseEntity.notFound().build();
 		}
-		UserOrder order = UserOrder.createFromCart(user.getCart());
-		orderRepository.save(order);
-		logger.info("SUCCESS: order id {} submitted", order.getId());
+		UserOrder order = idempotencyKey == null ? createOrder(user.get())
+				: idempotencyStore.execute(username, idempotencyKey, () -> createOrder(user.get()));
 		return ResponseEntity.ok(order);
 	}
+
+	/**
+	 * Takes the cart's contents under its lock but writes the order after
+	 * the lock is released; if the write fails the contents go back into
+	 * the cart.
+	 */
+	private UserOrder createOrder(UserIdentity user) {
+		UserOrder[] order = new UserOrder[1];
+		Cart[] contents = new Cart[1];
+		cartStore.update(user, c -> {
+			order[0] = UserOrder.createFromCart(c);
+			contents[0] = c.copy();
+			c.clear();
+		});
+		try {
+			orderRepository.save(order[0]);
+		} catch (RuntimeException e) {
+			restoreCart(user, contents[0]);
+			throw e;
+		}
+		commitStock(contents[0]);
+		logger.info("SUCCESS: order id {} submitted", order[0].getId());
+		return order[0];
+	}
+
+	/**
+	 * Sells the units the ordered cart lines held reservations for.
+	 */
+	private void commitStock(Cart contents) {
+		for(CartLine line : contents.getLines()) {
+			inventoryLedger.commit(line.getItem().getId(), line.getReserved());
+		}
+	}
+
+	/**
+	 * Accepts the order for writing in the background and returns a
+	 * submission to poll. Only available when async submission is enabled.
+	 * The cart is emptied right away; its stock is marked sold once the
+	 * order is written, and if the write fails the lines go back into the
+	 * cart with their reservations.
+	 */
+	@PostMapping("/submit/{username}/async")
+	public ResponseEntity<OrderSubmission> submitAsync(@PathVariable String username) {
+		if(asyncOrderWriter == null) {
+			return ResponseEntity.notFound().build();
+		}
+		Optional<UserIdentity> user = userIdentityCache.resolve(username);
+		if(!user.isPresent()) {
+			logger.error("FAIL: username {} is not found", username);
+			return ResponseEntity.notFound().build();
+		}
+		UserOrder[] order = new UserOrder[1];
+		Cart[] contents = new Cart[1];
+		// cleared before queueing, so the outcome never races the clear
+		cartStore.update(user.get(), c -> {
+			order[0] = UserOrder.createFromCart(c);
+			contents[0] = c.copy();
+			c.clear();
+		});
+		OrderSubmission submission = asyncOrderWriter.submit(order[0], new AsyncOrderWriter.Outcome() {
+			@Override
+			public void written(UserOrder written) {
+				commitStock(contents[0]);
+			}
+
+			@Override
+			public void failed(UserOrder failed) {
+				restoreCart(user.get(), contents[0]);
+			}
+		});
+		if(submission == null) {
+			restoreCart(user.get(), contents[0]);
+			logger.error("FAIL: order queue is full, submission for username {} rejected", username);
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+		}
+		logger.info("SUCCESS: order submission {} accepted", submission.getId());
+		return ResponseEntity.accepted().body(submission);
+	}
+
+	/**
+	 * Puts the lines of an order that was not written back into the cart,
+	 * still holding the stock reserved for them. If the cart cannot be
+	 * restored the reservations are released instead.
+	 */
+	private void restoreCart(UserIdentity user, Cart contents) {
+		try {
+			cartStore.update(user, c -> {
+				for(CartLine line : contents.getLines()) {
+					c.addItem(line.getItem(), line.getQuantity(), line.getReserved());
+				}
+			});
+			logger.info("SUCCESS: cart restored for username {} after failed submission", user.getUsername());
+		} catch (RuntimeException e) {
+			logger.error("FAIL: cart for username {} could not be restored, releasing its stock", user.getUsername(), e);
+			for(CartLine line : contents.getLines()) {
+				inventoryLedger.release(line.getItem().getId(), line.getReserved());
+			}
+		}
+	}
+
+	@GetMapping("/submission/{id}")
+	public ResponseEntity<OrderSubmission> getSubmission(@PathVariable String id) {
+		if(asyncOrderWriter == null) {
+			return ResponseEntity.notFound().build();
+		}
+		OrderSubmission submission = asyncOrderWriter.status(id);
+		return submission == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(submission);
+	}
 	
+	/**
+	 * The user's orders, newest first. {@code before} is the
+	 * {@code nextCursor} of the previous page.
+	 */
 	@GetMapping("/history/{username}")
-	public ResponseEntity<List<UserOrder>> getOrdersForUser(@PathVariable String username) {
-		User user = userRepository.findByUsername(username);
-		if(user == null) {
+	public ResponseEntity<OrderPage> getOrdersForUser(@PathVariable String username,
+			@RequestParam(required = false) String before,
+			@RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+		long beforeId;
+		try {
+			beforeId = before == null ? Long.MAX_VALUE : Long.parseLong(before);
+		} catch (NumberFormatException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		if(size < 1) {
+			return ResponseEntity.badRequest().build();
+		}
+		Optional<UserIdentity> user = userIdentityCache.resolve(username);
+		if(!user.isPresent()) {
 			logger.error("FAIL: username {} is not found", username);
 			return ResponseEntity.notFound().build();
 		}
+		int pageSize = Math.min(size, MAX_PAGE_SIZE);
+		List<Long> ids = orderRepository.findIdPage(user.get().getId(), beforeId, PageRequest.of(0, pageSize + 1));
+		String nextCursor = null;
+		if(ids.size() > pageSize) {
+			ids = ids.subList(0, pageSize);
+			nextCursor = String.valueOf(ids.get(pageSize - 1));
+		}
+		List<UserOrder> orders = ids.isEmpty() ? Collections.emptyList() : orderRepository.findAllWithLinesByIdIn(ids);
 		logger.info("SUCCESS: orders successfully retrieved for username {}", username);
-		return ResponseEntity.ok(orderRepository.findByUser(user));
+		return ResponseEntity.ok(new OrderPage(orders, nextCursor));
+	}
+
+	@GetMapping("/history/{username}/summary")
+	public ResponseEntity<OrderSummary> getOrderSummary(@PathVariable String username) {
+		Optional<UserIdentity> user = userIdentityCache.resolve(username);
+		if(!user.isPresent()) {
+			logger.error("FAIL: username {} is not found", username);
+			return ResponseEntity.notFound().build();
+		}
+		OrderRepository.Totals totals = orderRepository.summarize(user.get().getId());
+		return ResponseEntity.ok(new OrderSummary(totals.getOrderCount(), Money.of(totals.getTotalSpent())));
 	}
 }
@@ -0,0 +1,77 @@
+package com.example.demo.controllers;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.model.responses.ItemSales;
+import com.example.demo.model.responses.UserSpend;
+import com.example.demo.report.SalesRollups;
+import com.example.demo.user.UserIdentity;
+import com.example.demo.user.UserIdentityCache;
+
+/**
+ * Sales reports served from {@link SalesRollups}; none of these read order
+ * history.
+ */
+@RestController
+@RequestMapping("/api/report")
+public class ReportController {
+
+	static final int DEFAULT_TOP_ITEMS = 10;
+	static final int MAX_TOP_ITEMS = 100;
+
+	private static final Logger logger = LoggerFactory.getLogger(ReportController.class);
+
+	@Autowired
+	private SalesRollups salesRollups;
+
+	@Autowired
+	private UserIdentityCache userIdentityCache;
+
+	@GetMapping("/items/top")
+	public ResponseEntity<List<ItemSales>> getTopItems(
+			@RequestParam(defaultValue = "" + DEFAULT_TOP_ITEMS) int limit) {
+		if (limit < 1) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(salesRollups.topItems(Math.min(limit, MAX_TOP_ITEMS)));
+	}
+
+	@GetMapping("/items/{itemId}")
+	public ResponseEntity<ItemSales> getItemSales(@PathVariable long itemId) {
+		return ResponseEntity.of(Optional.ofNullable(salesRollups.itemSales(itemId)));
+	}
+
+	@GetMapping("/users/{username}")
+	public ResponseEntity<UserSpend> getUserSpend(@PathVariable String username) {
+		Optional<UserIdentity> user = userIdentityCache.resolve(username);
+		if (!user.isPresent()) {
+			logger.error("FAIL: username {} is not found", username);
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.of(Optional.ofNullable(salesRollups.userSpend(user.get().getId())));
+	}
+
+	/**
+	 * Recomputes the rollups from order history. Only users listed in
+	 * {@code security.admin-usernames} may call it.
+	 */
+	@PostMapping("/rebuild")
+	public ResponseEntity<Void> rebuild() {
+		long start = System.currentTimeMillis();
+		salesRollups.rebuild();
+		logger.info("SUCCESS: sales rollups rebuilt in {} ms", System.currentTimeMillis() - start);
+		return ResponseEntity.noContent().build();
+	}
+}
@@ -0,0 +1,40 @@
+package com.example.demo.controllers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.cart.CartRepricer;
+import com.example.demo.model.responses.RepricingProgress;
+
+/**
+ * Progress of carrying item price changes into carts. Price changes made
+ * through JPA are picked up on their own; {@code POST} reprices against
+ * every item, e.g. after prices were loaded with SQL.
+ */
+@RestController
+@RequestMapping("/api/reprice")
+public class RepricingController {
+
+	private static final Logger logger = LoggerFactory.getLogger(RepricingController.class);
+
+	@Autowired
+	private CartRepricer cartRepricer;
+
+	@GetMapping
+	public ResponseEntity<RepricingProgress> getProgress() {
+		return ResponseEntity.ok(cartRepricer.progress());
+	}
+
+	@PostMapping
+	public ResponseEntity<RepricingProgress> repriceAll() {
+		cartRepricer.repriceAll();
+		logger.info("SUCCESS: repricing of all carts started");
+		return ResponseEntity.accepted().body(cartRepricer.progress());
+	}
+}
@@ -1,12 +1,13 @@
 package com.example.demo.controllers;
 
 import java.util.Objects;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -19,6 +20,8 @@ import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.user.UserIdentity;
+import com.example.demo.user.UserIdentityCache;
 
 @RestController
 @RequestMapping("/api/user")
@@ -33,7 +36,10 @@ public class UserController {
 	private CartRepository cartRepository;
 
 	@Autowired
-	private BCryptPasswordEncoder bCryptPasswordEncoder;
+	private UserIdentityCache userIdentityCache;
+
+	@Autowired
+	private PasswordEncoder bCryptPasswordEncoder;
 
 	@GetMapping("/id/{id}")
 	public ResponseEntity<User> findById(@PathVariable Long id) {
@@ -42,14 +48,15 @@ public class UserController {
 	
 	@GetMapping("/{username}")
 	public ResponseEntity<User> findByUserName(@PathVariable String username) {
-		User user = userRepository.findByUsername(username);
-		if (user == null) {
+		Optional<UserIdentity> identity = userIdentityCache.resolve(username);
+		Optional<User> user = identity.isPresent() ? userRepository.findById(identity.get().getId()) : Optional.empty();
+		if (!user.isPresent()) {
 			logger.error("FAIL: username {} is not found", username);
 			return ResponseEntity.notFound().build();
 		}
 		else {
 			logger.info("SUCCESS: username {} successfully found", username);
-			return ResponseEntity.ok(user);
+			return ResponseEntity.ok(user.get());
 		}
 	}
 	
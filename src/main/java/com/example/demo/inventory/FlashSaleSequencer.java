@@ -0,0 +1,228 @@
+package com.example.demo.inventory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Admission for items on flash sale ({@code flash-sale.item-ids}).
+ * <p>
+ * Each such item gets a bounded queue drained by its own thread, which is
+ * the only one reserving that item's stock, so purchases are granted in
+ * arrival order without threads competing for the same counter. Once the
+ * item is out of stock, requests are refused before they are queued; when
+ * the queue is full, or a request waits longer than
+ * {@code flash-sale.wait-ms}, it is answered {@link Admission#BUSY} and
+ * nothing is reserved. The wait holds the request thread, which still has
+ * the cart to load and save afterwards, so it is kept short.
+ * <p>
+ * An item without tracked stock has no limit to sell against, so it is
+ * answered {@link Admission#SOLD_OUT} until it is restocked.
+ */
+@Component
+public class FlashSaleSequencer implements MeterBinder {
+
+	private static final Logger logger = LoggerFactory.getLogger(FlashSaleSequencer.class);
+
+	public enum Admission {
+		GRANTED, SOLD_OUT, BUSY
+	}
+
+	private final InventoryLedger inventoryLedger;
+	private final long waitMillis;
+	private final Map<Long, Lane> lanes;
+
+	private volatile boolean running = true;
+
+	private final LongAdder granted = new LongAdder();
+	private final LongAdder soldOut = new LongAdder();
+	private final LongAdder busy = new LongAdder();
+
+	public FlashSaleSequencer(InventoryLedger inventoryLedger,
+			@Value("${flash-sale.item-ids:}") List<Long> itemIds,
+			@Value("${flash-sale.queue-capacity:10000}") int queueCapacity,
+			@Value("${flash-sale.wait-ms:250}") long waitMillis) {
+		this.inventoryLedger = inventoryLedger;
+		this.waitMillis = waitMillis;
+		Map<Long, Lane> lanes = new HashMap<>();
+		for (Long itemId : itemIds) {
+			lanes.put(itemId, new Lane(itemId, queueCapacity));
+		}
+		this.lanes = Collections.unmodifiableMap(lanes);
+	}
+
+	@PostConstruct
+	public void start() {
+		for (Lane lane : lanes.values()) {
+			lane.thread.start();
+		}
+		if (!lanes.isEmpty()) {
+			logger.info("Flash sale admission enabled for items {}", lanes.keySet());
+		}
+		for (Long itemId : lanes.keySet()) {
+			if (!inventoryLedger.isTracked(itemId)) {
+				logger.warn("Flash sale item {} has no stock row; it is sold out until restocked", itemId);
+			}
+		}
+	}
+
+	public boolean handles(long itemId) {
+		return lanes.containsKey(itemId);
+	}
+
+	/**
+	 * Reserves {@code quantity} units of a flash-sale item, waiting for this
+	 * request's turn.
+	 */
+	public Admission reserve(long itemId, int quantity) {
+		Lane lane = lanes.get(itemId);
+		if (lane == null) {
+			throw new IllegalArgumentException("Item " + itemId + " is not on flash sale");
+		}
+		if (!inventoryLedger.isTracked(itemId) || !inventoryLedger.canReserve(itemId, quantity)) {
+			soldOut.increment();
+			return Admission.SOLD_OUT;
+		}
+		Request request = new Request(quantity);
+		if (!running || !lane.queue.offer(request)) {
+			busy.increment();
+			return Admission.BUSY;
+		}
+		try {
+			return request.result.get(waitMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			if (request.cancel()) {
+				busy.increment();
+				return Admission.BUSY;
+			}
+			// the lane already took it; the answer is moments away
+			return request.result.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if (request.cancel()) {
+				return Admission.BUSY;
+			}
+			return request.result.join();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		running = false;
+		for (Lane lane : lanes.values()) {
+			lane.thread.interrupt();
+		}
+		for (Lane lane : lanes.values()) {
+			lane.thread.join();
+			List<Request> left = new ArrayList<>();
+			lane.queue.drainTo(left);
+			for (Request request : left) {
+				if (request.cancel()) {
+					request.result.complete(Admission.BUSY);
+				}
+			}
+		}
+	}
+
+	private void run(Lane lane) {
+		while (running) {
+			Request request;
+			try {
+				request = lane.queue.take();
+			} catch (InterruptedException e) {
+				continue;
+			}
+			if (!request.claim()) {
+				continue;
+			}
+			Admission admission;
+			try {
+				admission = inventoryLedger.isTracked(lane.itemId) && inventoryLedger.reserve(lane.itemId, request.quantity)
+						? Admission.GRANTED : Admission.SOLD_OUT;
+			} catch (RuntimeException e) {
+				request.result.completeExceptionally(e);
+				continue;
+			}
+			(admission == Admission.GRANTED ? granted : soldOut).increment();
+			request.result.complete(admission);
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		for (Lane lane : lanes.values()) {
+			Gauge.builder("flash.sale.queue.depth", lane.queue, BlockingQueue::size)
+				.tag("item", String.valueOf(lane.itemId))
+				.description("Purchase requests waiting for their turn")
+				.register(registry);
+		}
+		FunctionCounter.builder("flash.sale.admissions", granted, LongAdder::doubleValue)
+			.tag("result", "granted")
+			.register(registry);
+		FunctionCounter.builder("flash.sale.admissions", soldOut, LongAdder::doubleValue)
+			.tag("result", "sold_out")
+			.register(registry);
+		FunctionCounter.builder("flash.sale.admissions", busy, LongAdder::doubleValue)
+			.tag("result", "busy")
+			.register(registry);
+	}
+
+	private final class Lane {
+		private final long itemId;
+		private final BlockingQueue<Request> queue;
+		private final Thread thread;
+
+		private Lane(long itemId, int queueCapacity) {
+			this.itemId = itemId;
+			this.queue = new ArrayBlockingQueue<>(queueCapacity);
+			this.thread = new Thread(() -> run(this), "flash-sale-" + itemId);
+		}
+	}
+
+	private static final class Request {
+		private static final int PENDING = 0;
+		private static final int CLAIMED = 1;
+		private static final int CANCELLED = 2;
+
+		private final int quantity;
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+		private final CompletableFuture<Admission> result = new CompletableFuture<>();
+
+		private Request(int quantity) {
+			this.quantity = quantity;
+		}
+
+		private boolean claim() {
+			return state.compareAndSet(PENDING, CLAIMED);
+		}
+
+		private boolean cancel() {
+			return state.compareAndSet(PENDING, CANCELLED);
+		}
+	}
+}
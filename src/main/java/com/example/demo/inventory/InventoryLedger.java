@@ -0,0 +1,286 @@
+package com.example.demo.inventory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.model.persistence.ItemStock;
+import com.example.demo.model.persistence.repositories.ItemStockRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * In-memory stock ledger for tracked items, written back to
+ * {@code item_stock} in batches.
+ * <p>
+ * Each item's available and reserved counts are packed into one
+ * {@link AtomicLong}, so reserving, releasing and selling are single
+ * compare-and-set operations that never block and always move units between
+ * the two counts atomically. Changed items are queued once until the next
+ * flush, which writes their current counts with one JDBC batch.
+ */
+@Component
+public class InventoryLedger implements MeterBinder {
+
+	private static final Logger logger = LoggerFactory.getLogger(InventoryLedger.class);
+
+	private static final long LOW_MASK = 0xFFFF_FFFFL;
+
+	private final ItemStockRepository itemStockRepository;
+	private final JdbcTemplate jdbcTemplate;
+	private final int flushBatchSize;
+
+	private final Map<Long, Stock> stocks = new ConcurrentHashMap<>();
+	private final Queue<Stock> dirty = new ConcurrentLinkedQueue<>();
+
+	private final LongAdder rejectedReservations = new LongAdder();
+	private final LongAdder flushedRows = new LongAdder();
+
+	public InventoryLedger(ItemStockRepository itemStockRepository, JdbcTemplate jdbcTemplate,
+			@Value("${inventory.flush-batch-size:500}") int flushBatchSize) {
+		this.itemStockRepository = itemStockRepository;
+		this.jdbcTemplate = jdbcTemplate;
+		this.flushBatchSize = flushBatchSize;
+	}
+
+	@PostConstruct
+	public void load() {
+		for (ItemStock row : itemStockRepository.findAll()) {
+			stocks.put(row.getItemId(), new Stock(row.getItemId(), row.getAvailable(), row.getReserved()));
+		}
+		logger.info("Inventory loaded for {} tracked items", stocks.size());
+	}
+
+	/**
+	 * Moves {@code quantity} units of the item from available to reserved.
+	 * Returns {@code false}, changing nothing, if fewer units are available.
+	 * Untracked items can always be reserved.
+	 */
+	public boolean reserve(long itemId, int quantity) {
+		return hold(itemId, quantity) >= 0;
+	}
+
+	/**
+	 * Reserves like {@link #reserve}, but returns how many units the caller
+	 * now holds: {@code quantity}, or {@code 0} for an untracked item, or
+	 * {@code -1} if the units were refused. Whoever holds the units is
+	 * responsible for releasing or committing exactly that many.
+	 */
+	public int hold(long itemId, int quantity) {
+		Stock stock = stocks.get(itemId);
+		if (stock == null || quantity <= 0) {
+			return 0;
+		}
+		AtomicLong state = stock.state;
+		long current;
+		do {
+			current = state.get();
+			if (available(current) < quantity) {
+				rejectedReservations.increment();
+				return -1;
+			}
+		} while (!state.compareAndSet(current, pack(available(current) - quantity, reserved(current) + quantity)));
+		markDirty(stock);
+		return quantity;
+	}
+
+	public boolean isTracked(long itemId) {
+		return stocks.containsKey(itemId);
+	}
+
+	/**
+	 * Whether {@code quantity} units could be reserved right now. The answer
+	 * is only a hint; {@link #reserve} decides.
+	 */
+	public boolean canReserve(long itemId, int quantity) {
+		Stock stock = stocks.get(itemId);
+		return stock == null || available(stock.state.get()) >= quantity;
+	}
+
+	/**
+	 * Returns units the caller holds to available, e.g. when they leave a
+	 * cart. Never moves more than the item has reserved in total.
+	 */
+	public void release(long itemId, int quantity) {
+		Stock stock = stocks.get(itemId);
+		if (stock == null || quantity <= 0) {
+			return;
+		}
+		long current;
+		long moved;
+		do {
+			current = stock.state.get();
+			moved = Math.min(quantity, reserved(current));
+			if (moved == 0) {
+				return;
+			}
+		} while (!stock.state.compareAndSet(current, pack(available(current) + moved, reserved(current) - moved)));
+		markDirty(stock);
+	}
+
+	/**
+	 * Marks units the caller holds as sold, at most as many as the item has
+	 * reserved in total.
+	 */
+	public void commit(long itemId, int quantity) {
+		Stock stock = stocks.get(itemId);
+		if (stock == null || quantity <= 0) {
+			return;
+		}
+		long current;
+		long moved;
+		do {
+			current = stock.state.get();
+			moved = Math.min(quantity, reserved(current));
+			if (moved == 0) {
+				return;
+			}
+		} while (!stock.state.compareAndSet(current, pack(available(current), reserved(current) - moved)));
+		markDirty(stock);
+	}
+
+	/**
+	 * Adds units to the item's available stock, starting to track the item
+	 * if it was not tracked yet.
+	 */
+	public void restock(long itemId, int quantity) {
+		if (quantity <= 0) {
+			throw new IllegalArgumentException("quantity must be positive");
+		}
+		Stock stock = stocks.get(itemId);
+		if (stock == null) {
+			itemStockRepository.save(new ItemStock(itemId, 0, 0));
+			stocks.putIfAbsent(itemId, new Stock(itemId, 0, 0));
+			stock = stocks.get(itemId);
+		}
+		long current;
+		do {
+			current = stock.state.get();
+			if (available(current) + quantity > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("stock would exceed " + Integer.MAX_VALUE);
+			}
+		} while (!stock.state.compareAndSet(current, pack(available(current) + quantity, reserved(current))));
+		markDirty(stock);
+	}
+
+	/**
+	 * Current counts, or {@code null} if the item is not tracked.
+	 */
+	public ItemStock level(long itemId) {
+		Stock stock = stocks.get(itemId);
+		if (stock == null) {
+			return null;
+		}
+		long current = stock.state.get();
+		return new ItemStock(itemId, available(current), reserved(current));
+	}
+
+	@Scheduled(fixedDelayString = "${inventory.flush-interval-ms:1000}")
+	public void scheduledFlush() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			logger.error("FAIL: scheduled inventory flush", e);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void flush() {
+		List<Object[]> batch = new ArrayList<>(flushBatchSize);
+		List<Stock> flushed = new ArrayList<>(flushBatchSize);
+		Stock stock;
+		while ((stock = dirty.poll()) != null) {
+			// clear the flag before reading, so a change racing with this
+			// flush queues the item again instead of being lost
+			stock.dirty.set(false);
+			long current = stock.state.get();
+			batch.add(new Object[] { available(current), reserved(current), stock.itemId });
+			flushed.add(stock);
+			if (batch.size() >= flushBatchSize) {
+				write(batch, flushed);
+			}
+		}
+		if (!batch.isEmpty()) {
+			write(batch, flushed);
+		}
+	}
+
+	private void write(List<Object[]> batch, List<Stock> flushed) {
+		try {
+			jdbcTemplate.batchUpdate("update item_stock set available = ?, reserved = ? where item_id = ?", batch);
+			flushedRows.add(batch.size());
+		} catch (RuntimeException e) {
+			for (Stock stock : flushed) {
+				markDirty(stock);
+			}
+			throw e;
+		} finally {
+			batch.clear();
+			flushed.clear();
+		}
+	}
+
+	private void markDirty(Stock stock) {
+		if (!stock.dirty.get() && stock.dirty.compareAndSet(false, true)) {
+			dirty.add(stock);
+		}
+	}
+
+	private static long pack(long available, long reserved) {
+		return (available << 32) | (reserved & LOW_MASK);
+	}
+
+	private static long available(long state) {
+		return state >>> 32;
+	}
+
+	private static long reserved(long state) {
+		return state & LOW_MASK;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("inventory.tracked", stocks, Map::size)
+			.description("Items with tracked stock")
+			.register(registry);
+		Gauge.builder("inventory.dirty", dirty, Queue::size)
+			.description("Items changed since the last flush")
+			.register(registry);
+		FunctionCounter.builder("inventory.reservations.rejected", rejectedReservations, LongAdder::doubleValue)
+			.description("Reservations refused for lack of stock")
+			.register(registry);
+		FunctionCounter.builder("inventory.flushed", flushedRows, LongAdder::doubleValue)
+			.description("Stock rows written to the database")
+			.register(registry);
+	}
+
+	private static final class Stock {
+		private final long itemId;
+		private final AtomicLong state;
+		private final AtomicBoolean dirty = new AtomicBoolean();
+
+		private Stock(long itemId, long available, long reserved) {
+			this.itemId = itemId;
+			this.state = new AtomicLong(pack(available, reserved));
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package com.example.demo.journal;
+
+import com.example.demo.order.OrderSubmittedEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Read model derived from the order journal. Projections registered as beans
+ * are restored from their latest snapshot at startup, catch up by replaying
+ * the journal from the snapshot's offset, and then receive every new event.
+ * <p>
+ * {@link #apply} and {@link #snapshot} are only called from the journal's
+ * writer thread; readers of the projection may run concurrently with them.
+ */
+public interface JournalProjection {
+
+	/**
+	 * Stable name, used for snapshot file names.
+	 */
+	String name();
+
+	void apply(OrderSubmittedEvent event);
+
+	/**
+	 * Current state as a value Jackson can serialize.
+	 */
+	Object snapshot();
+
+	/**
+	 * Replaces the current state with one produced by {@link #snapshot}.
+	 */
+	void restore(JsonNode snapshot);
+
+	/**
+	 * Recomputes the state from the database. Called at startup instead of
+	 * restoring and replaying when the journal is known to miss events.
+	 */
+	void rebuild();
+}
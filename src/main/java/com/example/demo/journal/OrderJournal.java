@@ -0,0 +1,347 @@
+package com.example.demo.journal;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.order.OrderSubmittedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Appends every committed order to a local {@link SegmentedLog} as JSON.
+ * Enabled with {@code order.journal.enabled=true}.
+ * <p>
+ * Events are queued and written by a single thread, which writes whatever
+ * has accumulated since its last write and then forces it to disk once.
+ * After each write it feeds the events to the registered
+ * {@link JournalProjection}s and, when one is due, snapshots them at the
+ * journal's current end offset.
+ * <p>
+ * A batch that cannot be written is retried with backoff up to
+ * {@code order.journal.max-attempts} times. If it still fails, the
+ * journal stops appending for the rest of the run rather than carry on
+ * with a gap: projections keep receiving events in memory, and a marker
+ * file makes the next start rebuild them from the database instead of
+ * restoring and replaying.
+ * <p>
+ * Committing requests never wait on a full queue for longer than
+ * {@code order.journal.offer-timeout-ms}. An order that does not fit in
+ * that time is left out, and journaling stops the same way, since the
+ * journal now has a gap.
+ */
+@Component
+@ConditionalOnProperty(name = "order.journal.enabled", havingValue = "true")
+public class OrderJournal implements MeterBinder {
+
+	private static final Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+
+	private static final int SNAPSHOTS_KEPT = 2;
+	private static final String REBUILD_MARKER = "rebuild-required";
+	private static final long RETRY_DELAY_MILLIS = 100;
+	private static final long MAX_RETRY_DELAY_MILLIS = 5_000;
+
+	private final ObjectMapper objectMapper;
+	private final List<JournalProjection> projections;
+	private final Path directory;
+	private final long segmentBytes;
+	private final int maxBatch;
+	private final int maxAttempts;
+	private final long offerTimeoutMillis;
+	private final BlockingQueue<OrderSubmittedEvent> queue;
+	private final Thread writer = new Thread(this::run, "order-journal");
+
+	private SegmentedLog log;
+	private volatile boolean running = true;
+	private volatile boolean snapshotDue;
+	private volatile boolean stopped;
+
+	private final LongAdder appended = new LongAdder();
+	private final LongAdder fsyncs = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	public OrderJournal(ObjectMapper objectMapper, ObjectProvider<JournalProjection> projections,
+			@Value("${order.journal.dir:data/journal}") String directory,
+			@Value("${order.journal.segment-bytes:67108864}") long segmentBytes,
+			@Value("${order.journal.queue-capacity:10000}") int queueCapacity,
+			@Value("${order.journal.max-batch:1000}") int maxBatch,
+			@Value("${order.journal.max-attempts:5}") int maxAttempts,
+			@Value("${order.journal.offer-timeout-ms:100}") long offerTimeoutMillis) {
+		this.objectMapper = objectMapper;
+		this.projections = projections.orderedStream().collect(Collectors.toList());
+		this.directory = Paths.get(directory);
+		this.segmentBytes = segmentBytes;
+		this.maxBatch = maxBatch;
+		this.maxAttempts = maxAttempts;
+		this.offerTimeoutMillis = offerTimeoutMillis;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+	}
+
+	/**
+	 * Opens the log, brings every projection up to date and starts the
+	 * writer. After a run that stopped journaling, projections are rebuilt
+	 * and snapshotted at the current end instead.
+	 */
+	@PostConstruct
+	public void open() throws IOException {
+		log = new SegmentedLog(directory.resolve("segments"), segmentBytes);
+		Files.createDirectories(directory.resolve("snapshots"));
+		Path marker = directory.resolve(REBUILD_MARKER);
+		boolean rebuild = Files.exists(marker);
+		for (JournalProjection projection : projections) {
+			if (rebuild) {
+				projection.rebuild();
+				logger.warn("Projection {} rebuilt, the journal before offset {} is missing orders",
+						projection.name(), log.endOffset());
+				continue;
+			}
+			long from = restoreLatestSnapshot(projection);
+			long end = replay(from, (offset, event) -> projection.apply(event));
+			logger.info("Projection {} restored from offset {} and replayed to {}", projection.name(), from, end);
+		}
+		if (rebuild && snapshotProjections()) {
+			Files.delete(marker);
+		}
+		writer.start();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onOrderSubmitted(OrderSubmittedEvent event) throws InterruptedException {
+		if (!running) {
+			logger.error("FAIL: journal closed, order {} not journaled", event.getOrderId());
+			return;
+		}
+		if (!queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+			dropped.increment();
+			logger.error("FAIL: journal queue full, order {} not journaled", event.getOrderId());
+			if (!stopped) {
+				stop(1, null);
+			}
+		}
+	}
+
+	/**
+	 * Streams journaled events from {@code fromOffset} to the current end,
+	 * passing each event with its offset. Returns the offset to resume from.
+	 */
+	public long replay(long fromOffset, BiConsumer<Long, OrderSubmittedEvent> consumer) throws IOException {
+		return log.replay(fromOffset, (offset, record) ->
+				consumer.accept(offset, objectMapper.readValue(record, OrderSubmittedEvent.class)));
+	}
+
+	public long endOffset() {
+		return log.endOffset();
+	}
+
+	@Scheduled(fixedDelayString = "${order.journal.snapshot-interval-ms:300000}")
+	public void requestSnapshot() {
+		snapshotDue = true;
+	}
+
+	/**
+	 * Whether appending stopped after a batch could not be written.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	@PreDestroy
+	public void close() throws InterruptedException, IOException {
+		running = false;
+		writer.join();
+		if (!stopped) {
+			snapshotProjections();
+		}
+		log.close();
+		logger.info("SUCCESS: order journal closed at offset {}", log.endOffset());
+	}
+
+	private void run() {
+		List<OrderSubmittedEvent> batch = new ArrayList<>(maxBatch);
+		while (running || !queue.isEmpty()) {
+			try {
+				OrderSubmittedEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch, maxBatch - 1);
+					if (!stopped) {
+						append(batch);
+					}
+					for (JournalProjection projection : projections) {
+						for (OrderSubmittedEvent event : batch) {
+							projection.apply(event);
+						}
+					}
+				}
+				if (snapshotDue) {
+					snapshotDue = false;
+					if (!stopped) {
+						snapshotProjections();
+					}
+				}
+			} catch (InterruptedException e) {
+				// keep draining; only close() ends the loop
+			} catch (RuntimeException e) {
+				logger.error("FAIL: applying {} orders to projections", batch.size(), e);
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Writes the batch, retrying with backoff, and stops journaling if it
+	 * cannot. The log removes whatever a failed attempt wrote, so a retry
+	 * never duplicates records.
+	 */
+	private void append(List<OrderSubmittedEvent> batch) {
+		List<byte[]> records = new ArrayList<>(batch.size());
+		try {
+			for (OrderSubmittedEvent event : batch) {
+				records.add(objectMapper.writeValueAsBytes(event));
+			}
+		} catch (IOException e) {
+			failures.increment();
+			stop(batch.size(), e);
+			return;
+		}
+		long delay = RETRY_DELAY_MILLIS;
+		for (int attempt = 1; ; attempt++) {
+			try {
+				log.append(records);
+				fsyncs.increment();
+				appended.add(batch.size());
+				return;
+			} catch (IOException e) {
+				failures.increment();
+				if (attempt >= maxAttempts) {
+					stop(batch.size(), e);
+					return;
+				}
+				logger.error("FAIL: journaling {} orders, attempt {} of {}", batch.size(), attempt, maxAttempts, e);
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				// retry now; only close() ends the writer
+			}
+			delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+		}
+	}
+
+	private void stop(int orders, Exception cause) {
+		stopped = true;
+		logger.error("FAIL: journaling {} orders, journal stopped; projections will be rebuilt on the next start",
+				orders, cause);
+		try {
+			Files.write(directory.resolve(REBUILD_MARKER), new byte[0]);
+		} catch (IOException e) {
+			logger.error("FAIL: writing {} marker, delete {} before the next start", REBUILD_MARKER,
+					directory.resolve("snapshots"), e);
+		}
+	}
+
+	/**
+	 * Snapshots every projection at the current end offset. Returns whether
+	 * all of them were written.
+	 */
+	private boolean snapshotProjections() {
+		long offset = log.endOffset();
+		boolean written = true;
+		for (JournalProjection projection : projections) {
+			try {
+				Path target = snapshotPath(projection, offset);
+				Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+				Files.write(temp, objectMapper.writeValueAsBytes(projection.snapshot()));
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+				TreeMap<Long, Path> snapshots = snapshotsOf(projection);
+				while (snapshots.size() > SNAPSHOTS_KEPT) {
+					Files.delete(snapshots.pollFirstEntry().getValue());
+				}
+			} catch (IOException | RuntimeException e) {
+				written = false;
+				logger.error("FAIL: snapshot of projection {} at offset {}", projection.name(), offset, e);
+			}
+		}
+		return written;
+	}
+
+	private long restoreLatestSnapshot(JournalProjection projection) throws IOException {
+		TreeMap<Long, Path> snapshots = snapshotsOf(projection);
+		if (snapshots.isEmpty()) {
+			return 0;
+		}
+		projection.restore(objectMapper.readTree(Files.readAllBytes(snapshots.lastEntry().getValue())));
+		return snapshots.lastKey();
+	}
+
+	private TreeMap<Long, Path> snapshotsOf(JournalProjection projection) throws IOException {
+		TreeMap<Long, Path> snapshots = new TreeMap<>();
+		String prefix = projection.name() + "-";
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory.resolve("snapshots"), prefix + "*.json")) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				snapshots.put(Long.parseLong(name.substring(prefix.length(), name.length() - ".json".length())), file);
+			}
+		}
+		return snapshots;
+	}
+
+	private Path snapshotPath(JournalProjection projection, long offset) {
+		return directory.resolve("snapshots").resolve(String.format("%s-%020d.json", projection.name(), offset));
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("order.journal.queue.depth", queue, BlockingQueue::size)
+			.description("Orders waiting to be journaled")
+			.register(registry);
+		Gauge.builder("order.journal.offset", this, OrderJournal::endOffset)
+			.description("Bytes written to the journal")
+			.register(registry);
+		FunctionCounter.builder("order.journal.appended", appended, LongAdder::doubleValue)
+			.description("Orders appended to the journal")
+			.register(registry);
+		FunctionCounter.builder("order.journal.fsyncs", fsyncs, LongAdder::doubleValue)
+			.description("Group commits forced to disk")
+			.register(registry);
+		FunctionCounter.builder("order.journal.failures", failures, LongAdder::doubleValue)
+			.description("Failed attempts to journal a batch")
+			.register(registry);
+		FunctionCounter.builder("order.journal.dropped", dropped, LongAdder::doubleValue)
+			.description("Orders left out because the queue stayed full")
+			.register(registry);
+		Gauge.builder("order.journal.stopped", this, journal -> journal.isStopped() ? 1 : 0)
+			.description("1 once journaling stopped after a batch could not be written")
+			.register(registry);
+	}
+}
@@ -0,0 +1,260 @@
+package com.example.demo.journal;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of opaque records split over fixed-size segment files.
+ * <p>
+ * Each record is stored as its length, the CRC32 of its payload and the
+ * payload itself. A record's offset is its byte position across all
+ * segments, and segment files are named after the offset of their first
+ * byte. {@link #append} writes a batch of records and forces it to disk
+ * once, so callers get group commit by batching. A record torn by a crash
+ * can only sit at the end of the newest segment; it is cut off on open.
+ * <p>
+ * Not thread-safe for appends; replay may run concurrently with a single
+ * appender.
+ */
+public class SegmentedLog implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(SegmentedLog.class);
+
+	static final int HEADER_BYTES = 8;
+	private static final String SUFFIX = ".log";
+
+	private final Path directory;
+	private final long segmentBytes;
+	private final NavigableMap<Long, Path> segments = new TreeMap<>();
+	private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+	private final CRC32 crc = new CRC32();
+
+	private FileChannel active;
+	private long activeBase;
+	private volatile long endOffset;
+	private boolean damaged;
+
+	public SegmentedLog(Path directory, long segmentBytes) throws IOException {
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		Files.createDirectories(directory);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				segments.put(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), file);
+			}
+		}
+		if (segments.isEmpty()) {
+			segments.put(0L, segmentPath(0));
+		}
+		activeBase = segments.lastKey();
+		active = FileChannel.open(segments.get(activeBase), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long valid = validLength(segments.get(activeBase));
+		if (valid < active.size()) {
+			logger.warn("Truncating torn record at offset {} in {}", activeBase + valid, segments.get(activeBase));
+			active.truncate(valid);
+			active.force(true);
+		}
+		active.position(valid);
+		endOffset = activeBase + valid;
+	}
+
+	/**
+	 * Offset the next appended record will get, which is also where a replay
+	 * that has seen everything should resume.
+	 */
+	public long endOffset() {
+		return endOffset;
+	}
+
+	/**
+	 * Writes {@code records} in order and forces them to disk before
+	 * returning. If writing fails, whatever part of the batch was written is
+	 * removed again, including segments it rolled into, so the same batch
+	 * can be retried without duplicating records. If even that fails, every
+	 * later append fails too.
+	 */
+	public void append(List<byte[]> records) throws IOException {
+		if (damaged) {
+			throw new IOException("Journal left inconsistent by an earlier failed append");
+		}
+		long base = activeBase;
+		long start = active.position();
+		try {
+			write(records);
+		} catch (IOException e) {
+			try {
+				rollBack(base, start);
+			} catch (IOException | RuntimeException rollBackFailure) {
+				damaged = true;
+				e.addSuppressed(rollBackFailure);
+			}
+			throw e;
+		}
+	}
+
+	private void rollBack(long base, long start) throws IOException {
+		if (activeBase != base) {
+			if (active.isOpen()) {
+				active.close();
+			}
+			synchronized (segments) {
+				NavigableMap<Long, Path> rolled = segments.tailMap(base, false);
+				for (Path segment : rolled.values()) {
+					Files.deleteIfExists(segment);
+				}
+				rolled.clear();
+			}
+			activeBase = base;
+			active = FileChannel.open(segments.get(base), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		active.truncate(start);
+		active.position(start);
+		active.force(true);
+	}
+
+	private void write(List<byte[]> records) throws IOException {
+		long position = active.position();
+		for (byte[] record : records) {
+			if (position > 0 && position + HEADER_BYTES + record.length > segmentBytes) {
+				roll();
+				position = 0;
+			}
+			crc.reset();
+			crc.update(record, 0, record.length);
+			header.clear();
+			header.putInt(record.length).putInt((int) crc.getValue()).flip();
+			ByteBuffer[] buffers = { header, ByteBuffer.wrap(record) };
+			while (buffers[0].hasRemaining() || buffers[1].hasRemaining()) {
+				active.write(buffers);
+			}
+			position += HEADER_BYTES + record.length;
+		}
+		active.force(false);
+		endOffset = activeBase + position;
+	}
+
+	/**
+	 * Calls {@code handler} for every record from {@code fromOffset}, which
+	 * must be a record boundary such as a previous {@link #endOffset()}, up
+	 * to the end offset at the time of the call. Returns the offset to resume
+	 * from.
+	 */
+	public long replay(long fromOffset, RecordHandler handler) throws IOException {
+		long end = endOffset;
+		List<Map.Entry<Long, Path>> toRead;
+		synchronized (segments) {
+			Long first = segments.floorKey(fromOffset);
+			toRead = new ArrayList<>((first == null ? segments : segments.tailMap(first, true)).entrySet());
+		}
+		long offset = Math.max(fromOffset, toRead.isEmpty() ? fromOffset : toRead.get(0).getKey());
+		for (int i = 0; i < toRead.size() && offset < end; i++) {
+			long base = toRead.get(i).getKey();
+			long limit = i + 1 < toRead.size() ? toRead.get(i + 1).getKey() : end;
+			offset = Math.max(offset, base);
+			try (FileChannel channel = FileChannel.open(toRead.get(i).getValue(), StandardOpenOption.READ)) {
+				channel.position(offset - base);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+				while (offset < limit) {
+					int length;
+					try {
+						length = in.readInt();
+					} catch (EOFException e) {
+						break;
+					}
+					int checksum = in.readInt();
+					byte[] record = new byte[length];
+					in.readFully(record);
+					CRC32 check = new CRC32();
+					check.update(record, 0, length);
+					if ((int) check.getValue() != checksum) {
+						throw new IOException("Corrupt journal record at offset " + offset);
+					}
+					handler.handle(offset, record);
+					offset += HEADER_BYTES + length;
+				}
+			}
+		}
+		return offset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		active.force(true);
+		active.close();
+	}
+
+	private void roll() throws IOException {
+		long nextBase = activeBase + active.position();
+		active.force(true);
+		active.close();
+		activeBase = nextBase;
+		Path path = segmentPath(activeBase);
+		active = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		synchronized (segments) {
+			segments.put(activeBase, path);
+		}
+	}
+
+	private Path segmentPath(long baseOffset) {
+		return directory.resolve(String.format("%020d%s", baseOffset, SUFFIX));
+	}
+
+	/**
+	 * Length of the prefix of {@code segment} made of complete records with
+	 * matching checksums.
+	 */
+	private static long validLength(Path segment) throws IOException {
+		long valid = 0;
+		if (!Files.exists(segment)) {
+			return 0;
+		}
+		long size = Files.size(segment);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 1 << 16))) {
+			CRC32 check = new CRC32();
+			while (true) {
+				int length = in.readInt();
+				int checksum = in.readInt();
+				if (length < 0 || valid + HEADER_BYTES + length > size) {
+					break;
+				}
+				byte[] record = new byte[length];
+				in.readFully(record);
+				check.reset();
+				check.update(record, 0, length);
+				if ((int) check.getValue() != checksum) {
+					break;
+				}
+				valid += HEADER_BYTES + length;
+			}
+		} catch (EOFException e) {
+			// torn or clean end of segment
+		}
+		return valid;
+	}
+
+	@FunctionalInterface
+	public interface RecordHandler {
+		void handle(long offset, byte[] record) throws IOException;
+	}
+}
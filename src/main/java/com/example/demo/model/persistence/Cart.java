@@ -1,18 +1,26 @@
 package com.example.demo.model.persistence;
 
-import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import javax.persistence.CascadeType;
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.Version;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
@@ -25,24 +33,44 @@ public class Cart {
 	@Column
 	private Long id;
 	
-	@ManyToMany
+	@OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
 	@JsonProperty
-	@Column
-    private List<Item> items;
+	private List<CartLine> lines = new ArrayList<>();
+
+	@Transient
+	private Map<Long, CartLine> linesByItemId;
 	
 	@OneToOne(mappedBy = "cart")
 	@JsonProperty
     private User user;
 	
 	@Column
+	@Convert(converter = MoneyConverter.class)
 	@JsonProperty
-	private BigDecimal total;
+	private Money total;
+
+	/**
+	 * When the contents last changed; abandoned carts are cleared some time
+	 * after this.
+	 */
+	@Column(name = "last_modified")
+	@JsonIgnore
+	private Instant lastModified;
+
+	/**
+	 * Bumped by every write, including the set-based ones in
+	 * {@code CartRepository}, so saving a cart that was loaded before another
+	 * write fails instead of overwriting it.
+	 */
+	@Version
+	@JsonIgnore
+	private Long version;
 	
-	public BigDecimal getTotal() {
+	public Money getTotal() {
 		return total;
 	}
 
-	public void setTotal(BigDecimal total) {
+	public void setTotal(Money total) {
 		this.total = total;
 	}
 
@@ -54,6 +82,22 @@ public class Cart {
 		this.user = user;
 	}
 
+	public Instant getLastModified() {
+		return lastModified;
+	}
+
+	public void setLastModified(Instant lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 	public Long getId() {
 		return id;
 	}
@@ -62,33 +106,155 @@ public class Cart {
 		this.id = id;
 	}
 
-	public List<Item> getItems() {
-		return items;
+	public List<CartLine> getLines() {
+		return lines;
 	}
 
-	public void setItems(List<Item> items) {
-		this.items = items;
+	/**
+	 * Number of units in the cart, summed over its lines.
+	 */
+	@JsonProperty
+	public int getItemCount() {
+		int count = 0;
+		for (CartLine line : lines) {
+			count += line.getQuantity();
+		}
+		return count;
 	}
-	
+
+	/**
+	 * Every unit in the cart, one entry per unit, as the cart used to expose it
+	 * before quantities were tracked per line. No longer part of the JSON
+	 * response; read {@code lines} and their quantities instead.
+	 *
+	 * @deprecated allocates one entry per unit, use {@link #getLines()}
+	 */
+	@Deprecated
+	@JsonIgnore
+	public List<Item> getItems() {
+		List<Item> units = new ArrayList<>();
+		for (CartLine line : lines) {
+			units.addAll(Collections.nCopies(line.getQuantity(), line.getItem()));
+		}
+		return units;
+	}
+
 	public void addItem(Item item) {
-		if(items == null) {
-			items = new ArrayList<>();
+		addItem(item, 1);
+	}
+
+	public void addItem(Item item, int quantity) {
+		addItem(item, quantity, 0);
+	}
+
+	/**
+	 * Adds {@code quantity} units, {@code reserved} of which hold a stock
+	 * reservation the cart now owns.
+	 */
+	public void addItem(Item item, int quantity, int reserved) {
+		if (quantity <= 0) {
+			return;
 		}
-		items.add(item);
-		if(total == null) {
-			total = new BigDecimal(0);
+		CartLine line = linesByItemId().get(item.getId());
+		if (line == null) {
+			line = new CartLine(this, item);
+			lines.add(line);
+			linesByItemId.put(item.getId(), line);
 		}
-		total = total.add(item.getPrice());
+		line.setQuantity(line.getQuantity() + quantity);
+		line.setReserved(line.getReserved() + Math.min(reserved, quantity));
+		if (total == null) {
+			total = Money.ZERO;
+		}
+		total = total.plus(line.getUnitPrice().times(quantity));
+		lastModified = Instant.now();
 	}
-	
-	public void removeItem(Item item) {
-		if(items == null) {
-			items = new ArrayList<>();
+
+	public int removeItem(Item item) {
+		return removeItem(item, 1);
+	}
+
+	/**
+	 * Removes up to {@code quantity} units of {@code item} and returns how
+	 * many of the removed units held a reservation, for the caller to
+	 * release. Units without one go first.
+	 */
+	public int removeItem(Item item, int quantity) {
+		CartLine line = linesByItemId().get(item.getId());
+		if (line == null || quantity <= 0) {
+			return 0;
+		}
+		int removed = Math.min(quantity, line.getQuantity());
+		int unreserved = line.getQuantity() - line.getReserved();
+		int released = Math.max(0, removed - unreserved);
+		line.setQuantity(line.getQuantity() - removed);
+		line.setReserved(line.getReserved() - released);
+		if (line.getQuantity() == 0) {
+			lines.remove(line);
+			linesByItemId.remove(item.getId());
 		}
-		items.remove(item);
-		if(total == null) {
-			total = new BigDecimal(0);
+		if (total == null) {
+			total = Money.ZERO;
+		}
+		total = total.minus(line.getUnitPrice().times(removed));
+		lastModified = Instant.now();
+		return released;
+	}
+
+	public void clear() {
+		lines.clear();
+		linesByItemId = null;
+		total = Money.ZERO;
+		lastModified = Instant.now();
+	}
+
+	/**
+	 * Moves the lines for the given items to their new unit prices and
+	 * recomputes the total. Returns whether anything changed.
+	 */
+	public boolean reprice(Map<Long, Money> unitPrices) {
+		boolean changed = false;
+		for (CartLine line : lines) {
+			Money price = unitPrices.get(line.getItem().getId());
+			if (price != null && !price.equals(line.getUnitPrice())) {
+				line.setUnitPrice(price);
+				changed = true;
+			}
+		}
+		if (changed) {
+			Money recomputed = Money.ZERO;
+			for (CartLine line : lines) {
+				recomputed = recomputed.plus(line.getUnitPrice().times(line.getQuantity()));
+			}
+			total = recomputed;
+		}
+		return changed;
+	}
+
+	/**
+	 * Detached copy of this cart with its own line objects, safe to hand to
+	 * another thread or to merge back through the repository.
+	 */
+	public Cart copy() {
+		Cart copy = new Cart();
+		copy.id = id;
+		copy.user = user;
+		copy.total = total;
+		copy.lastModified = lastModified;
+		copy.version = version;
+		for (CartLine line : lines) {
+			copy.lines.add(line.copyFor(copy));
+		}
+		return copy;
+	}
+
+	private Map<Long, CartLine> linesByItemId() {
+		if (linesByItemId == null) {
+			linesByItemId = new HashMap<>();
+			for (CartLine line : lines) {
+				linesByItemId.put(line.getItem().getId(), line);
+			}
 		}
-		total = total.subtract(item.getPrice());
+		return linesByItemId;
 	}
 }
@@ -0,0 +1,123 @@
+package com.example.demo.model.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.ManyToOne;
+import javax.persistence.MapsId;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One row per distinct item in a cart. The quantity is held as a counter so
+ * adding or removing many units of the same item touches a single row.
+ */
+@Entity
+@Table(name = "cart_line")
+public class CartLine {
+
+	@EmbeddedId
+	@JsonIgnore
+	private CartLineId id = new CartLineId();
+
+	@MapsId("cartId")
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JsonIgnore
+	private Cart cart;
+
+	@MapsId("itemId")
+	@ManyToOne
+	@JsonProperty
+	private Item item;
+
+	@Column(nullable = false)
+	@JsonProperty
+	private int quantity;
+
+	/**
+	 * How many of the units hold a stock reservation. Units added while the
+	 * item was not tracked hold none, and must not release or sell anyone
+	 * else's.
+	 */
+	@Column(nullable = false)
+	@JsonIgnore
+	private int reserved;
+
+	@Column(nullable = false)
+	@Convert(converter = MoneyConverter.class)
+	@JsonProperty
+	private Money unitPrice;
+
+	public CartLine() {
+	}
+
+	public CartLine(Cart cart, Item item) {
+		this.id = new CartLineId(cart.getId(), item.getId());
+		this.cart = cart;
+		this.item = item;
+		this.unitPrice = item.getPrice();
+	}
+
+	CartLine copyFor(Cart owner) {
+		CartLine copy = new CartLine();
+		copy.id = new CartLineId(id.getCartId(), id.getItemId());
+		copy.cart = owner;
+		copy.item = item;
+		copy.quantity = quantity;
+		copy.reserved = reserved;
+		copy.unitPrice = unitPrice;
+		return copy;
+	}
+
+	public CartLineId getId() {
+		return id;
+	}
+
+	public void setId(CartLineId id) {
+		this.id = id;
+	}
+
+	public Cart getCart() {
+		return cart;
+	}
+
+	public void setCart(Cart cart) {
+		this.cart = cart;
+	}
+
+	public Item getItem() {
+		return item;
+	}
+
+	public void setItem(Item item) {
+		this.item = item;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+
+	public int getReserved() {
+		return reserved;
+	}
+
+	public void setReserved(int reserved) {
+		this.reserved = reserved;
+	}
+
+	public Money getUnitPrice() {
+		return unitPrice;
+	}
+
+	public void setUnitPrice(Money unitPrice) {
+		this.unitPrice = unitPrice;
+	}
+}
@@ -0,0 +1,58 @@
+package com.example.demo.model.persistence;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+@Embeddable
+public class CartLineId implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Column(name = "cart_id")
+	private Long cartId;
+
+	@Column(name = "item_id")
+	private Long itemId;
+
+	public CartLineId() {
+	}
+
+	public CartLineId(Long cartId, Long itemId) {
+		this.cartId = cartId;
+		this.itemId = itemId;
+	}
+
+	public Long getCartId() {
+		return cartId;
+	}
+
+	public void setCartId(Long cartId) {
+		this.cartId = cartId;
+	}
+
+	public Long getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(Long itemId) {
+		this.itemId = itemId;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(cartId, itemId);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		CartLineId other = (CartLineId) obj;
+		return Objects.equals(cartId, other.cartId) && Objects.equals(itemId, other.itemId);
+	}
+}
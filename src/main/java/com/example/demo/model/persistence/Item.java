@@ -1,18 +1,28 @@
 package com.example.demo.model.persistence;
 
-import java.math.BigDecimal;
-
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 
+import com.example.demo.catalog.ItemChangeListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
-@Table(name = "item")
+@EntityListeners(ItemChangeListener.class)
+@Table(name = "item", indexes = {
+		@Index(name = "idx_item_name", columnList = "name"),
+		@Index(name = "idx_item_price_id", columnList = "price, id") })
 public class Item {
 
 	@Id
@@ -25,12 +35,21 @@ public class Item {
 	private String name;
 	
 	@Column(nullable = false)
+	@Convert(converter = MoneyConverter.class)
 	@JsonProperty
-	private BigDecimal price;
+	private Money price;
 	
 	@Column(nullable = false)
 	@JsonProperty
 	private String description;
+
+	/**
+	 * Price as last read from or written to the database, so an update can
+	 * tell whether the price is what changed.
+	 */
+	@Transient
+	@JsonIgnore
+	private Money persistedPrice;
 	
 	@Override
 	public int hashCode() {
@@ -73,11 +92,11 @@ public class Item {
 		this.name = name;
 	}
 
-	public BigDecimal getPrice() {
+	public Money getPrice() {
 		return price;
 	}
 
-	public void setPrice(BigDecimal price) {
+	public void setPrice(Money price) {
 		this.price = price;
 	}
 
@@ -88,6 +107,18 @@ public class Item {
 	public void setDescription(String description) {
 		this.description = description;
 	}
+
+	public Money getPersistedPrice() {
+		return persistedPrice;
+	}
+
+	// entity listeners run before this, so they still see the old price
+	@PostLoad
+	@PostPersist
+	@PostUpdate
+	void rememberPersistedPrice() {
+		persistedPrice = price;
+	}
 	
 	
 	
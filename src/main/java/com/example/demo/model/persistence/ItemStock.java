@@ -0,0 +1,69 @@
+package com.example.demo.model.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Stock level of an item whose inventory is tracked. Items without a row are
+ * never out of stock.
+ */
+@Entity
+@Table(name = "item_stock")
+public class ItemStock {
+
+	@Id
+	@Column(name = "item_id")
+	@JsonProperty
+	private Long itemId;
+
+	/**
+	 * Units on hand that are not held by any cart.
+	 */
+	@Column(nullable = false)
+	@JsonProperty
+	private long available;
+
+	/**
+	 * Units held by carts but not yet sold.
+	 */
+	@Column(nullable = false)
+	@JsonProperty
+	private long reserved;
+
+	public ItemStock() {
+	}
+
+	public ItemStock(Long itemId, long available, long reserved) {
+		this.itemId = itemId;
+		this.available = available;
+		this.reserved = reserved;
+	}
+
+	public Long getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(Long itemId) {
+		this.itemId = itemId;
+	}
+
+	public long getAvailable() {
+		return available;
+	}
+
+	public void setAvailable(long available) {
+		this.available = available;
+	}
+
+	public long getReserved() {
+		return reserved;
+	}
+
+	public void setReserved(long reserved) {
+		this.reserved = reserved;
+	}
+}
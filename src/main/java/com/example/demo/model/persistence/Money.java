@@ -0,0 +1,108 @@
+package com.example.demo.model.persistence;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Immutable amount of money held as a count of minor units (cents) at a
+ * fixed scale of two. Arithmetic is plain {@code long} math, so totals can
+ * be accumulated without allocating a {@link BigDecimal} per step.
+ * <p>
+ * Serialized to JSON and stored in the database as a decimal number, the
+ * same as the {@link BigDecimal} fields it replaces.
+ */
+public final class Money extends Number implements Comparable<Money> {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int SCALE = 2;
+
+	public static final Money ZERO = new Money(0);
+
+	private final long minorUnits;
+
+	private Money(long minorUnits) {
+		this.minorUnits = minorUnits;
+	}
+
+	public static Money ofMinor(long minorUnits) {
+		return minorUnits == 0 ? ZERO : new Money(minorUnits);
+	}
+
+	@JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+	public static Money of(BigDecimal amount) {
+		return ofMinor(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+	}
+
+	public static Money parse(String amount) {
+		return of(new BigDecimal(amount));
+	}
+
+	public long getMinorUnits() {
+		return minorUnits;
+	}
+
+	public Money plus(Money other) {
+		return other.minorUnits == 0 ? this : ofMinor(Math.addExact(minorUnits, other.minorUnits));
+	}
+
+	public Money minus(Money other) {
+		return other.minorUnits == 0 ? this : ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+	}
+
+	public Money times(long quantity) {
+		return quantity == 1 ? this : ofMinor(Math.multiplyExact(minorUnits, quantity));
+	}
+
+	@JsonValue
+	public BigDecimal toBigDecimal() {
+		return BigDecimal.valueOf(minorUnits, SCALE);
+	}
+
+	@Override
+	public int intValue() {
+		return (int) longValue();
+	}
+
+	@Override
+	public long longValue() {
+		return minorUnits / 100;
+	}
+
+	@Override
+	public float floatValue() {
+		return (float) doubleValue();
+	}
+
+	@Override
+	public double doubleValue() {
+		return minorUnits / 100.0;
+	}
+
+	@Override
+	public int compareTo(Money other) {
+		return Long.compare(minorUnits, other.minorUnits);
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(minorUnits);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		return minorUnits == ((Money) obj).minorUnits;
+	}
+
+	@Override
+	public String toString() {
+		return toBigDecimal().toPlainString();
+	}
+}
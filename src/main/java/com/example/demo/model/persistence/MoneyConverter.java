@@ -0,0 +1,23 @@
+package com.example.demo.model.persistence;
+
+import java.math.BigDecimal;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Maps {@link Money} onto the existing decimal columns.
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+	@Override
+	public BigDecimal convertToDatabaseColumn(Money attribute) {
+		return attribute == null ? null : attribute.toBigDecimal();
+	}
+
+	@Override
+	public Money convertToEntityAttribute(BigDecimal dbData) {
+		return dbData == null ? null : Money.of(dbData);
+	}
+}
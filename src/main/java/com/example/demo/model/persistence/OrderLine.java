@@ -0,0 +1,101 @@
+package com.example.demo.model.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.ManyToOne;
+import javax.persistence.MapsId;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One row per distinct item in an order. The item's name and price are
+ * copied at purchase time, so an order reads the same however the catalog
+ * changes later; the item id is kept for reference but is not a foreign key.
+ */
+@Entity
+@Table(name = "order_line")
+public class OrderLine {
+
+	@EmbeddedId
+	@JsonIgnore
+	private OrderLineId id = new OrderLineId();
+
+	@MapsId("orderId")
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JsonIgnore
+	private UserOrder order;
+
+	@Column(nullable = false)
+	@JsonProperty
+	private String itemName;
+
+	@Column(nullable = false)
+	@JsonProperty
+	private int quantity;
+
+	@Column(nullable = false)
+	@Convert(converter = MoneyConverter.class)
+	@JsonProperty
+	private Money unitPrice;
+
+	public OrderLine() {
+	}
+
+	public OrderLine(UserOrder order, CartLine cartLine) {
+		this.id = new OrderLineId(order.getId(), cartLine.getItem().getId());
+		this.order = order;
+		this.itemName = cartLine.getItem().getName();
+		this.quantity = cartLine.getQuantity();
+		this.unitPrice = cartLine.getUnitPrice();
+	}
+
+	public OrderLineId getId() {
+		return id;
+	}
+
+	public void setId(OrderLineId id) {
+		this.id = id;
+	}
+
+	@JsonProperty
+	public Long getItemId() {
+		return id.getItemId();
+	}
+
+	public UserOrder getOrder() {
+		return order;
+	}
+
+	public void setOrder(UserOrder order) {
+		this.order = order;
+	}
+
+	public String getItemName() {
+		return itemName;
+	}
+
+	public void setItemName(String itemName) {
+		this.itemName = itemName;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+
+	public Money getUnitPrice() {
+		return unitPrice;
+	}
+
+	public void setUnitPrice(Money unitPrice) {
+		this.unitPrice = unitPrice;
+	}
+}
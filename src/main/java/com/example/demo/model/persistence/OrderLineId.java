@@ -0,0 +1,58 @@
+package com.example.demo.model.persistence;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+@Embeddable
+public class OrderLineId implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Column(name = "order_id")
+	private Long orderId;
+
+	@Column(name = "item_id")
+	private Long itemId;
+
+	public OrderLineId() {
+	}
+
+	public OrderLineId(Long orderId, Long itemId) {
+		this.orderId = orderId;
+		this.itemId = itemId;
+	}
+
+	public Long getOrderId() {
+		return orderId;
+	}
+
+	public void setOrderId(Long orderId) {
+		this.orderId = orderId;
+	}
+
+	public Long getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(Long itemId) {
+		this.itemId = itemId;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(orderId, itemId);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		OrderLineId other = (OrderLineId) obj;
+		return Objects.equals(orderId, other.orderId) && Objects.equals(itemId, other.itemId);
+	}
+}
@@ -0,0 +1,40 @@
+package com.example.demo.model.persistence;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A token revoked before its expiry. Rows are only needed until the token
+ * would have expired anyway.
+ */
+@Entity
+@Table(name = "revoked_token")
+public class RevokedToken {
+
+	@Id
+	@Column(name = "token_id", length = 64)
+	private String tokenId;
+
+	@Column(name = "expires_at", nullable = false)
+	private Instant expiresAt;
+
+	public RevokedToken() {
+	}
+
+	public RevokedToken(String tokenId, Instant expiresAt) {
+		this.tokenId = tokenId;
+		this.expiresAt = expiresAt;
+	}
+
+	public String getTokenId() {
+		return tokenId;
+	}
+
+	public Instant getExpiresAt() {
+		return expiresAt;
+	}
+}
@@ -1,10 +1,95 @@
 package com.example.demo.model.persistence.repositories;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.User;
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
 	Cart findByUser(User user);
+
+	/**
+	 * Carts that hold anything, with their owners; read once at startup to
+	 * schedule their expiry.
+	 */
+	@Query(value = "select c.id as cartId, u.id as userId, u.username as username, c.last_modified as lastModified"
+			+ " from cart c join user u on u.cart_id = c.id"
+			+ " where exists (select 1 from cart_line l where l.cart_id = c.id)", nativeQuery = true)
+	List<ActiveCartRow> findActiveCarts();
+
+	/**
+	 * Locks the carts among {@code ids} that have not changed since
+	 * {@code cutoff} and returns their ids.
+	 */
+	@Query(value = "select id from cart where id in (:ids)"
+			+ " and (last_modified is null or last_modified < :cutoff) for update", nativeQuery = true)
+	List<Long> lockUnchangedSince(@Param("ids") Collection<Long> ids, @Param("cutoff") Instant cutoff);
+
+	@Query(value = "select cart_id as cartId, item_id as itemId, quantity, reserved from cart_line"
+			+ " where cart_id in (:ids)", nativeQuery = true)
+	List<LineRow> findLines(@Param("ids") Collection<Long> ids);
+
+	@Modifying
+	@Query(value = "delete from cart_line where cart_id in (:ids)", nativeQuery = true)
+	int deleteLines(@Param("ids") Collection<Long> ids);
+
+	@Modifying
+	@Query(value = "update cart set total = 0, version = version + 1 where id in (:ids)", nativeQuery = true)
+	int resetTotals(@Param("ids") Collection<Long> ids);
+
+	/**
+	 * Moves cart lines for the given items to the items' current prices.
+	 */
+	@Modifying
+	@Query(value = "update cart_line set unit_price = (select i.price from item i where i.id = cart_line.item_id)"
+			+ " where item_id in (:itemIds)"
+			+ " and unit_price <> (select i.price from item i where i.id = cart_line.item_id)", nativeQuery = true)
+	int repriceLines(@Param("itemIds") Collection<Long> itemIds);
+
+	/**
+	 * Recomputes the total of every cart holding any of the given items and
+	 * bumps its version, so a save of a copy loaded before this fails.
+	 */
+	@Modifying
+	@Query(value = "update cart set total = (select coalesce(sum(l.quantity * l.unit_price), 0)"
+			+ " from cart_line l where l.cart_id = cart.id), version = version + 1"
+			+ " where id in (select cart_id from cart_line where item_id in (:itemIds))", nativeQuery = true)
+	int recomputeTotals(@Param("itemIds") Collection<Long> itemIds);
+
+	@Query(value = "select id as cartId, version from cart where id in (:ids)", nativeQuery = true)
+	List<VersionRow> findVersions(@Param("ids") Collection<Long> ids);
+
+	interface ActiveCartRow {
+		long getCartId();
+
+		long getUserId();
+
+		String getUsername();
+
+		Timestamp getLastModified();
+	}
+
+	interface VersionRow {
+		long getCartId();
+
+		long getVersion();
+	}
+
+	interface LineRow {
+		long getCartId();
+
+		long getItemId();
+
+		int getQuantity();
+
+		int getReserved();
+	}
 }
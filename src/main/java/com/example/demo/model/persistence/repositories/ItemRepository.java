@@ -1,12 +1,37 @@
 package com.example.demo.model.persistence.repositories;
 
+import java.math.BigDecimal;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
 	public List<Item> findByName(String name);
 
+	@Query("select i from Item i where i.id > :afterId"
+			+ " and i.price >= :minPrice and i.price <= :maxPrice"
+			+ " order by i.id")
+	public List<Item> findPageOrderById(@Param("afterId") long afterId,
+			@Param("minPrice") Money minPrice, @Param("maxPrice") Money maxPrice, Pageable pageable);
+
+	@Query("select i from Item i where (i.price > :afterPrice or (i.price = :afterPrice and i.id > :afterId))"
+			+ " and i.price >= :minPrice and i.price <= :maxPrice"
+			+ " order by i.price, i.id")
+	public List<Item> findPageOrderByPrice(@Param("afterPrice") Money afterPrice, @Param("afterId") long afterId,
+			@Param("minPrice") Money minPrice, @Param("maxPrice") Money maxPrice, Pageable pageable);
+
+	@Query(value = "select id, price from item", nativeQuery = true)
+	public List<PriceRow> findAllPrices();
+
+	interface PriceRow {
+		long getId();
+
+		BigDecimal getPrice();
+	}
 }
@@ -1,12 +1,72 @@
 package com.example.demo.model.persistence.repositories;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
 
 public interface OrderRepository extends JpaRepository<UserOrder, Long> {
 	List<UserOrder> findByUser(User user);
+
+	/**
+	 * Ids of the user's orders older than {@code beforeId}, newest first.
+	 * Paging over ids keeps the limit in SQL; applying it to a query that
+	 * fetch-joins a collection would make Hibernate paginate in memory.
+	 */
+	@Query("select o.id from UserOrder o where o.user.id = :userId and o.id < :beforeId order by o.id desc")
+	List<Long> findIdPage(@Param("userId") long userId, @Param("beforeId") long beforeId, Pageable pageable);
+
+	@Query("select distinct o from UserOrder o join fetch o.user left join fetch o.lines"
+			+ " where o.id in :ids order by o.id desc")
+	@QueryHints(@QueryHint(name = "hibernate.query.passDistinctThrough", value = "false"))
+	List<UserOrder> findAllWithLinesByIdIn(@Param("ids") Collection<Long> ids);
+
+	@Query(value = "select count(*) as orderCount, coalesce(sum(total), 0) as totalSpent"
+			+ " from user_order where user_id = :userId", nativeQuery = true)
+	Totals summarize(@Param("userId") long userId);
+
+	@Query(value = "select item_id as itemId, max(item_name) as itemName, sum(quantity) as unitsSold,"
+			+ " sum(quantity * unit_price) as revenue from order_line group by item_id", nativeQuery = true)
+	List<ItemSalesRow> sumSalesByItem();
+
+	@Query(value = "select o.user_id as userId, u.username as username, count(*) as orderCount,"
+			+ " coalesce(sum(o.total), 0) as totalSpent from user_order o join user u on u.id = o.user_id"
+			+ " group by o.user_id, u.username", nativeQuery = true)
+	List<UserSpendRow> sumSpendByUser();
+
+	interface Totals {
+		long getOrderCount();
+
+		BigDecimal getTotalSpent();
+	}
+
+	interface ItemSalesRow {
+		long getItemId();
+
+		String getItemName();
+
+		long getUnitsSold();
+
+		BigDecimal getRevenue();
+	}
+
+	interface UserSpendRow {
+		long getUserId();
+
+		String getUsername();
+
+		long getOrderCount();
+
+		BigDecimal getTotalSpent();
+	}
 }
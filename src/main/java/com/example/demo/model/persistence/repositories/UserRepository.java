@@ -1,9 +1,35 @@
 package com.example.demo.model.persistence.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.model.persistence.User;
+import com.example.demo.user.UserIdentity;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 	User findByUsername(String username);
+
+	@Query("select new com.example.demo.user.UserIdentity(u.id, u.username, c.id) "
+			+ "from User u left join u.cart c where u.username = :username")
+	UserIdentity findIdentityByUsername(@Param("username") String username);
+
+	/**
+	 * Just what login needs, without loading the user's cart.
+	 */
+	@Query("select u.username as username, u.password as password from User u where u.username = :username")
+	Credentials findCredentialsByUsername(@Param("username") String username);
+
+	@Transactional
+	@Modifying
+	@Query("update User u set u.password = :password where u.username = :username")
+	int updatePassword(@Param("username") String username, @Param("password") String password);
+
+	interface Credentials {
+		String getUsername();
+
+		String getPassword();
+	}
 }
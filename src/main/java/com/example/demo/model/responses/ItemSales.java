@@ -0,0 +1,45 @@
+package com.example.demo.model.responses;
+
+import com.example.demo.model.persistence.Money;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ItemSales {
+
+	@JsonProperty
+	private final long itemId;
+
+	@JsonProperty
+	private final String itemName;
+
+	@JsonProperty
+	private final long unitsSold;
+
+	@JsonProperty
+	private final Money revenue;
+
+	@JsonCreator
+	public ItemSales(@JsonProperty("itemId") long itemId, @JsonProperty("itemName") String itemName,
+			@JsonProperty("unitsSold") long unitsSold, @JsonProperty("revenue") Money revenue) {
+		this.itemId = itemId;
+		this.itemName = itemName;
+		this.unitsSold = unitsSold;
+		this.revenue = revenue;
+	}
+
+	public long getItemId() {
+		return itemId;
+	}
+
+	public String getItemName() {
+		return itemName;
+	}
+
+	public long getUnitsSold() {
+		return unitsSold;
+	}
+
+	public Money getRevenue() {
+		return revenue;
+	}
+}
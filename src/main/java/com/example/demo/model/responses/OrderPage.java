@@ -0,0 +1,43 @@
+package com.example.demo.model.responses;
+
+import java.util.List;
+
+import com.example.demo.model.persistence.UserOrder;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class OrderPage {
+
+	@JsonProperty
+	private List<UserOrder> orders;
+
+	@JsonProperty
+	private String nextCursor;
+
+	public OrderPage() {
+	}
+
+	public OrderPage(List<UserOrder> orders, String nextCursor) {
+		this.orders = orders;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<UserOrder> getOrders() {
+		return orders;
+	}
+
+	public void setOrders(List<UserOrder> orders) {
+		this.orders = orders;
+	}
+
+	/**
+	 * Cursor to pass as {@code before} to fetch the next, older page, or
+	 * {@code null} on the last page.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+}
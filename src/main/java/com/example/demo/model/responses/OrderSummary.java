@@ -0,0 +1,37 @@
+package com.example.demo.model.responses;
+
+import com.example.demo.model.persistence.Money;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class OrderSummary {
+
+	@JsonProperty
+	private long orderCount;
+
+	@JsonProperty
+	private Money totalSpent;
+
+	public OrderSummary() {
+	}
+
+	public OrderSummary(long orderCount, Money totalSpent) {
+		this.orderCount = orderCount;
+		this.totalSpent = totalSpent;
+	}
+
+	public long getOrderCount() {
+		return orderCount;
+	}
+
+	public void setOrderCount(long orderCount) {
+		this.orderCount = orderCount;
+	}
+
+	public Money getTotalSpent() {
+		return totalSpent;
+	}
+
+	public void setTotalSpent(Money totalSpent) {
+		this.totalSpent = totalSpent;
+	}
+}
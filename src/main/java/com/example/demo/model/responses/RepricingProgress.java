@@ -0,0 +1,74 @@
+package com.example.demo.model.responses;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class RepricingProgress {
+
+	@JsonProperty
+	private boolean running;
+
+	/**
+	 * Items whose new price has not reached carts yet.
+	 */
+	@JsonProperty
+	private long pendingItems;
+
+	@JsonProperty
+	private long repricedItems;
+
+	@JsonProperty
+	private long linesUpdated;
+
+	@JsonProperty
+	private long cartsUpdated;
+
+	@JsonProperty
+	private long failedChunks;
+
+	@JsonProperty
+	private Instant lastCompletedAt;
+
+	public RepricingProgress() {
+	}
+
+	public RepricingProgress(boolean running, long pendingItems, long repricedItems, long linesUpdated,
+			long cartsUpdated, long failedChunks, Instant lastCompletedAt) {
+		this.running = running;
+		this.pendingItems = pendingItems;
+		this.repricedItems = repricedItems;
+		this.linesUpdated = linesUpdated;
+		this.cartsUpdated = cartsUpdated;
+		this.failedChunks = failedChunks;
+		this.lastCompletedAt = lastCompletedAt;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public long getPendingItems() {
+		return pendingItems;
+	}
+
+	public long getRepricedItems() {
+		return repricedItems;
+	}
+
+	public long getLinesUpdated() {
+		return linesUpdated;
+	}
+
+	public long getCartsUpdated() {
+		return cartsUpdated;
+	}
+
+	public long getFailedChunks() {
+		return failedChunks;
+	}
+
+	public Instant getLastCompletedAt() {
+		return lastCompletedAt;
+	}
+}
@@ -0,0 +1,45 @@
+package com.example.demo.model.responses;
+
+import com.example.demo.model.persistence.Money;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class UserSpend {
+
+	@JsonProperty
+	private final long userId;
+
+	@JsonProperty
+	private final String username;
+
+	@JsonProperty
+	private final long orderCount;
+
+	@JsonProperty
+	private final Money totalSpent;
+
+	@JsonCreator
+	public UserSpend(@JsonProperty("userId") long userId, @JsonProperty("username") String username,
+			@JsonProperty("orderCount") long orderCount, @JsonProperty("totalSpent") Money totalSpent) {
+		this.userId = userId;
+		this.username = username;
+		this.orderCount = orderCount;
+		this.totalSpent = totalSpent;
+	}
+
+	public long getUserId() {
+		return userId;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public long getOrderCount() {
+		return orderCount;
+	}
+
+	public Money getTotalSpent() {
+		return totalSpent;
+	}
+}
@@ -0,0 +1,265 @@
+package com.example.demo.order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Accepts orders into a bounded queue and writes them from a single thread
+ * in batches, one transaction per batch. Enabled with
+ * {@code order.submit.async.enabled=true}.
+ * <p>
+ * When the queue is full, {@link #submit} waits up to
+ * {@code order.submit.async.offer-timeout-ms} for room and then gives up.
+ * On shutdown, new submissions are refused and everything already queued
+ * is written before the bean is destroyed. A submission holds the read side
+ * of {@code admission} from its check to its enqueue, so shutdown cannot
+ * slip in between and leave an order queued behind a stopped writer.
+ * <p>
+ * Whatever must only happen once the order is in the database, or must be
+ * undone if it never gets there, goes in an {@link Outcome}. It runs on the
+ * writer thread after the transaction, before the submission's status
+ * changes, so a client that sees WRITTEN or FAILED sees its effects too.
+ */
+@Component
+@ConditionalOnProperty(name = "order.submit.async.enabled", havingValue = "true")
+public class AsyncOrderWriter implements MeterBinder {
+
+	private static final Logger logger = LoggerFactory.getLogger(AsyncOrderWriter.class);
+
+	private final OrderRepository orderRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final BlockingQueue<Pending> queue;
+	private final int batchSize;
+	private final long offerTimeoutMillis;
+	private final BoundedCache<String, OrderSubmission> submissions;
+	private final Thread writer = new Thread(this::run, "order-writer");
+	private final ReadWriteLock admission = new ReentrantReadWriteLock();
+
+	private volatile boolean accepting = true;
+	private volatile boolean running = true;
+
+	private final LongAdder writtenOrders = new LongAdder();
+	private final LongAdder failedOrders = new LongAdder();
+	private final LongAdder rejectedOrders = new LongAdder();
+
+	public AsyncOrderWriter(OrderRepository orderRepository, PlatformTransactionManager transactionManager,
+			@Value("${order.submit.async.queue-capacity:10000}") int queueCapacity,
+			@Value("${order.submit.async.batch-size:50}") int batchSize,
+			@Value("${order.submit.async.offer-timeout-ms:100}") long offerTimeoutMillis,
+			@Value("${order.submit.async.status-ttl-ms:3600000}") long statusTtlMillis) {
+		this.orderRepository = orderRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.batchSize = batchSize;
+		this.offerTimeoutMillis = offerTimeoutMillis;
+		this.submissions = new BoundedCache<>(Math.max(queueCapacity, 100_000), statusTtlMillis);
+	}
+
+	@PostConstruct
+	public void start() {
+		writer.setDaemon(false);
+		writer.start();
+	}
+
+	/**
+	 * Queues {@code order} for writing. Returns {@code null} if the queue
+	 * stayed full for the whole offer timeout or the writer is shutting
+	 * down.
+	 */
+	public OrderSubmission submit(UserOrder order) {
+		return submit(order, Outcome.NONE);
+	}
+
+	/**
+	 * Queues {@code order} like {@link #submit(UserOrder)} and reports how
+	 * the write ended to {@code outcome}. Nothing is reported for a
+	 * submission that was not accepted.
+	 */
+	public OrderSubmission submit(UserOrder order, Outcome outcome) {
+		OrderSubmission submission = new OrderSubmission(UUID.randomUUID().toString());
+		boolean queued;
+		admission.readLock().lock();
+		try {
+			queued = accepting
+					&& queue.offer(new Pending(order, submission, outcome), offerTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			queued = false;
+		} finally {
+			admission.readLock().unlock();
+		}
+		if (!queued) {
+			rejectedOrders.increment();
+			return null;
+		}
+		submissions.put(submission.getId(), submission);
+		return submission;
+	}
+
+	public OrderSubmission status(String submissionId) {
+		return submissions.getIfPresent(submissionId);
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		// waits out submissions already past the check, at most one offer timeout
+		admission.writeLock().lock();
+		try {
+			accepting = false;
+			running = false;
+		} finally {
+			admission.writeLock().unlock();
+		}
+		writer.join();
+		logger.info("SUCCESS: order queue drained on shutdown, {} orders written in total", writtenOrders.sum());
+	}
+
+	private void run() {
+		List<Pending> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+			} catch (InterruptedException e) {
+				// keep draining; only shutdown() ends the loop
+				continue;
+			}
+			queue.drainTo(batch, batchSize - 1);
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	private void write(List<Pending> batch) {
+		List<UserOrder> orders = new ArrayList<>(batch.size());
+		for (Pending pending : batch) {
+			orders.add(pending.order);
+		}
+		try {
+			transactionTemplate.execute(status -> orderRepository.saveAll(orders));
+			for (Pending pending : batch) {
+				pending.written();
+			}
+			writtenOrders.add(batch.size());
+		} catch (RuntimeException e) {
+			logger.error("FAIL: writing batch of {} orders, retrying one by one", batch.size(), e);
+			for (Pending pending : batch) {
+				writeOne(pending);
+			}
+		}
+	}
+
+	private void writeOne(Pending pending) {
+		// the failed batch may have assigned an id that was rolled back
+		pending.order.setId(null);
+		try {
+			transactionTemplate.execute(status -> orderRepository.save(pending.order));
+			pending.written();
+			writtenOrders.increment();
+		} catch (RuntimeException e) {
+			logger.error("FAIL: order submission {} could not be written", pending.submission.getId(), e);
+			pending.failed();
+			failedOrders.increment();
+		}
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("order.submit.queue.depth", this, AsyncOrderWriter::getQueueDepth)
+			.description("Orders accepted but not yet written")
+			.register(registry);
+		FunctionCounter.builder("order.submit.written", writtenOrders, LongAdder::doubleValue)
+			.description("Orders written by the async writer")
+			.register(registry);
+		FunctionCounter.builder("order.submit.failed", failedOrders, LongAdder::doubleValue)
+			.description("Orders the async writer could not write")
+			.register(registry);
+		FunctionCounter.builder("order.submit.rejected", rejectedOrders, LongAdder::doubleValue)
+			.description("Submissions refused because the queue was full or shutting down")
+			.register(registry);
+	}
+
+	/**
+	 * How a queued order's write ended.
+	 */
+	public interface Outcome {
+
+		Outcome NONE = new Outcome() {
+			@Override
+			public void written(UserOrder order) {
+			}
+
+			@Override
+			public void failed(UserOrder order) {
+			}
+		};
+
+		void written(UserOrder order);
+
+		void failed(UserOrder order);
+	}
+
+	private static final class Pending {
+		private final UserOrder order;
+		private final OrderSubmission submission;
+		private final Outcome outcome;
+
+		private Pending(UserOrder order, OrderSubmission submission, Outcome outcome) {
+			this.order = order;
+			this.submission = submission;
+			this.outcome = outcome;
+		}
+
+		private void written() {
+			try {
+				outcome.written(order);
+			} catch (RuntimeException e) {
+				logger.error("FAIL: follow-up for written order {}", order.getId(), e);
+			}
+			submission.written(order.getId());
+		}
+
+		private void failed() {
+			try {
+				outcome.failed(order);
+			} catch (RuntimeException e) {
+				logger.error("FAIL: undoing order submission {}", submission.getId(), e);
+			}
+			submission.failed();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.example.demo.order;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.model.persistence.UserOrder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Remembers the order created for each idempotency key, per user, so a
+ * retried submission gets the original order back instead of a new one.
+ * <p>
+ * The first request for a key registers a pending result before it starts
+ * work; duplicates arriving meanwhile wait for that result rather than
+ * submitting again. A submission that fails is forgotten, so the client can
+ * retry it with the same key.
+ */
+@Component
+public class IdempotencyStore implements MeterBinder {
+
+	private final BoundedCache<String, CompletableFuture<UserOrder>> results;
+	private final LongAdder replays = new LongAdder();
+
+	public IdempotencyStore(@Value("${order.idempotency.max-keys:100000}") int maxKeys,
+			@Value("${order.idempotency.ttl-ms:86400000}") long ttlMillis) {
+		this.results = new BoundedCache<>(maxKeys, ttlMillis);
+	}
+
+	/**
+	 * Runs {@code submission} once per {@code username} and {@code key}
+	 * within the TTL and returns its order; later calls return the same
+	 * order.
+	 */
+	public UserOrder execute(String username, String key, Supplier<UserOrder> submission) {
+		String scopedKey = username + '\u0000' + key;
+		CompletableFuture<UserOrder> result = new CompletableFuture<>();
+		CompletableFuture<UserOrder> existing = results.putIfAbsent(scopedKey, result);
+		if (existing != null) {
+			replays.increment();
+			try {
+				return existing.join();
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+		try {
+			UserOrder order = submission.get();
+			result.complete(order);
+			return order;
+		} catch (RuntimeException e) {
+			results.remove(scopedKey, result);
+			result.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${order.idempotency.purge-interval-ms:60000}")
+	public void purgeExpired() {
+		results.purgeExpired();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		results.bindTo(registry, "order.idempotency");
+		FunctionCounter.builder("order.idempotency.replays", replays, LongAdder::doubleValue)
+			.description("Submissions answered with an earlier order for the same key")
+			.register(registry);
+	}
+}
@@ -0,0 +1,26 @@
+package com.example.demo.order;
+
+import javax.persistence.PostPersist;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.example.demo.model.persistence.UserOrder;
+
+/**
+ * JPA entity listener that publishes an {@link OrderSubmittedEvent} for every
+ * inserted order. Hibernate obtains it from the Spring context, which
+ * injects the publisher.
+ */
+public class OrderEventListener {
+
+	@Autowired
+	private ApplicationEventPublisher publisher;
+
+	@PostPersist
+	public void submitted(UserOrder order) {
+		if (publisher != null) {
+			publisher.publishEvent(OrderSubmittedEvent.of(order));
+		}
+	}
+}
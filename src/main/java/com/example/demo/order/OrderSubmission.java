@@ -0,0 +1,48 @@
+package com.example.demo.order;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Progress of an order accepted by {@link AsyncOrderWriter}. The order id is
+ * known once the order has been written.
+ */
+public class OrderSubmission {
+
+	public enum Status {
+		QUEUED, WRITTEN, FAILED
+	}
+
+	@JsonProperty
+	private final String id;
+
+	@JsonProperty
+	private volatile Status status = Status.QUEUED;
+
+	@JsonProperty
+	private volatile Long orderId;
+
+	public OrderSubmission(String id) {
+		this.id = id;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public Long getOrderId() {
+		return orderId;
+	}
+
+	void written(Long orderId) {
+		this.orderId = orderId;
+		this.status = Status.WRITTEN;
+	}
+
+	void failed() {
+		this.status = Status.FAILED;
+	}
+}
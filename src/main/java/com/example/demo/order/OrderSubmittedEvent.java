@@ -0,0 +1,125 @@
+package com.example.demo.order;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.UserOrder;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Published when a {@link UserOrder} is inserted. It is a self-contained copy
+ * of the order rather than the entity, so it can be journaled and replayed
+ * as JSON.
+ */
+public class OrderSubmittedEvent {
+
+	@JsonProperty
+	private final long orderId;
+
+	@JsonProperty
+	private final long userId;
+
+	@JsonProperty
+	private final String username;
+
+	@JsonProperty
+	private final long submittedAt;
+
+	@JsonProperty
+	private final Money total;
+
+	@JsonProperty
+	private final List<Line> lines;
+
+	@JsonCreator
+	public OrderSubmittedEvent(@JsonProperty("orderId") long orderId, @JsonProperty("userId") long userId,
+			@JsonProperty("username") String username, @JsonProperty("submittedAt") long submittedAt,
+			@JsonProperty("total") Money total, @JsonProperty("lines") List<Line> lines) {
+		this.orderId = orderId;
+		this.userId = userId;
+		this.username = username;
+		this.submittedAt = submittedAt;
+		this.total = total;
+		this.lines = lines == null ? Collections.emptyList() : Collections.unmodifiableList(lines);
+	}
+
+	public static OrderSubmittedEvent of(UserOrder order) {
+		List<Line> lines = new ArrayList<>(order.getLines().size());
+		for (OrderLine line : order.getLines()) {
+			lines.add(new Line(line.getItemId(), line.getItemName(), line.getQuantity(), line.getUnitPrice()));
+		}
+		return new OrderSubmittedEvent(order.getId(), order.getUser().getId(), order.getUser().getUsername(),
+				order.getSubmittedAt().toEpochMilli(), order.getTotal(), lines);
+	}
+
+	public long getOrderId() {
+		return orderId;
+	}
+
+	public long getUserId() {
+		return userId;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Submission time in epoch milliseconds.
+	 */
+	public long getSubmittedAt() {
+		return submittedAt;
+	}
+
+	public Money getTotal() {
+		return total;
+	}
+
+	public List<Line> getLines() {
+		return lines;
+	}
+
+	public static class Line {
+
+		@JsonProperty
+		private final long itemId;
+
+		@JsonProperty
+		private final String itemName;
+
+		@JsonProperty
+		private final int quantity;
+
+		@JsonProperty
+		private final Money unitPrice;
+
+		@JsonCreator
+		public Line(@JsonProperty("itemId") long itemId, @JsonProperty("itemName") String itemName,
+				@JsonProperty("quantity") int quantity, @JsonProperty("unitPrice") Money unitPrice) {
+			this.itemId = itemId;
+			this.itemName = itemName;
+			this.quantity = quantity;
+			this.unitPrice = unitPrice;
+		}
+
+		public long getItemId() {
+			return itemId;
+		}
+
+		public String getItemName() {
+			return itemName;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		public Money getUnitPrice() {
+			return unitPrice;
+		}
+	}
+}
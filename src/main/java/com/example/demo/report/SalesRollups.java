@@ -0,0 +1,277 @@
+package com.example.demo.report;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.journal.JournalProjection;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.responses.ItemSales;
+import com.example.demo.model.responses.UserSpend;
+import com.example.demo.order.OrderSubmittedEvent;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Units sold and revenue per item, and orders and spend per user, kept up to
+ * date one order at a time so reports never scan order history.
+ * <p>
+ * With the order journal enabled the rollups are a {@link JournalProjection}
+ * and are fed, snapshotted and restored by the journal. Otherwise they
+ * follow committed orders directly and are rebuilt from the database once
+ * the application is ready.
+ * <p>
+ * Items are also kept in a ranking by units sold, moved on every order, so
+ * the best sellers are read without sorting the catalog.
+ */
+@Component
+public class SalesRollups implements JournalProjection {
+
+	private static final Logger logger = LoggerFactory.getLogger(SalesRollups.class);
+
+	private final OrderRepository orderRepository;
+	private final ObjectMapper objectMapper;
+	private final boolean journaled;
+
+	private volatile Map<Long, Totals> items = new ConcurrentHashMap<>();
+	private volatile Map<Long, Totals> users = new ConcurrentHashMap<>();
+	private volatile NavigableSet<Rank> ranking = new ConcurrentSkipListSet<>();
+	private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+	public SalesRollups(OrderRepository orderRepository, ObjectMapper objectMapper,
+			@Value("${order.journal.enabled:false}") boolean journaled) {
+		this.orderRepository = orderRepository;
+		this.objectMapper = objectMapper;
+		this.journaled = journaled;
+	}
+
+	/**
+	 * Without the journal nothing restores the rollups, so they are computed
+	 * from order history once at startup.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuildOnStartup() {
+		if (!journaled) {
+			long start = System.currentTimeMillis();
+			rebuild();
+			logger.info("SUCCESS: sales rollups built for {} items in {} ms", items.size(),
+					System.currentTimeMillis() - start);
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onOrderSubmitted(OrderSubmittedEvent event) {
+		if (!journaled) {
+			apply(event);
+		}
+	}
+
+	@Override
+	public String name() {
+		return "sales-rollups";
+	}
+
+	@Override
+	public void apply(OrderSubmittedEvent event) {
+		swapLock.readLock().lock();
+		try {
+			for (OrderSubmittedEvent.Line line : event.getLines()) {
+				Totals totals = items.computeIfAbsent(line.getItemId(), id -> new Totals());
+				synchronized (totals) {
+					long before = totals.count.get();
+					totals.add(line.getItemName(), line.getQuantity(), line.getUnitPrice().times(line.getQuantity()));
+					long after = totals.count.get();
+					if (after != before) {
+						// add before remove: a concurrent reader may see the item
+						// twice, which topItems skips, but never miss it
+						ranking.add(new Rank(after, line.getItemId(), totals));
+						ranking.remove(new Rank(before, line.getItemId(), totals));
+					}
+				}
+			}
+			Money total = event.getTotal() == null ? Money.ZERO : event.getTotal();
+			users.computeIfAbsent(event.getUserId(), id -> new Totals()).add(event.getUsername(), 1, total);
+		} finally {
+			swapLock.readLock().unlock();
+		}
+	}
+
+	public ItemSales itemSales(long itemId) {
+		Totals totals = items.get(itemId);
+		return totals == null ? null : totals.toItemSales(itemId);
+	}
+
+	/**
+	 * Best-selling items by units sold, ties broken by item id. Reads only
+	 * the head of the ranking.
+	 */
+	public List<ItemSales> topItems(int limit) {
+		List<ItemSales> top = new ArrayList<>(limit);
+		Set<Long> seen = new HashSet<>();
+		for (Rank rank : ranking) {
+			if (top.size() >= limit) {
+				break;
+			}
+			if (seen.add(rank.itemId)) {
+				top.add(rank.totals.toItemSales(rank.itemId));
+			}
+		}
+		return top;
+	}
+
+	public UserSpend userSpend(long userId) {
+		Totals totals = users.get(userId);
+		return totals == null ? null : totals.toUserSpend(userId);
+	}
+
+	/**
+	 * Recomputes every rollup from {@code order_line} and {@code user_order}
+	 * with two grouped queries and swaps the result in. Meant for startup
+	 * and recovery: an order committed while the queries run can be counted
+	 * twice or not at all, so run it while submissions are quiet.
+	 */
+	@Override
+	public void rebuild() {
+		Map<Long, Totals> rebuiltItems = new ConcurrentHashMap<>();
+		for (OrderRepository.ItemSalesRow row : orderRepository.sumSalesByItem()) {
+			rebuiltItems.put(row.getItemId(),
+					new Totals(row.getItemName(), row.getUnitsSold(), Money.of(row.getRevenue()).getMinorUnits()));
+		}
+		Map<Long, Totals> rebuiltUsers = new ConcurrentHashMap<>();
+		for (OrderRepository.UserSpendRow row : orderRepository.sumSpendByUser()) {
+			rebuiltUsers.put(row.getUserId(),
+					new Totals(row.getUsername(), row.getOrderCount(), Money.of(row.getTotalSpent()).getMinorUnits()));
+		}
+		swap(rebuiltItems, rebuiltUsers);
+	}
+
+	@Override
+	public Object snapshot() {
+		List<ItemSales> itemSnapshot = new ArrayList<>(items.size());
+		for (Map.Entry<Long, Totals> entry : items.entrySet()) {
+			itemSnapshot.add(entry.getValue().toItemSales(entry.getKey()));
+		}
+		List<UserSpend> userSnapshot = new ArrayList<>(users.size());
+		for (Map.Entry<Long, Totals> entry : users.entrySet()) {
+			userSnapshot.add(entry.getValue().toUserSpend(entry.getKey()));
+		}
+		return new Snapshot(itemSnapshot, userSnapshot);
+	}
+
+	@Override
+	public void restore(JsonNode snapshot) {
+		Snapshot restored = objectMapper.convertValue(snapshot, Snapshot.class);
+		Map<Long, Totals> restoredItems = new ConcurrentHashMap<>();
+		for (ItemSales sales : restored.items) {
+			restoredItems.put(sales.getItemId(),
+					new Totals(sales.getItemName(), sales.getUnitsSold(), sales.getRevenue().getMinorUnits()));
+		}
+		Map<Long, Totals> restoredUsers = new ConcurrentHashMap<>();
+		for (UserSpend spend : restored.users) {
+			restoredUsers.put(spend.getUserId(),
+					new Totals(spend.getUsername(), spend.getOrderCount(), spend.getTotalSpent().getMinorUnits()));
+		}
+		swap(restoredItems, restoredUsers);
+	}
+
+	private void swap(Map<Long, Totals> newItems, Map<Long, Totals> newUsers) {
+		NavigableSet<Rank> newRanking = new ConcurrentSkipListSet<>();
+		for (Map.Entry<Long, Totals> entry : newItems.entrySet()) {
+			if (entry.getValue().count.get() != 0) {
+				newRanking.add(new Rank(entry.getValue().count.get(), entry.getKey(), entry.getValue()));
+			}
+		}
+		swapLock.writeLock().lock();
+		try {
+			items = newItems;
+			users = newUsers;
+			ranking = newRanking;
+		} finally {
+			swapLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * An item's place in the ranking: most units first, then lowest id.
+	 */
+	private static final class Rank implements Comparable<Rank> {
+		private final long unitsSold;
+		private final long itemId;
+		private final Totals totals;
+
+		private Rank(long unitsSold, long itemId, Totals totals) {
+			this.unitsSold = unitsSold;
+			this.itemId = itemId;
+			this.totals = totals;
+		}
+
+		@Override
+		public int compareTo(Rank other) {
+			int byUnits = Long.compare(other.unitsSold, unitsSold);
+			return byUnits != 0 ? byUnits : Long.compare(itemId, other.itemId);
+		}
+	}
+
+	private static final class Totals {
+		private volatile String name;
+		private final AtomicLong count;
+		private final AtomicLong amountMinor;
+
+		private Totals() {
+			this(null, 0, 0);
+		}
+
+		private Totals(String name, long count, long amountMinor) {
+			this.name = name;
+			this.count = new AtomicLong(count);
+			this.amountMinor = new AtomicLong(amountMinor);
+		}
+
+		private void add(String latestName, long quantity, Money amount) {
+			name = latestName;
+			count.addAndGet(quantity);
+			amountMinor.addAndGet(amount.getMinorUnits());
+		}
+
+		private ItemSales toItemSales(long itemId) {
+			return new ItemSales(itemId, name, count.get(), Money.ofMinor(amountMinor.get()));
+		}
+
+		private UserSpend toUserSpend(long userId) {
+			return new UserSpend(userId, name, count.get(), Money.ofMinor(amountMinor.get()));
+		}
+	}
+
+	static final class Snapshot {
+		@JsonProperty
+		private final List<ItemSales> items;
+
+		@JsonProperty
+		private final List<UserSpend> users;
+
+		@JsonCreator
+		Snapshot(@JsonProperty("items") List<ItemSales> items, @JsonProperty("users") List<UserSpend> users) {
+			this.items = items;
+			this.users = users;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package com.example.demo.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Runs BCrypt hashing and verification on a pool of its own instead of the
+ * calling request thread.
+ * <p>
+ * At most {@code security.password.threads} hashes run at once and at most
+ * {@code security.password.queue-capacity} wait for a thread. Anything
+ * beyond that, or anything that waits longer than
+ * {@code security.password.max-wait-ms}, fails at once with
+ * {@link PasswordEncoderBusyException}, so a burst of logins costs a bounded
+ * amount of CPU and a bounded number of request threads.
+ * <p>
+ * Unless {@code security.password.strength} fixes it, the BCrypt strength is
+ * calibrated at startup: the strongest one, within
+ * {@code security.password.min-strength} and
+ * {@code security.password.max-strength}, whose hash takes no longer than
+ * {@code security.password.target-hash-ms} on this machine. Stored hashes
+ * of a lower strength report {@link #upgradeEncoding}, so they are rehashed
+ * at the user's next login. Stronger ones are kept: calibration varies from
+ * one machine or restart to the next, and rehashing downwards would rewrite
+ * every password each time it settles one step lower.
+ */
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+    private static final int CALIBRATION_RUNS = 3;
+
+    private final PasswordEncoder delegate;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final long maxWaitMillis;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public BoundedPasswordEncoder(@Value("${security.password.threads:0}") int threads,
+                                  @Value("${security.password.queue-capacity:100}") int queueCapacity,
+                                  @Value("${security.password.max-wait-ms:5000}") long maxWaitMillis,
+                                  @Value("${security.password.strength:0}") int strength,
+                                  @Value("${security.password.target-hash-ms:250}") long targetHashMillis,
+                                  @Value("${security.password.min-strength:10}") int minStrength,
+                                  @Value("${security.password.max-strength:14}") int maxStrength) {
+        this(strength > 0 ? strength : calibrate(BoundedPasswordEncoder::timeEncode,
+                TimeUnit.MILLISECONDS.toNanos(targetHashMillis), minStrength, maxStrength),
+                threads, queueCapacity, maxWaitMillis);
+    }
+
+    private BoundedPasswordEncoder(int strength, int threads, int queueCapacity, long maxWaitMillis) {
+        this(new BCryptPasswordEncoder(strength), strength, threads, queueCapacity, maxWaitMillis);
+        logger.info("Hashing passwords with BCrypt strength {}", strength);
+    }
+
+    BoundedPasswordEncoder(PasswordEncoder delegate, int strength, int threads, int queueCapacity, long maxWaitMillis) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        this.delegate = delegate;
+        this.strength = strength;
+        this.maxWaitMillis = maxWaitMillis;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "password-encoder-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return call(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return call(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Whether {@code encodedPassword} is a BCrypt hash weaker than the ones
+     * new hashes get.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher cost = BCRYPT_COST.matcher(encodedPassword);
+        return cost.find() && Integer.parseInt(cost.group(1)) < strength;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    /**
+     * The strongest strength between the bounds whose hash is expected to take
+     * no longer than {@code targetNanos}, extrapolated from the fastest of a
+     * few hashes at {@code minStrength}: each step up doubles the work.
+     */
+    static int calibrate(IntToLongFunction hashNanos, long targetNanos, int minStrength, int maxStrength) {
+        if (minStrength > maxStrength) {
+            throw new IllegalArgumentException("min-strength " + minStrength + " exceeds max-strength " + maxStrength);
+        }
+        hashNanos.applyAsLong(minStrength);
+        long nanos = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_RUNS; i++) {
+            nanos = Math.min(nanos, hashNanos.applyAsLong(minStrength));
+        }
+        logger.info("BCrypt strength {} hashes in {} ms", minStrength, TimeUnit.NANOSECONDS.toMillis(nanos));
+        int strength = minStrength;
+        while (strength < maxStrength && nanos * 2 <= targetNanos) {
+            nanos *= 2;
+            strength++;
+        }
+        return strength;
+    }
+
+    private static long timeEncode(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long start = System.nanoTime();
+        encoder.encode("calibration");
+        return System.nanoTime() - start;
+    }
+
+    private <T> T call(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordEncoderBusyException("password hashing queue is full");
+        }
+        try {
+            return future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.increment();
+            throw new PasswordEncoderBusyException("password hashing took longer than " + maxWaitMillis + " ms");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordEncoderBusyException("interrupted waiting for password hashing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("security.password.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes being computed")
+                .register(registry);
+        Gauge.builder("security.password.queue.depth", this, BoundedPasswordEncoder::getQueueDepth)
+                .description("Password hashes waiting for a thread")
+                .register(registry);
+        Gauge.builder("security.password.strength", this, BoundedPasswordEncoder::getStrength)
+                .description("BCrypt strength of new password hashes")
+                .register(registry);
+        Gauge.builder("security.password.pool.size", executor, ThreadPoolExecutor::getMaximumPoolSize)
+                .description("Threads available for password hashing")
+                .register(registry);
+        FunctionCounter.builder("security.password.completed", executor, ThreadPoolExecutor::getCompletedTaskCount)
+                .description("Password hashes computed")
+                .register(registry);
+        FunctionCounter.builder("security.password.rejected", rejected, LongAdder::doubleValue)
+                .tag("reason", "queue-full")
+                .description("Password hashes refused because the pool was saturated")
+                .register(registry);
+        FunctionCounter.builder("security.password.rejected", timedOut, LongAdder::doubleValue)
+                .tag("reason", "timeout")
+                .description("Password hashes abandoned after waiting too long")
+                .register(registry);
+    }
+}
@@ -2,39 +2,47 @@ package com.example.demo.security;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
-import com.auth0.jwt.JWT;
-import com.example.demo.model.persistence.User;
+import com.example.demo.model.requests.LoginRequest;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-
-import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilter {
 
+    // readers are immutable and thread-safe; clients may still send the other User fields
+    private static final ObjectReader LOGIN_READER = new ObjectMapper()
+            .readerFor(LoginRequest.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
     private final AuthenticationManager authenticationManager;
+    private final JwtTokenIssuer tokenIssuer;
 
-    public JWTAuthenticationFilter(AuthenticationManager authenticationManager) {
+    public JWTAuthenticationFilter(AuthenticationManager authenticationManager, JwtTokenIssuer tokenIssuer) {
         this.authenticationManager = authenticationManager;
+        this.tokenIssuer = tokenIssuer;
+        setFilterProcessesUrl(SecurityConstants.LOGIN_URL);
     }
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest req,
                                                 HttpServletResponse res) throws AuthenticationException {
         try {
-            User credentials = new ObjectMapper()
-                    .readValue(req.getInputStream(), User.class);
+            LoginRequest credentials = LOGIN_READER.readValue(req.getInputStream());
 
             return authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
@@ -43,7 +51,21 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
                             new ArrayList<>()));
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } catch (PasswordEncoderBusyException e) {
+            throw new InternalAuthenticationServiceException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void unsuccessfulAuthentication(HttpServletRequest req,
+                                              HttpServletResponse res,
+                                              AuthenticationException failed) throws IOException, ServletException {
+        if (failed.getCause() instanceof PasswordEncoderBusyException) {
+            res.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            res.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return;
         }
+        super.unsuccessfulAuthentication(req, res, failed);
     }
 
     @Override
@@ -52,10 +74,8 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
                                             FilterChain chain,
                                             Authentication auth) {
 
-        String token = JWT.create()
-                .withSubject(((org.springframework.security.core.userdetails.User) auth.getPrincipal()).getUsername())
-                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
-                .sign(HMAC512(SecurityConstants.SECRET.getBytes()));
-        res.addHeader(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + token);
+        String username = ((org.springframework.security.core.userdetails.User) auth.getPrincipal()).getUsername();
+        res.addHeader(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + tokenIssuer.issueAccessToken(username));
+        res.addHeader(SecurityConstants.REFRESH_HEADER_STRING, tokenIssuer.issueRefreshToken(username));
     }
 }
\ No newline at end of file
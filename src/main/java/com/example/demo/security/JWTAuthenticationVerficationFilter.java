@@ -1,28 +1,38 @@
 package com.example.demo.security;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.stereotype.Component;
 
-import com.auth0.jwt.JWT;
-
-import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
-
 @Component
 public class JWTAuthenticationVerficationFilter extends BasicAuthenticationFilter {
 
-    public JWTAuthenticationVerficationFilter(AuthenticationManager authManager) {
+    private final JwtTokenVerifier tokenVerifier;
+    private final TokenRevocationList tokenRevocationList;
+    private final Set<String> adminUsernames;
+
+    public JWTAuthenticationVerficationFilter(AuthenticationManager authManager, JwtTokenVerifier tokenVerifier,
+                                              TokenRevocationList tokenRevocationList,
+                                              @Value("${security.admin-usernames:}") Set<String> adminUsernames) {
         super(authManager);
+        this.tokenVerifier = tokenVerifier;
+        this.tokenRevocationList = tokenRevocationList;
+        this.adminUsernames = adminUsernames;
     }
 
     @Override
@@ -44,15 +54,19 @@ public class JWTAuthenticationVerficationFilter extends BasicAuthenticationFilte
     private UsernamePasswordAuthenticationToken getAuthentication(HttpServletRequest req) {
         String token = req.getHeader(SecurityConstants.HEADER_STRING);
         if (token != null) {
-            String user = JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build()
-                    .verify(token.replace(SecurityConstants.TOKEN_PREFIX, ""))
-                    .getSubject();
-            if (user != null) {
-                return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
+            VerifiedToken verified = tokenVerifier.verify(token.replace(SecurityConstants.TOKEN_PREFIX, ""));
+            if (verified.getSubject() != null && !tokenRevocationList.isRevoked(verified.getId())) {
+                return new UsernamePasswordAuthenticationToken(verified.getSubject(), null, authoritiesOf(verified.getSubject()));
             }
             return null;
         }
         return null;
     }
 
+    private List<GrantedAuthority> authoritiesOf(String username) {
+        if (adminUsernames.contains(username)) {
+            return Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + SecurityConstants.ADMIN_ROLE));
+        }
+        return Collections.emptyList();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.example.demo.security;
+
+import java.util.Date;
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+/**
+ * Signs access and refresh tokens. Every token gets a random {@code jti} so
+ * it can be revoked on its own.
+ */
+@Component
+public class JwtTokenIssuer {
+
+    private static final Algorithm ALGORITHM = HMAC512(SecurityConstants.SECRET.getBytes());
+
+    public String issueAccessToken(String username) {
+        return JWT.create()
+                .withSubject(username)
+                .withJWTId(UUID.randomUUID().toString())
+                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .sign(ALGORITHM);
+    }
+
+    /**
+     * A token that is only good for one call to the refresh endpoint.
+     */
+    public String issueRefreshToken(String username) {
+        return JWT.create()
+                .withSubject(username)
+                .withJWTId(UUID.randomUUID().toString())
+                .withClaim(SecurityConstants.TOKEN_TYPE_CLAIM, SecurityConstants.REFRESH_TOKEN_TYPE)
+                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.REFRESH_EXPIRATION_TIME))
+                .sign(ALGORITHM);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.demo.cache.BoundedCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+/**
+ * Verifies bearer tokens with a single long-lived {@link JWTVerifier} and
+ * remembers tokens that passed, so a client presenting the same token again
+ * skips signature verification until the token expires.
+ * <p>
+ * Tokens are cached under their SHA-256 digest rather than as-is, which
+ * keeps entries small and keeps usable credentials out of the heap.
+ * <p>
+ * A cached token may have been revoked since it was cached, so callers
+ * check {@link TokenRevocationList} on every request, cache hit or not.
+ */
+@Component
+public class JwtTokenVerifier implements MeterBinder {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JWTVerifier verifier = JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build();
+    private final BoundedCache<String, VerifiedToken> verified;
+
+    public JwtTokenVerifier(@Value("${security.jwt.verified-cache.max-size:10000}") int maxSize) {
+        this.verified = new BoundedCache<>(maxSize, SecurityConstants.EXPIRATION_TIME);
+    }
+
+    /**
+     * Verifies an access token.
+     *
+     * @throws JWTVerificationException if the token is malformed, forged,
+     *                                  expired or a refresh token
+     */
+    public VerifiedToken verify(String token) {
+        String key = digest(token);
+        VerifiedToken verifiedToken = verified.getIfPresent(key);
+        if (verifiedToken != null) {
+            return verifiedToken;
+        }
+        DecodedJWT jwt = verifier.verify(token);
+        if (isRefreshToken(jwt)) {
+            throw new JWTVerificationException("refresh token presented as an access token");
+        }
+        verifiedToken = toVerifiedToken(jwt);
+        if (verifiedToken.getSubject() != null && verifiedToken.getExpiresAt() > 0) {
+            long ttlMillis = verifiedToken.getExpiresAt() - System.currentTimeMillis();
+            if (ttlMillis > 0) {
+                verified.put(key, verifiedToken, TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+            }
+        }
+        return verifiedToken;
+    }
+
+    /**
+     * Verifies a refresh token. Refresh tokens are used once, so they are
+     * never cached.
+     *
+     * @throws JWTVerificationException if the token is malformed, forged,
+     *                                  expired or not a refresh token
+     */
+    public VerifiedToken verifyRefresh(String token) {
+        DecodedJWT jwt = verifier.verify(token);
+        if (!isRefreshToken(jwt) || jwt.getId() == null || jwt.getSubject() == null) {
+            throw new JWTVerificationException("not a refresh token");
+        }
+        return toVerifiedToken(jwt);
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.verified-cache.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        verified.purgeExpired();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        verified.bindTo(registry, "security.jwt.verified");
+    }
+
+    private static boolean isRefreshToken(DecodedJWT jwt) {
+        return SecurityConstants.REFRESH_TOKEN_TYPE.equals(jwt.getClaim(SecurityConstants.TOKEN_TYPE_CLAIM).asString());
+    }
+
+    private static VerifiedToken toVerifiedToken(DecodedJWT jwt) {
+        Date expiresAt = jwt.getExpiresAt();
+        return new VerifiedToken(jwt.getSubject(), jwt.getId(), expiresAt == null ? 0 : expiresAt.getTime());
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo.security;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+/**
+ * {@link RateLimitingFilter} for the requests that present credentials:
+ * {@code POST /login} and the token refresh. It runs ahead of
+ * {@link JWTAuthenticationFilter}, which answers {@code /login} without
+ * passing it on, so these are limited per remote address.
+ * <p>
+ * A class of its own because the security chain orders filters by class.
+ */
+public class LoginRateLimitingFilter extends RateLimitingFilter {
+
+    static final RequestMatcher CREDENTIAL_REQUESTS = new OrRequestMatcher(
+            new AntPathRequestMatcher(SecurityConstants.LOGIN_URL, HttpMethod.POST.name()),
+            new AntPathRequestMatcher(SecurityConstants.REFRESH_URL, HttpMethod.POST.name()));
+
+    public LoginRateLimitingFilter(RateLimiter rateLimiter) {
+        super(rateLimiter, CREDENTIAL_REQUESTS);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.demo.security;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Token buckets per client and route, for {@link RateLimitingFilter}.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the time at which it
+ * will be full again (the generic cell rate algorithm): a request is allowed
+ * if that time, pushed back by one request's worth, is within the burst
+ * allowance of now, and is counted by one compare-and-set. No locks are
+ * taken.
+ * <p>
+ * Routes are path prefixes from {@code rate-limit.routes}, each written
+ * {@code prefix=rate/burst} with the rate in requests per second; the
+ * longest matching prefix wins and other paths get
+ * {@code rate-limit.default-rate} and {@code rate-limit.default-burst}.
+ * Each route keeps at most {@code rate-limit.max-keys} buckets; full buckets
+ * are idle and evicted on a schedule, and clients arriving while a route is
+ * at its limit share one overflow bucket until room is made.
+ */
+@Component
+public class RateLimiter implements MeterBinder {
+
+    private final boolean enabled;
+    private final int maxKeys;
+    private final List<Route> routes = new ArrayList<>();
+    private final Route defaultRoute;
+    private final LongSupplier nanoClock;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    public RateLimiter(@Value("${rate-limit.enabled:true}") boolean enabled,
+                       @Value("${rate-limit.default-rate:20}") double defaultRate,
+                       @Value("${rate-limit.default-burst:40}") int defaultBurst,
+                       @Value("${rate-limit.routes:}") List<String> routes,
+                       @Value("${rate-limit.max-keys:10000}") int maxKeys) {
+        this(enabled, defaultRate, defaultBurst, routes, maxKeys, System::nanoTime);
+    }
+
+    RateLimiter(boolean enabled, double defaultRate, int defaultBurst, List<String> routes, int maxKeys,
+                LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.maxKeys = maxKeys;
+        this.nanoClock = nanoClock;
+        this.defaultRoute = new Route("", defaultRate, defaultBurst, nanoClock.getAsLong());
+        for (String route : routes) {
+            this.routes.add(parse(route.trim(), nanoClock.getAsLong()));
+        }
+        this.routes.sort(Comparator.comparingInt((Route r) -> r.prefix.length()).reversed());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Counts a request by {@code client} to {@code path}. Returns 0 if it is
+     * within the route's limit, otherwise the nanoseconds until it would be,
+     * in which case nothing is counted.
+     */
+    public long acquire(String client, String path) {
+        Route route = route(path);
+        long now = nanoClock.getAsLong();
+        AtomicLong bucket = route.buckets.get(client);
+        if (bucket == null) {
+            if (route.buckets.size() < maxKeys) {
+                bucket = route.buckets.computeIfAbsent(client, c -> new AtomicLong(now));
+            } else {
+                overflowed.increment();
+                bucket = route.overflow;
+            }
+        }
+        long current;
+        long next;
+        do {
+            current = bucket.get();
+            next = (current - now > 0 ? current : now) + route.intervalNanos;
+            long wait = next - now - route.toleranceNanos;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+        } while (!bucket.compareAndSet(current, next));
+        return 0;
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long now = nanoClock.getAsLong();
+        for (Route route : allRoutes()) {
+            int before = route.buckets.size();
+            route.buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+            evicted.add(before - route.buckets.size());
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Route route : allRoutes()) {
+            size += route.buckets.size();
+        }
+        return size;
+    }
+
+    private Route route(String path) {
+        for (Route route : routes) {
+            if (path.startsWith(route.prefix)) {
+                return route;
+            }
+        }
+        return defaultRoute;
+    }
+
+    private List<Route> allRoutes() {
+        List<Route> all = new ArrayList<>(routes);
+        all.add(defaultRoute);
+        return all;
+    }
+
+    private static Route parse(String route, long now) {
+        int equals = route.lastIndexOf('=');
+        int slash = route.lastIndexOf('/');
+        if (equals <= 0 || slash < equals) {
+            throw new IllegalArgumentException("rate-limit route '" + route + "' is not prefix=rate/burst");
+        }
+        return new Route(route.substring(0, equals), Double.parseDouble(route.substring(equals + 1, slash)),
+                Integer.parseInt(route.substring(slash + 1)), now);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("rate.limit.keys", this, RateLimiter::size)
+                .description("Clients with a rate limit bucket")
+                .register(registry);
+        FunctionCounter.builder("rate.limit.rejected", rejected, LongAdder::doubleValue)
+                .description("Requests refused with 429")
+                .register(registry);
+        FunctionCounter.builder("rate.limit.evicted", evicted, LongAdder::doubleValue)
+                .description("Idle buckets dropped")
+                .register(registry);
+        FunctionCounter.builder("rate.limit.overflowed", overflowed, LongAdder::doubleValue)
+                .description("Requests counted against a shared bucket because the route had no room for another")
+                .register(registry);
+    }
+
+    private static final class Route {
+        private final String prefix;
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong overflow;
+
+        private Route(String prefix, double ratePerSecond, int burst, long now) {
+            if (ratePerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("rate-limit for '" + prefix + "' needs a positive rate and burst");
+            }
+            this.prefix = prefix;
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+            this.toleranceNanos = intervalNanos * burst;
+            this.overflow = new AtomicLong(now);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.security;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Answers 429 with {@code Retry-After} once a client goes over its
+ * {@link RateLimiter} limit. Requests that carry a verified token are
+ * limited per user, all others per remote address. Only requests matching
+ * {@code requests} are limited here; the login endpoints are left to
+ * {@link LoginRateLimitingFilter}.
+ * <p>
+ * Deliberately not a {@code @Component}: it belongs in the security filter
+ * chain only, not in the servlet container's as well.
+ */
+public class RateLimitingFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final RequestMatcher requests;
+
+    public RateLimitingFilter(RateLimiter rateLimiter, RequestMatcher requests) {
+        this.rateLimiter = rateLimiter;
+        this.requests = requests;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest req) {
+        return !requests.matches(req);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        long waitNanos = rateLimiter.acquire(client(req), req.getRequestURI().substring(req.getContextPath().length()));
+        if (waitNanos > 0) {
+            res.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            res.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.NANOSECONDS.toSeconds(waitNanos - 1) + 1));
+            return;
+        }
+        chain.doFilter(req, res);
+    }
+
+    private static String client(HttpServletRequest req) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+            return "user:" + auth.getName();
+        }
+        return "ip:" + req.getRemoteAddr();
+    }
+}
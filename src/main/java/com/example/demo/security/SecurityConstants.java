@@ -3,8 +3,16 @@ package com.example.demo.security;
 public class SecurityConstants {
 
     public static final String SECRET = "oursecretkey";
-    public static final long EXPIRATION_TIME = 864_000_000; // 10 days
+    public static final long EXPIRATION_TIME = 900_000; // 15 minutes
+    public static final long REFRESH_EXPIRATION_TIME = 1_209_600_000; // 14 days
     public static final String TOKEN_PREFIX = "Bearer ";
     public static final String HEADER_STRING = "Authorization";
+    public static final String REFRESH_HEADER_STRING = "Refresh-Token";
+    public static final String TOKEN_TYPE_CLAIM = "type";
+    public static final String REFRESH_TOKEN_TYPE = "refresh";
+    public static final String LOGIN_URL = "/login";
     public static final String SIGN_UP_URL = "/api/user/create";
-}
\ No newline at end of file
+    public static final String REFRESH_URL = "/api/auth/refresh";
+    public static final String REPORT_REBUILD_URL = "/api/report/rebuild";
+    public static final String ADMIN_ROLE = "ADMIN";
+}
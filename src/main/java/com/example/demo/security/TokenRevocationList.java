@@ -0,0 +1,142 @@
+package com.example.demo.security;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.cache.BloomFilter;
+import com.example.demo.model.persistence.RevokedToken;
+import com.example.demo.model.persistence.repositories.RevokedTokenRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Token ids revoked before their expiry, stored in {@code revoked_token}
+ * and held in memory.
+ * <p>
+ * Lookups go through a {@link BloomFilter} first, so the usual answer, not
+ * revoked, costs a few hashes and no lock or database access. Only when the
+ * filter says "maybe" is the exact set consulted. The filter cannot forget,
+ * so it is rebuilt from the exact set whenever expired revocations are
+ * purged.
+ */
+@Component
+public class TokenRevocationList implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final int expectedTokens;
+    private final double falsePositiveRate;
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+
+    private final LongAdder exactChecks = new LongAdder();
+
+    public TokenRevocationList(RevokedTokenRepository revokedTokenRepository,
+                               @Value("${security.revocation.expected-tokens:100000}") int expectedTokens,
+                               @Value("${security.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedTokens, falsePositiveRate);
+    }
+
+    @PostConstruct
+    public void load() {
+        for (RevokedToken row : revokedTokenRepository.findByExpiresAtAfter(Instant.now())) {
+            revoked.put(row.getTokenId(), row.getExpiresAt().toEpochMilli());
+        }
+        rebuild();
+        logger.info("Loaded {} revoked tokens", revoked.size());
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !filter.mightContain(tokenId)) {
+            return false;
+        }
+        exactChecks.increment();
+        return revoked.containsKey(tokenId);
+    }
+
+    /**
+     * Revokes the token until {@code expiresAt}, in epoch milliseconds.
+     * Returns {@code false} if it was already revoked or cannot be: tokens
+     * without an id or expiry, and tokens that have expired.
+     */
+    public boolean revoke(String tokenId, long expiresAt) {
+        if (tokenId == null || expiresAt <= System.currentTimeMillis()) {
+            return false;
+        }
+        synchronized (this) {
+            if (revoked.putIfAbsent(tokenId, expiresAt) != null) {
+                return false;
+            }
+            filter.put(tokenId);
+        }
+        try {
+            revokedTokenRepository.save(new RevokedToken(tokenId, Instant.ofEpochMilli(expiresAt)));
+        } catch (RuntimeException e) {
+            // the filter keeps the bit, which only costs an exact check
+            revoked.remove(tokenId);
+            throw e;
+        }
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${security.revocation.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        int purged = 0;
+        for (Iterator<Long> it = revoked.values().iterator(); it.hasNext();) {
+            if (it.next() <= now) {
+                it.remove();
+                purged++;
+            }
+        }
+        if (purged > 0) {
+            rebuild();
+        }
+        try {
+            revokedTokenRepository.deleteExpired(Instant.ofEpochMilli(now));
+        } catch (RuntimeException e) {
+            logger.error("FAIL: deleting expired token revocations", e);
+        }
+    }
+
+    private synchronized void rebuild() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedTokens, revoked.size() * 2), falsePositiveRate);
+        for (String tokenId : revoked.keySet()) {
+            rebuilt.put(tokenId);
+        }
+        filter = rebuilt;
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("security.revocation.tokens", this, TokenRevocationList::size)
+                .description("Revoked tokens that have not expired yet")
+                .register(registry);
+        FunctionCounter.builder("security.revocation.exact-checks", exactChecks, LongAdder::doubleValue)
+                .description("Revocation lookups the Bloom filter could not answer alone")
+                .register(registry);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.security;
+
+/**
+ * What a token that passed verification says: who it was issued to, its
+ * id for revocation, and when it expires.
+ */
+public final class VerifiedToken {
+
+    private final String subject;
+    private final String id;
+    private final long expiresAt;
+
+    public VerifiedToken(String subject, String id, long expiresAt) {
+        this.subject = subject;
+        this.id = id;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * The token's {@code jti}, or {@code null} for tokens issued without one.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Expiry in epoch milliseconds, 0 if the token has none.
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
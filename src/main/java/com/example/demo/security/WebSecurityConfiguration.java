@@ -1,5 +1,8 @@
 package com.example.demo.security;
 
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -9,30 +12,55 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.util.matcher.NegatedRequestMatcher;
 
 @EnableWebSecurity
 public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final UserDetailsServiceImpl userDetailsService;
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final PasswordEncoder bCryptPasswordEncoder;
+    private final JwtTokenVerifier jwtTokenVerifier;
+    private final JwtTokenIssuer jwtTokenIssuer;
+    private final TokenRevocationList tokenRevocationList;
+    private final RateLimiter rateLimiter;
+    private final Set<String> adminUsernames;
 
     public WebSecurityConfiguration(UserDetailsServiceImpl userDetailsService,
-                                    BCryptPasswordEncoder bCryptPasswordEncoder) {
+                                    PasswordEncoder bCryptPasswordEncoder,
+                                    JwtTokenVerifier jwtTokenVerifier,
+                                    JwtTokenIssuer jwtTokenIssuer,
+                                    TokenRevocationList tokenRevocationList,
+                                    RateLimiter rateLimiter,
+                                    @Value("${security.admin-usernames:}") Set<String> adminUsernames) {
         this.userDetailsService = userDetailsService;
         this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.jwtTokenVerifier = jwtTokenVerifier;
+        this.jwtTokenIssuer = jwtTokenIssuer;
+        this.tokenRevocationList = tokenRevocationList;
+        this.rateLimiter = rateLimiter;
+        this.adminUsernames = adminUsernames;
     }
 
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.cors().and().csrf().disable().authorizeRequests()
                 .antMatchers(HttpMethod.POST, SecurityConstants.SIGN_UP_URL).permitAll()
+                .antMatchers(HttpMethod.POST, SecurityConstants.REFRESH_URL).permitAll()
+                .antMatchers(HttpMethod.POST, SecurityConstants.REPORT_REBUILD_URL).hasRole(SecurityConstants.ADMIN_ROLE)
                 .anyRequest().authenticated()
                 .and()
-                .addFilter(new JWTAuthenticationFilter(authenticationManager()))
-                .addFilter(new JWTAuthenticationVerficationFilter(authenticationManager()))
+                .addFilter(new JWTAuthenticationFilter(authenticationManager(), jwtTokenIssuer))
+                .addFilter(new JWTAuthenticationVerficationFilter(authenticationManager(), jwtTokenVerifier,
+                        tokenRevocationList, adminUsernames))
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+        if (rateLimiter.isEnabled()) {
+            http.addFilterBefore(new LoginRateLimitingFilter(rateLimiter), JWTAuthenticationFilter.class);
+            http.addFilterAfter(new RateLimitingFilter(rateLimiter,
+                    new NegatedRequestMatcher(LoginRateLimitingFilter.CREDENTIAL_REQUESTS)),
+                    JWTAuthenticationVerficationFilter.class);
+        }
         http.exceptionHandling().authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED));
     }
 
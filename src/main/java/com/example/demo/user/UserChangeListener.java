@@ -0,0 +1,29 @@
+package com.example.demo.user;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.example.demo.model.persistence.User;
+
+/**
+ * JPA entity listener that turns user writes into {@link UserChangedEvent}s.
+ * Hibernate obtains it from the Spring context, which injects the publisher.
+ */
+public class UserChangeListener {
+
+	@Autowired
+	private ApplicationEventPublisher publisher;
+
+	@PostPersist
+	@PostUpdate
+	@PostRemove
+	public void changed(User user) {
+		if (publisher != null) {
+			publisher.publishEvent(new UserChangedEvent(user.getUsername()));
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package com.example.demo.user;
+
+/**
+ * Published whenever a {@code User} row is inserted, updated or deleted
+ * through JPA.
+ */
+public class UserChangedEvent {
+
+	private final String username;
+
+	public UserChangedEvent(String username) {
+		this.username = username;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+}
@@ -0,0 +1,31 @@
+package com.example.demo.user;
+
+/**
+ * The handful of user columns most requests need: who the user is and
+ * where their cart lives. Loaded by a projection query instead of the full
+ * {@code User} entity.
+ */
+public final class UserIdentity {
+
+	private final long id;
+	private final String username;
+	private final Long cartId;
+
+	public UserIdentity(long id, String username, Long cartId) {
+		this.id = id;
+		this.username = username;
+		this.cartId = cartId;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public Long getCartId() {
+		return cartId;
+	}
+}
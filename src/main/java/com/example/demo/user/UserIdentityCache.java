@@ -0,0 +1,100 @@
+package com.example.demo.user;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.cache.BoundedCache;
+import com.example.demo.model.persistence.repositories.UserRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Resolves usernames to {@link UserIdentity} for every controller and the
+ * authentication path.
+ * <p>
+ * Unknown usernames are cached too, so repeated lookups for a missing user
+ * stay off the database. Concurrent misses for the same username share a
+ * single query. Entries are dropped once a transaction that wrote the user
+ * commits.
+ */
+@Component
+public class UserIdentityCache implements MeterBinder {
+
+	private final UserRepository userRepository;
+	private final BoundedCache<String, Optional<UserIdentity>> identities;
+	private final ConcurrentHashMap<String, CompletableFuture<Optional<UserIdentity>>> loading = new ConcurrentHashMap<>();
+	private final AtomicLong invalidations = new AtomicLong();
+	private final LongAdder coalescedLoads = new LongAdder();
+
+	public UserIdentityCache(UserRepository userRepository,
+			@Value("${user.identity-cache.max-size:100000}") int maxSize,
+			@Value("${user.identity-cache.ttl-ms:300000}") long ttlMillis) {
+		this.userRepository = userRepository;
+		this.identities = new BoundedCache<>(maxSize, ttlMillis);
+	}
+
+	public Optional<UserIdentity> resolve(String username) {
+		Optional<UserIdentity> cached = identities.getIfPresent(username);
+		if (cached != null) {
+			return cached;
+		}
+		CompletableFuture<Optional<UserIdentity>> load = new CompletableFuture<>();
+		CompletableFuture<Optional<UserIdentity>> inFlight = loading.putIfAbsent(username, load);
+		if (inFlight != null) {
+			coalescedLoads.increment();
+			try {
+				return inFlight.join();
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+		try {
+			long generation = invalidations.get();
+			Optional<UserIdentity> identity = Optional.ofNullable(userRepository.findIdentityByUsername(username));
+			if (generation == invalidations.get()) {
+				identities.put(username, identity);
+			}
+			load.complete(identity);
+			return identity;
+		} catch (RuntimeException e) {
+			load.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(username, load);
+		}
+	}
+
+	public void invalidate(String username) {
+		invalidations.incrementAndGet();
+		identities.invalidate(username);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onUserChanged(UserChangedEvent event) {
+		invalidate(event.getUsername());
+	}
+
+	@Scheduled(fixedDelayString = "${user.identity-cache.purge-interval-ms:60000}")
+	public void purgeExpired() {
+		identities.purgeExpired();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		identities.bindTo(registry, "users.identity");
+		FunctionCounter.builder("users.identity.coalesced", coalescedLoads, LongAdder::doubleValue)
+			.description("Lookups that waited on another thread's query for the same username")
+			.register(registry);
+	}
+}
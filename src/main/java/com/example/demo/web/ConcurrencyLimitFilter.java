@@ -0,0 +1,43 @@
+package com.example.demo.web;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Sheds API requests with 503 and {@code Retry-After} once
+ * {@link ConcurrencyLimiter} says the instance is at its limit, and reports
+ * how long admitted requests took. Registered ahead of the security chain,
+ * so shed requests cost neither token checks nor a database call.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+	private final ConcurrencyLimiter concurrencyLimiter;
+
+	public ConcurrencyLimitFilter(ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+			throws ServletException, IOException {
+		if (!concurrencyLimiter.tryAcquire(req.getRequestURI().substring(req.getContextPath().length()))) {
+			res.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+			res.setHeader(HttpHeaders.RETRY_AFTER, "1");
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			chain.doFilter(req, res);
+		} finally {
+			concurrencyLimiter.release(System.nanoTime() - start);
+		}
+	}
+}
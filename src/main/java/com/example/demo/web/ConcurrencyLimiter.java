@@ -0,0 +1,181 @@
+package com.example.demo.web;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Caps the number of API requests in flight at a limit that follows
+ * observed latency, for {@link ConcurrencyLimitFilter}.
+ * <p>
+ * Latencies are averaged over windows of {@code concurrency-limit.window-ms}
+ * and compared with a slow-moving baseline. While a window is no slower than
+ * {@code concurrency-limit.tolerance} times the baseline and the limit was
+ * actually used, the limit grows by about its square root; once windows get
+ * slower it shrinks in proportion (the gradient algorithm), so requests start
+ * being turned away before every thread is stuck waiting on the database.
+ * <p>
+ * Paths under {@code concurrency-limit.priority-paths} may use the whole
+ * limit; everything else only the part outside
+ * {@code concurrency-limit.reserved-fraction}, so browsing is shed first and
+ * order submission keeps headroom.
+ */
+@Component
+public class ConcurrencyLimiter implements MeterBinder {
+
+	private static final int MIN_WINDOW_SAMPLES = 10;
+	private static final double SMOOTHING = 0.2;
+	private static final double BASELINE_WEIGHT = 0.01;
+	private static final double MIN_GRADIENT = 0.5;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double reservedFraction;
+	private final double tolerance;
+	private final long windowNanos;
+	private final List<String> priorityPaths;
+	private final LongSupplier nanoClock;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile double limit;
+
+	private final LongAdder windowRttNanos = new LongAdder();
+	private final LongAdder windowSamples = new LongAdder();
+	private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+	private volatile long windowEnd;
+	private double baselineRttNanos;
+
+	private final LongAdder shed = new LongAdder();
+	private final LongAdder shedPriority = new LongAdder();
+
+	public ConcurrencyLimiter(@Value("${concurrency-limit.initial:50}") int initialLimit,
+			@Value("${concurrency-limit.min:10}") int minLimit,
+			@Value("${concurrency-limit.max:200}") int maxLimit,
+			@Value("${concurrency-limit.reserved-fraction:0.2}") double reservedFraction,
+			@Value("${concurrency-limit.tolerance:1.5}") double tolerance,
+			@Value("${concurrency-limit.window-ms:500}") long windowMillis,
+			@Value("${concurrency-limit.priority-paths:/api/order/submit}") List<String> priorityPaths) {
+		this(initialLimit, minLimit, maxLimit, reservedFraction, tolerance, windowMillis, priorityPaths, System::nanoTime);
+	}
+
+	ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double reservedFraction, double tolerance,
+			long windowMillis, List<String> priorityPaths, LongSupplier nanoClock) {
+		if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("concurrency limits need 1 <= min <= initial <= max");
+		}
+		if (reservedFraction < 0 || reservedFraction >= 1) {
+			throw new IllegalArgumentException("reserved-fraction must be at least 0 and below 1");
+		}
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.reservedFraction = reservedFraction;
+		this.tolerance = tolerance;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+		this.priorityPaths = priorityPaths;
+		this.nanoClock = nanoClock;
+		this.windowEnd = nanoClock.getAsLong() + windowNanos;
+	}
+
+	/**
+	 * Admits a request to {@code path}, or returns {@code false} if it should
+	 * be shed. Every admitted request must be {@link #release released}.
+	 */
+	public boolean tryAcquire(String path) {
+		boolean priority = isPriority(path);
+		double current = limit;
+		int allowed = priority ? (int) current : Math.max(1, (int) (current * (1 - reservedFraction)));
+		int inUse;
+		do {
+			inUse = inFlight.get();
+			if (inUse >= allowed) {
+				(priority ? shedPriority : shed).increment();
+				return false;
+			}
+		} while (!inFlight.compareAndSet(inUse, inUse + 1));
+		windowMaxInFlight.accumulateAndGet(inUse + 1, Math::max);
+		return true;
+	}
+
+	/**
+	 * Ends an admitted request that took {@code rttNanos}.
+	 */
+	public void release(long rttNanos) {
+		inFlight.decrementAndGet();
+		windowRttNanos.add(rttNanos);
+		windowSamples.increment();
+		long now = nanoClock.getAsLong();
+		if (now - windowEnd >= 0) {
+			adjust(now);
+		}
+	}
+
+	private synchronized void adjust(long now) {
+		if (now - windowEnd < 0 || windowSamples.sum() < MIN_WINDOW_SAMPLES) {
+			return;
+		}
+		windowEnd = now + windowNanos;
+		long samples = windowSamples.sumThenReset();
+		double rtt = (double) windowRttNanos.sumThenReset() / samples;
+		int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+
+		// follow improvements at once, degradations slowly, so overload
+		// does not become the new normal
+		baselineRttNanos = baselineRttNanos == 0 || rtt < baselineRttNanos ? rtt
+				: baselineRttNanos * (1 - BASELINE_WEIGHT) + rtt * BASELINE_WEIGHT;
+
+		double current = limit;
+		double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * baselineRttNanos / rtt));
+		double target = current * gradient;
+		if (maxInFlight >= current / 2) {
+			target += Math.sqrt(current);
+		}
+		double next = current * (1 - SMOOTHING) + target * SMOOTHING;
+		limit = Math.max(minLimit, Math.min(maxLimit, next));
+	}
+
+	public boolean isPriority(String path) {
+		for (String prefix : priorityPaths) {
+			if (path.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("concurrency.limit", this, ConcurrencyLimiter::getLimit)
+			.description("Requests allowed in flight at once")
+			.register(registry);
+		Gauge.builder("concurrency.in-flight", this, ConcurrencyLimiter::getInFlight)
+			.description("Requests in flight")
+			.register(registry);
+		FunctionCounter.builder("concurrency.shed", shed, LongAdder::doubleValue)
+			.tag("priority", "false")
+			.description("Requests turned away with 503")
+			.register(registry);
+		FunctionCounter.builder("concurrency.shed", shedPriority, LongAdder::doubleValue)
+			.tag("priority", "true")
+			.description("Requests turned away with 503")
+			.register(registry);
+	}
+}
@@ -0,0 +1,94 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.inventory.InventoryLedger;
+import com.example.demo.model.persistence.repositories.ItemStockRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Hundreds of threads reserving and releasing one unit of the same item, the
+ * shape of a popular item being added to and removed from carts:
+ * <ul>
+ * <li>{@code lockFree} is {@link InventoryLedger},</li>
+ * <li>{@code synchronizedCounts} guards the same two counts with a monitor.</li>
+ * </ul>
+ * Stock never runs out, so every reservation succeeds and both variants do
+ * the same work.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(256)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryContentionBenchmark {
+
+    private static final long ITEM_ID = 1L;
+
+    private InventoryLedger ledger;
+    private final SynchronizedStock synchronizedStock = new SynchronizedStock();
+
+    @Setup
+    public void setUp() {
+        ledger = new InventoryLedger(mock(ItemStockRepository.class), mock(JdbcTemplate.class), 500);
+        ledger.restock(ITEM_ID, 1_000_000);
+        synchronizedStock.available = 1_000_000;
+    }
+
+    @Benchmark
+    public boolean lockFree() {
+        boolean reserved = ledger.reserve(ITEM_ID, 1);
+        ledger.release(ITEM_ID, 1);
+        return reserved;
+    }
+
+    @Benchmark
+    public boolean synchronizedCounts() {
+        boolean reserved = synchronizedStock.reserve(1);
+        synchronizedStock.release(1);
+        return reserved;
+    }
+
+    private static final class SynchronizedStock {
+        private long available;
+        private long reserved;
+
+        synchronized boolean reserve(int quantity) {
+            if (available < quantity) {
+                return false;
+            }
+            available -= quantity;
+            reserved += quantity;
+            return true;
+        }
+
+        synchronized void release(int quantity) {
+            available += quantity;
+            reserved -= quantity;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InventoryContentionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.example.demo.security.JwtTokenVerifier;
+import com.example.demo.security.SecurityConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+/**
+ * Per-request cost of turning a bearer token into a username, which is the
+ * work the verification filter does on every authenticated request:
+ * <ul>
+ * <li>{@code rebuildVerifierPerRequest} is what the filter used to do,</li>
+ * <li>{@code sharedVerifier} reuses one verifier but still checks the HMAC,</li>
+ * <li>{@code cachedToken} is the filter today for a token it has seen.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private String token;
+    private JWTVerifier sharedVerifier;
+    private JwtTokenVerifier tokenVerifier;
+
+    @Setup
+    public void setUp() {
+        token = JWT.create()
+                .withSubject("goofy")
+                .withExpiresAt(new Date(System.currentTimeMillis() + SecurityConstants.EXPIRATION_TIME))
+                .sign(HMAC512(SecurityConstants.SECRET.getBytes()));
+        sharedVerifier = JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build();
+        tokenVerifier = new JwtTokenVerifier(10_000);
+        tokenVerifier.verify(token);
+    }
+
+    @Benchmark
+    public String rebuildVerifierPerRequest() {
+        return JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build()
+                .verify(token)
+                .getSubject();
+    }
+
+    @Benchmark
+    public String sharedVerifier() {
+        return sharedVerifier.verify(token).getSubject();
+    }
+
+    @Benchmark
+    public String cachedToken() {
+        return tokenVerifier.verify(token).getSubject();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
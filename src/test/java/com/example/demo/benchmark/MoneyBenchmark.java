@@ -0,0 +1,82 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.persistence.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares accumulating a cart total with {@link BigDecimal}, as carts used
+ * to, against {@link Money}. Run {@link #main} from the test classpath; the
+ * GC profiler reports bytes allocated per operation next to the timings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @Param({"1", "30", "500"})
+    private int units;
+
+    private BigDecimal bigDecimalPrice;
+    private Money moneyPrice;
+
+    @Setup
+    public void setUp() {
+        bigDecimalPrice = new BigDecimal("17.99");
+        moneyPrice = Money.parse("17.99");
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalPerUnit() {
+        BigDecimal total = new BigDecimal(0);
+        for (int i = 0; i < units; i++) {
+            total = total.add(bigDecimalPrice);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Money moneyPerUnit() {
+        Money total = Money.ZERO;
+        for (int i = 0; i < units; i++) {
+            total = total.plus(moneyPrice);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalPerLine() {
+        return BigDecimal.ZERO.add(bigDecimalPrice.multiply(BigDecimal.valueOf(units)));
+    }
+
+    @Benchmark
+    public Money moneyPerLine() {
+        return Money.ZERO.plus(moneyPrice.times(units));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MoneyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+
+public class BoundedCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testHitsMissesAndLoaderResults() {
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 1_000, clock::get);
+        assertEquals("A", cache.get("a", k -> "A"));
+        assertEquals("A", cache.get("a", k -> "other"));
+        assertNull(cache.get("b", k -> null));
+        assertNull(cache.getIfPresent("b"));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(3, cache.missCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 1_000, clock::get);
+        cache.put("a", "A");
+        cache.put("b", "B", TimeUnit.SECONDS.toNanos(5));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_001));
+        assertNull(cache.getIfPresent("a"));
+        assertEquals("B", cache.getIfPresent("b"));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        cache.purgeExpired();
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.evictionCount());
+    }
+
+    @Test
+    public void testPutIfAbsentKeepsLiveEntry() {
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 1_000, clock::get);
+        assertNull(cache.putIfAbsent("a", "A"));
+        assertEquals("A", cache.putIfAbsent("a", "other"));
+
+        cache.remove("a", "other");
+        assertEquals("A", cache.getIfPresent("a"));
+        cache.remove("a", "A");
+        assertNull(cache.getIfPresent("a"));
+
+        cache.put("b", "B");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_001));
+        assertNull(cache.putIfAbsent("b", "fresh"));
+        assertEquals("fresh", cache.getIfPresent("b"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        // One slot per segment; Integer keys below 16 map to distinct segments.
+        BoundedCache<Integer, String> cache = new BoundedCache<>(16, 60_000, clock::get);
+        cache.put(1, "one");
+        cache.put(17, "seventeen");
+        assertNull(cache.getIfPresent(1));
+        assertEquals("seventeen", cache.getIfPresent(17));
+        assertEquals(1, cache.evictionCount());
+
+        cache.invalidate(17);
+        assertEquals(0, cache.size());
+    }
+}
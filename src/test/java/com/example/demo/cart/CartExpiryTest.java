@@ -0,0 +1,102 @@
+package com.example.demo.cart;
+
+import com.example.demo.inventory.InventoryLedger;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.ItemStockRepository;
+import com.example.demo.user.UserIdentity;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Function;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CartExpiryTest {
+
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private final CartStore cartStore = mock(CartStore.class);
+    private final InventoryLedger inventoryLedger =
+            new InventoryLedger(mock(ItemStockRepository.class), mock(JdbcTemplate.class), 500);
+    private final UserIdentity user = new UserIdentity(999L, "goofy", 666L);
+
+    @Before
+    public void setUp() {
+        when(cartStore.evictWhile(anyCollection(), any())).thenAnswer(
+                invocation -> invocation.<Function<Collection<Long>, ?>>getArgument(1).apply(invocation.getArgument(0)));
+    }
+
+    @Test
+    public void testExpiredCartIsClearedAndReleasesStock() {
+        CartExpiry cartExpiry = createExpiry(0);
+        inventoryLedger.restock(244L, 5);
+        inventoryLedger.reserve(244L, 2);
+        CartRepository.LineRow line = mock(CartRepository.LineRow.class);
+        when(line.getCartId()).thenReturn(666L);
+        when(line.getItemId()).thenReturn(244L);
+        when(line.getQuantity()).thenReturn(2);
+        when(line.getReserved()).thenReturn(2);
+        when(cartRepository.lockUnchangedSince(anyCollection(), any())).thenReturn(Collections.singletonList(666L));
+        when(cartRepository.findLines(Collections.singletonList(666L))).thenReturn(Collections.singletonList(line));
+
+        cartExpiry.touch(user);
+        cartExpiry.sweep();
+
+        verify(cartStore, times(1)).evictWhile(eq(Collections.singleton(999L)), any());
+        verify(cartRepository, times(1)).deleteLines(Collections.singletonList(666L));
+        verify(cartRepository, times(1)).resetTotals(Collections.singletonList(666L));
+        assertEquals(5, inventoryLedger.level(244L).getAvailable());
+        assertEquals(0, inventoryLedger.level(244L).getReserved());
+        assertEquals(0, cartExpiry.getBacklog());
+    }
+
+    @Test
+    public void testCartChangedSinceCutoffIsKept() {
+        CartExpiry cartExpiry = createExpiry(0);
+        when(cartRepository.lockUnchangedSince(anyCollection(), any())).thenReturn(Collections.emptyList());
+
+        cartExpiry.touch(user);
+        cartExpiry.sweep();
+
+        verify(cartRepository, never()).deleteLines(anyCollection());
+    }
+
+    @Test
+    public void testCartStillHeldByStoreIsKept() {
+        CartExpiry cartExpiry = createExpiry(0);
+        when(cartStore.evictWhile(anyCollection(), any())).thenAnswer(
+                invocation -> invocation.<Function<Collection<Long>, ?>>getArgument(1).apply(Collections.emptyList()));
+
+        cartExpiry.touch(user);
+        cartExpiry.sweep();
+
+        verify(cartRepository, never()).lockUnchangedSince(anyCollection(), any());
+        verify(cartRepository, never()).deleteLines(anyCollection());
+    }
+
+    @Test
+    public void testTouchedCartIsNotSwept() {
+        CartExpiry cartExpiry = createExpiry(60_000);
+
+        cartExpiry.touch(user);
+        cartExpiry.sweep();
+
+        verify(cartRepository, never()).lockUnchangedSince(anyCollection(), any());
+    }
+
+    private CartExpiry createExpiry(long ttlMillis) {
+        return new CartExpiry(cartRepository, cartStore, inventoryLedger, mock(PlatformTransactionManager.class),
+                ttlMillis, 1, 500, 10_000);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.cart;
+
+import com.example.demo.catalog.ItemChangedEvent;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.RepricingProgress;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collections;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CartRepricerTest {
+
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private final CartStore cartStore = mock(CartStore.class);
+    private final CartRepricer cartRepricer = new CartRepricer(cartRepository, mock(ItemRepository.class), cartStore,
+            mock(PlatformTransactionManager.class), 1_000, 0);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        cartRepricer.shutdown();
+    }
+
+    @Test
+    public void testPriceChangeRepricesCarts() throws InterruptedException {
+        Item item = createItem("17.99");
+        item.setPrice(Money.parse("15.00"));
+        when(cartRepository.repriceLines(anyCollection())).thenReturn(3);
+        when(cartRepository.recomputeTotals(anyCollection())).thenReturn(2);
+
+        cartRepricer.onItemChanged(new ItemChangedEvent(item, ItemChangedEvent.Type.UPDATED, Money.parse("17.99")));
+        RepricingProgress progress = awaitCompletion();
+
+        assertEquals(1, progress.getRepricedItems());
+        assertEquals(3, progress.getLinesUpdated());
+        assertEquals(2, progress.getCartsUpdated());
+        assertEquals(0, progress.getPendingItems());
+        verify(cartStore, times(2)).reprice(Collections.singletonMap(244L, Money.parse("15.00")));
+        verify(cartRepository, times(1)).repriceLines(Collections.singleton(244L));
+        verify(cartRepository, times(1)).recomputeTotals(Collections.singleton(244L));
+    }
+
+    @Test
+    public void testOtherUpdatesAreIgnored() {
+        Item item = createItem("17.99");
+        item.setName("Renamed Bauble");
+
+        cartRepricer.onItemChanged(new ItemChangedEvent(item, ItemChangedEvent.Type.UPDATED, Money.parse("17.99")));
+        cartRepricer.onItemChanged(new ItemChangedEvent(item, ItemChangedEvent.Type.CREATED));
+
+        assertEquals(0, cartRepricer.progress().getPendingItems());
+        verify(cartStore, never()).reprice(anyMap());
+    }
+
+    @Test
+    public void testFailedChunkIsKeptForRetry() throws InterruptedException {
+        Item item = createItem("17.99");
+        item.setPrice(Money.parse("15.00"));
+        when(cartRepository.repriceLines(anyCollection())).thenThrow(new IllegalStateException("database down"));
+
+        cartRepricer.onItemChanged(new ItemChangedEvent(item, ItemChangedEvent.Type.UPDATED, Money.parse("17.99")));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (cartRepricer.progress().getFailedChunks() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, cartRepricer.progress().getFailedChunks());
+        assertEquals(1, cartRepricer.progress().getPendingItems());
+    }
+
+    private RepricingProgress awaitCompletion() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        RepricingProgress progress = cartRepricer.progress();
+        while ((progress.getLastCompletedAt() == null || progress.isRunning()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            progress = cartRepricer.progress();
+        }
+        assertNotNull(progress.getLastCompletedAt());
+        assertFalse(progress.isRunning());
+        return progress;
+    }
+
+    private static Item createItem(String price) {
+        Item item = new Item();
+        item.setId(244L);
+        item.setName("Christmas Tree Bauble");
+        item.setDescription("Red and Sparkly Bauble");
+        item.setPrice(Money.parse(price));
+        return item;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.demo.cart;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.user.UserIdentity;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DirectCartStoreTest {
+
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private final DirectCartStore cartStore = new DirectCartStore(cartRepository, mock(PlatformTransactionManager.class));
+    private final UserIdentity user = new UserIdentity(1L, "user1", 101L);
+    private final Item item = new Item();
+
+    @Before
+    public void setUp() {
+        item.setId(244L);
+        item.setPrice(Money.parse("17.99"));
+        // every load returns a fresh copy, as a new transaction would
+        Cart stored = new Cart();
+        stored.setId(101L);
+        when(cartRepository.findById(101L)).thenAnswer(invocation -> Optional.of(stored.copy()));
+    }
+
+    @Test
+    public void testConflictingSaveIsRetriedOnFreshCart() {
+        when(cartRepository.save(any(Cart.class)))
+                .thenThrow(new OptimisticLockingFailureException("cart changed"))
+                .thenReturn(null);
+        AtomicInteger runs = new AtomicInteger();
+
+        Cart updated = cartStore.update(user, c -> {
+            runs.incrementAndGet();
+            c.addItem(item, 2);
+        });
+
+        assertEquals(2, runs.get());
+        assertEquals(2, updated.getItemCount());
+        assertEquals(Money.parse("35.98"), updated.getTotal());
+        verify(cartRepository, times(2)).save(any(Cart.class));
+    }
+
+    @Test
+    public void testGivesUpAfterRepeatedConflicts() {
+        when(cartRepository.save(any(Cart.class))).thenThrow(new OptimisticLockingFailureException("cart changed"));
+
+        try {
+            cartStore.update(user, c -> c.addItem(item));
+            fail("expected the conflict to surface");
+        } catch (OptimisticLockingFailureException expected) {
+            verify(cartRepository, times(3)).save(any(Cart.class));
+        }
+    }
+}
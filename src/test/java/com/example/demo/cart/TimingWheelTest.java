@@ -0,0 +1,79 @@
+package com.example.demo.cart;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TimingWheelTest {
+
+    @Test
+    public void testFiresOnlyOnceDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 3, 1_000);
+        wheel.schedule("soon", 1_025);
+        wheel.schedule("later", 5_000);
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(1_020, fired::add);
+        assertTrue(fired.isEmpty());
+
+        wheel.advance(1_030, fired::add);
+        assertEquals(1, fired.size());
+        assertEquals("soon", fired.get(0));
+
+        wheel.advance(4_990, fired::add);
+        assertEquals(1, fired.size());
+        assertEquals(1, wheel.size());
+
+        wheel.advance(5_000, fired::add);
+        assertEquals(2, fired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testOverdueFiresOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 2, 1_000);
+        wheel.schedule("late", 500);
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(1_000, fired::add);
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void testEveryTimeoutFiresOnTimeAcrossLevels() {
+        // two levels of 64 slots only see 4096 ticks ahead, so many of these
+        // are parked in the top level and placed again as it turns
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 2, 0);
+        Random random = new Random(42);
+        Set<Long> pending = new HashSet<>();
+        for (int i = 0; i < 5_000; i++) {
+            long deadline = 1 + random.nextInt(50_000);
+            if (pending.add(deadline)) {
+                wheel.schedule(deadline, deadline);
+            }
+        }
+        long now = 0;
+        while (now < 50_000) {
+            now += 1 + random.nextInt(300);
+            long cutoff = now;
+            List<Long> fired = new ArrayList<>();
+            wheel.advance(now, fired::add);
+            for (Long deadline : fired) {
+                assertTrue(deadline <= cutoff);
+                assertTrue(pending.remove(deadline));
+            }
+            for (Long deadline : pending) {
+                assertTrue(deadline > cutoff);
+            }
+        }
+        assertTrue(pending.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+}
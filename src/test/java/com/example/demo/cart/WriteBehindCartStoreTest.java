@@ -0,0 +1,279 @@
+package com.example.demo.cart;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.user.UserIdentity;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WriteBehindCartStoreTest {
+
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private WriteBehindCartStore cartStore;
+    private Item item;
+
+    @Before
+    public void setUp() {
+        cartStore = new WriteBehindCartStore(cartRepository, 10, 100, 600_000);
+        item = new Item();
+        item.setId(244L);
+        item.setName("Christmas Tree Bauble");
+        item.setDescription("Red and Sparkly Bauble");
+        item.setPrice(Money.parse("17.99"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testChangesAreHeldUntilFlush() {
+        User user = createUser(1L);
+        UserIdentity identity = identityOf(user);
+        cartStore.update(identity, c -> c.addItem(item, 2));
+        cartStore.update(identity, c -> c.addItem(item, 3));
+
+        verify(cartRepository, never()).save(user.getCart());
+        verify(cartRepository, never()).saveAll(anyIterable());
+        assertEquals(1, cartStore.getDirtyCount());
+        assertEquals(5, cartStore.read(identity).getLines().get(0).getQuantity());
+        assertEquals(0, user.getCart().getLines().size());
+
+        cartStore.flush();
+        ArgumentCaptor<List<Cart>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cartRepository, times(1)).saveAll(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        assertEquals(5, captor.getValue().get(0).getLines().get(0).getQuantity());
+        assertEquals(0, cartStore.getDirtyCount());
+
+        cartStore.flush();
+        verify(cartRepository, times(1)).saveAll(anyIterable());
+    }
+
+    @Test
+    public void testEvictWritesAndForgetsCart() {
+        User user = createUser(1L);
+        UserIdentity identity = identityOf(user);
+        cartStore.update(identity, c -> c.addItem(item, 2));
+
+        Collection<Long> evicted = cartStore.evictWhile(Collections.singletonList(1L), userIds -> userIds);
+        assertEquals(Collections.singletonList(1L), evicted);
+        verify(cartRepository, times(1)).saveAll(anyIterable());
+        assertEquals(0, cartStore.getDirtyCount());
+        assertEquals(0, cartStore.read(identity).getLines().size());
+    }
+
+    @Test
+    public void testEvictedCartCannotBeChangedUntilActionReturns() throws InterruptedException {
+        UserIdentity identity = identityOf(createUser(1L));
+        cartStore.update(identity, c -> c.addItem(item));
+        AtomicBoolean updated = new AtomicBoolean();
+        Thread user = new Thread(() -> {
+            cartStore.update(identity, c -> c.addItem(item));
+            updated.set(true);
+        });
+
+        cartStore.evictWhile(Collections.singletonList(1L), userIds -> {
+            user.start();
+            try {
+                user.join(200);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertFalse(updated.get());
+            return userIds;
+        });
+        user.join(5_000);
+        assertTrue(updated.get());
+    }
+
+    @Test
+    public void testCartThatFailedToFlushIsNotEvicted() {
+        UserIdentity identity = identityOf(createUser(1L));
+        when(cartRepository.saveAll(anyIterable())).thenThrow(new IllegalStateException("database down"));
+        cartStore.update(identity, c -> c.addItem(item));
+
+        assertTrue(cartStore.evictWhile(Collections.singletonList(1L), userIds -> userIds).isEmpty());
+        assertEquals(1, cartStore.getDirtyCount());
+        assertEquals(1, cartStore.read(identity).getLines().size());
+    }
+
+    @Test
+    public void testRepriceUpdatesHeldCartsAndMarksThemDirty() {
+        UserIdentity identity = identityOf(createUser(1L));
+        cartStore.update(identity, c -> c.addItem(item, 2));
+        cartStore.flush();
+
+        cartStore.reprice(Collections.singletonMap(244L, Money.parse("10.00")));
+        assertEquals(1, cartStore.getDirtyCount());
+        Cart cart = cartStore.read(identity);
+        assertEquals(Money.parse("10.00"), cart.getLines().get(0).getUnitPrice());
+        assertEquals(Money.parse("20.00"), cart.getTotal());
+
+        cartStore.reprice(Collections.singletonMap(244L, Money.parse("10.00")));
+        cartStore.flush();
+        cartStore.reprice(Collections.singletonMap(244L, Money.parse("10.00")));
+        assertEquals(0, cartStore.getDirtyCount());
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() {
+        UserIdentity identity = identityOf(createUser(1L));
+        when(cartRepository.saveAll(anyIterable())).thenThrow(new IllegalStateException("database down"));
+        cartStore.update(identity, c -> c.addItem(item));
+
+        cartStore.flush();
+        assertEquals(1, cartStore.getDirtyCount());
+
+        reset(cartRepository);
+        cartStore.flush();
+        verify(cartRepository, times(1)).saveAll(anyIterable());
+        assertEquals(0, cartStore.getDirtyCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlushCarriesVersionsForward() {
+        UserIdentity identity = identityOf(createUser(1L));
+        when(cartRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            List<Cart> saved = new ArrayList<>();
+            for (Cart cart : (Iterable<Cart>) invocation.getArgument(0)) {
+                Cart copy = cart.copy();
+                copy.setVersion(cart.getVersion() == null ? 0L : cart.getVersion() + 1);
+                saved.add(copy);
+            }
+            return saved;
+        });
+        cartStore.update(identity, c -> c.addItem(item));
+        cartStore.flush();
+        cartStore.update(identity, c -> c.addItem(item));
+        cartStore.flush();
+
+        assertEquals(Long.valueOf(1L), cartStore.read(identity).getVersion());
+    }
+
+    @Test
+    public void testConflictingFlushAdoptsDatabaseVersion() {
+        UserIdentity identity = identityOf(createUser(1L));
+        when(cartRepository.saveAll(anyIterable())).thenThrow(new OptimisticLockingFailureException("repriced"));
+        CartRepository.VersionRow row = mock(CartRepository.VersionRow.class);
+        when(row.getCartId()).thenReturn(101L);
+        when(row.getVersion()).thenReturn(7L);
+        when(cartRepository.findVersions(anyCollection())).thenReturn(Collections.singletonList(row));
+        cartStore.update(identity, c -> c.addItem(item));
+
+        cartStore.flush();
+
+        assertEquals(1, cartStore.getDirtyCount());
+        assertEquals(Long.valueOf(7L), cartStore.read(identity).getVersion());
+        assertEquals(1, cartStore.read(identity).getItemCount());
+    }
+
+    @Test
+    public void testTooManyDirtyCartsForcesFlush() {
+        for (long id = 1; id <= 11; id++) {
+            cartStore.update(identityOf(createUser(id)), c -> c.addItem(item));
+        }
+        verify(cartRepository, times(1)).saveAll(anyIterable());
+        assertEquals(0, cartStore.getDirtyCount());
+    }
+
+    @Test
+    public void testSlowLoadDoesNotBlockStripe() throws InterruptedException {
+        // 1 and 65 hash to the same stripe
+        User slow = createUser(1L);
+        UserIdentity slowIdentity = new UserIdentity(slow.getId(), slow.getUsername(), slow.getCart().getId());
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(cartRepository.findById(slow.getCart().getId())).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(slow.getCart());
+        });
+        Thread loader = new Thread(() -> cartStore.update(slowIdentity, c -> c.addItem(item)));
+        loader.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        UserIdentity other = identityOf(createUser(65L));
+        long start = System.nanoTime();
+        assertEquals(2, cartStore.update(other, c -> c.addItem(item, 2)).getLines().get(0).getQuantity());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        release.countDown();
+        loader.join(5_000);
+        assertEquals(1, cartStore.read(slowIdentity).getLines().get(0).getQuantity());
+        assertEquals(2, cartStore.getDirtyCount());
+    }
+
+    @Test
+    public void testLoadThatRacedRepricingIsLoadedAgain() throws InterruptedException {
+        User user = createUser(1L);
+        UserIdentity identity = new UserIdentity(user.getId(), user.getUsername(), user.getCart().getId());
+        Cart stale = user.getCart().copy();
+        stale.addItem(item);
+        Cart repriced = stale.copy();
+        repriced.reprice(Collections.singletonMap(244L, Money.parse("10.00")));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        when(cartRepository.findById(user.getCart().getId())).thenAnswer(invocation -> {
+            if (first.getAndSet(false)) {
+                loading.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return Optional.of(stale);
+            }
+            return Optional.of(repriced);
+        });
+        Thread loader = new Thread(() -> cartStore.update(identity, c -> c.addItem(item)));
+        loader.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        // the database moved to the new price while the old one was being read
+        cartStore.reprice(Collections.singletonMap(244L, Money.parse("10.00")));
+        release.countDown();
+        loader.join(5_000);
+
+        Cart cart = cartStore.read(identity);
+        assertEquals(Money.parse("10.00"), cart.getLines().get(0).getUnitPrice());
+        assertEquals(Money.parse("20.00"), cart.getTotal());
+    }
+
+    private static User createUser(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        Cart cart = new Cart();
+        cart.setId(100 + id);
+        cart.setUser(user);
+        user.setCart(cart);
+        return user;
+    }
+
+    private UserIdentity identityOf(User user) {
+        when(cartRepository.findById(user.getCart().getId())).thenReturn(Optional.of(user.getCart()));
+        return new UserIdentity(user.getId(), user.getUsername(), user.getCart().getId());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.catalog;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CatalogCacheTest {
+
+    private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private final CatalogCache cache = new CatalogCache(itemRepository, 100, 60_000);
+
+    @Test
+    public void testLoadedItemIsCached() {
+        Item item = item(1L, "2.99");
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+
+        assertEquals(item, cache.findById(1L).get());
+        assertEquals(item, cache.findById(1L).get());
+        verify(itemRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    public void testLoadOverlappingAnInvalidationIsNotCached() {
+        Item stale = item(1L, "2.99");
+        Item fresh = item(1L, "3.99");
+        when(itemRepository.findById(1L))
+                .thenAnswer(invocation -> {
+                    // the price change commits while the old row is in flight
+                    cache.onItemChanged(new ItemChangedEvent(fresh, ItemChangedEvent.Type.UPDATED));
+                    return Optional.of(stale);
+                })
+                .thenReturn(Optional.of(fresh));
+
+        assertEquals(Money.parse("2.99"), cache.findById(1L).get().getPrice());
+        assertEquals(Money.parse("3.99"), cache.findById(1L).get().getPrice());
+        assertEquals(Money.parse("3.99"), cache.findById(1L).get().getPrice());
+        verify(itemRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    public void testBatchLoadOverlappingAnInvalidationIsNotCached() {
+        Item stale = item(1L, "2.99");
+        Item fresh = item(1L, "3.99");
+        when(itemRepository.findAllById(Collections.singletonList(1L)))
+                .thenAnswer(invocation -> {
+                    cache.onItemChanged(new ItemChangedEvent(fresh, ItemChangedEvent.Type.UPDATED));
+                    return Collections.singletonList(stale);
+                });
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(fresh));
+
+        assertEquals(stale, cache.findAllById(Collections.singletonList(1L)).get(1L));
+        assertEquals(fresh, cache.findById(1L).get());
+    }
+
+    private static Item item(long id, String price) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName("Round Widget");
+        item.setPrice(Money.parse(price));
+        return item;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo.catalog;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ItemSearchIndexTest {
+
+    private final ItemSearchIndex index = new ItemSearchIndex(mock(ItemRepository.class), 5_000);
+
+    @Test
+    public void testNameMatchesRankAboveDescriptionMatches() {
+        index.index(createItem(1L, "Round Widget", "A widget that is round"));
+        index.index(createItem(2L, "Square Gadget", "Pairs well with a round widget"));
+        index.index(createItem(3L, "Widgetizer", "Makes gadgets"));
+
+        List<Item> results = index.search("widget", 0, 10);
+        assertEquals(3, results.size());
+        assertEquals(1L, results.get(0).getId().longValue());
+        assertEquals(3L, results.get(1).getId().longValue());
+        assertEquals(2L, results.get(2).getId().longValue());
+
+        assertEquals(1, index.search("squ gad", 0, 10).size());
+        assertTrue(index.search("round triangle", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void testIndexFollowsItemChanges() {
+        Item item = createItem(1L, "Round Widget", "A widget that is round");
+        index.onItemChanged(new ItemChangedEvent(item, ItemChangedEvent.Type.CREATED));
+        assertEquals(1, index.search("round", 0, 10).size());
+
+        item.setName("Oval Widget");
+        item.setDescription("A widget that is oval");
+        index.onItemChanged(new ItemChangedEvent(item, ItemChangedEvent.Type.UPDATED));
+        assertTrue(index.search("round", 0, 10).isEmpty());
+        assertEquals("Oval Widget", index.search("ov", 0, 10).get(0).getName());
+
+        index.onItemChanged(new ItemChangedEvent(item, ItemChangedEvent.Type.DELETED));
+        assertTrue(index.search("widget", 0, 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testPagesComeFromTheTopMatches() {
+        for (long id = 1; id <= 20; id++) {
+            index.index(createItem(id, id % 2 == 0 ? "Widget " + id : "Widgetizer " + id, "Spare part"));
+        }
+        List<Item> first = index.search("widget", 0, 3);
+        assertEquals(Arrays.asList(2L, 4L, 6L), ids(first));
+        List<Item> second = index.search("widget", 9, 3);
+        assertEquals(Arrays.asList(20L, 1L, 3L), ids(second));
+        assertTrue(index.search("widget", 20, 3).isEmpty());
+    }
+
+    @Test
+    public void testShortPrefixReadsBoundedPostings() {
+        ItemSearchIndex capped = new ItemSearchIndex(mock(ItemRepository.class), 5);
+        capped.index(createItem(1L, "W", "Exact name match"));
+        for (long id = 2; id <= 20; id++) {
+            capped.index(createItem(id, "Widget " + id, "Spare part"));
+        }
+        List<Item> results = capped.search("w", 0, 100);
+        assertEquals(5, results.size());
+        assertEquals(1L, results.get(0).getId().longValue());
+    }
+
+    @Test
+    public void testEveryTermOfMultiTermQueryIsSearchedInFull() {
+        ItemSearchIndex capped = new ItemSearchIndex(mock(ItemRepository.class), 5);
+        for (long id = 1; id <= 20; id++) {
+            capped.index(createItem(id, "Widget " + id, "Spare part"));
+        }
+        capped.index(createItem(21L, "Widgetizer", "Blue"));
+        capped.index(createItem(22L, "Bluebell", "Flower"));
+
+        List<Item> results = capped.search("wid blue", 0, 10);
+        assertEquals(Arrays.asList(21L), ids(results));
+    }
+
+    private static List<Long> ids(List<Item> items) {
+        List<Long> ids = new ArrayList<>();
+        for (Item item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    private static Item createItem(long id, String name, String description) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setDescription(description);
+        item.setPrice(Money.parse("1.00"));
+        return item;
+    }
+}
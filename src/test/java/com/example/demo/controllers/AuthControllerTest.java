@@ -0,0 +1,69 @@
+package com.example.demo.controllers;
+
+import com.example.demo.TestUtils;
+import com.example.demo.model.persistence.repositories.RevokedTokenRepository;
+import com.example.demo.security.JwtTokenIssuer;
+import com.example.demo.security.JwtTokenVerifier;
+import com.example.demo.security.SecurityConstants;
+import com.example.demo.security.TokenRevocationList;
+import com.example.demo.security.VerifiedToken;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class AuthControllerTest {
+
+    private AuthController authController;
+    private final JwtTokenVerifier tokenVerifier = new JwtTokenVerifier(100);
+    private final JwtTokenIssuer tokenIssuer = new JwtTokenIssuer();
+    private final TokenRevocationList tokenRevocationList =
+            new TokenRevocationList(mock(RevokedTokenRepository.class), 1_000, 0.01);
+
+    @Before
+    public void setUp() throws NoSuchFieldException, IllegalAccessException {
+        authController = new AuthController();
+        TestUtils.injectObjects(authController, "tokenVerifier", tokenVerifier);
+        TestUtils.injectObjects(authController, "tokenIssuer", tokenIssuer);
+        TestUtils.injectObjects(authController, "tokenRevocationList", tokenRevocationList);
+    }
+
+    @Test
+    public void testRefreshTokenWorksOnce() {
+        String refreshToken = tokenIssuer.issueRefreshToken("goofy");
+
+        ResponseEntity<Void> response = authController.refresh(refreshToken);
+        assertEquals(200, response.getStatusCodeValue());
+        String accessToken = response.getHeaders().getFirst(SecurityConstants.HEADER_STRING);
+        assertNotNull(accessToken);
+        assertEquals("goofy", tokenVerifier.verify(accessToken.replace(SecurityConstants.TOKEN_PREFIX, "")).getSubject());
+        assertNotNull(response.getHeaders().getFirst(SecurityConstants.REFRESH_HEADER_STRING));
+
+        assertEquals(401, authController.refresh(refreshToken).getStatusCodeValue());
+    }
+
+    @Test
+    public void testRefreshRejectsAccessTokensAndMissingTokens() {
+        assertEquals(401, authController.refresh(tokenIssuer.issueAccessToken("goofy")).getStatusCodeValue());
+        assertEquals(400, authController.refresh(null).getStatusCodeValue());
+    }
+
+    @Test
+    public void testLogoutRevokesBothTokens() {
+        String accessToken = tokenIssuer.issueAccessToken("goofy");
+        String refreshToken = tokenIssuer.issueRefreshToken("goofy");
+        VerifiedToken access = tokenVerifier.verify(accessToken);
+        assertFalse(tokenRevocationList.isRevoked(access.getId()));
+
+        ResponseEntity<Void> response = authController.logout(SecurityConstants.TOKEN_PREFIX + accessToken, refreshToken);
+
+        assertEquals(204, response.getStatusCodeValue());
+        assertTrue(tokenRevocationList.isRevoked(access.getId()));
+        assertEquals(401, authController.refresh(refreshToken).getStatusCodeValue());
+    }
+}
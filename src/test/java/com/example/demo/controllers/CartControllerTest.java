@@ -1,24 +1,41 @@
 package com.example.demo.controllers;
 
 import com.example.demo.TestUtils;
+import com.example.demo.cart.CartExpiry;
+import com.example.demo.cart.DirectCartStore;
+import com.example.demo.catalog.CatalogCache;
+import com.example.demo.inventory.FlashSaleSequencer;
+import com.example.demo.inventory.InventoryLedger;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.ItemStockRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.CartOperation;
+import com.example.demo.model.requests.ModifyCartBatchRequest;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.user.UserIdentity;
+import com.example.demo.user.UserIdentityCache;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
-import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Objects;
 import java.util.Optional;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyIterable;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class CartControllerTest {
@@ -27,21 +44,85 @@ public class CartControllerTest {
     private final CartRepository cartRepository = mock(CartRepository.class);
     private final UserRepository userRepository = mock(UserRepository.class);
     private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private final UserIdentityCache userIdentityCache = new UserIdentityCache(userRepository, 100, 60_000);
+    private final InventoryLedger inventoryLedger =
+            new InventoryLedger(mock(ItemStockRepository.class), mock(JdbcTemplate.class), 500);
 
     @Before
     public void setUp() throws NoSuchFieldException, IllegalAccessException {
         cartController = new CartController();
-        TestUtils.injectObjects(cartController, "cartRepository", cartRepository);
-        TestUtils.injectObjects(cartController, "userRepository", userRepository);
-        TestUtils.injectObjects(cartController, "itemRepository", itemRepository);
+        DirectCartStore cartStore = new DirectCartStore(cartRepository, mock(PlatformTransactionManager.class));
+        TestUtils.injectObjects(cartController, "cartStore", cartStore);
+        TestUtils.injectObjects(cartController, "cartExpiry", new CartExpiry(cartRepository, cartStore, inventoryLedger,
+                mock(PlatformTransactionManager.class), 60_000, 1_000, 500, 10_000));
+        TestUtils.injectObjects(cartController, "userIdentityCache", userIdentityCache);
+        TestUtils.injectObjects(cartController, "catalogCache", new CatalogCache(itemRepository, 100, 60_000));
+        TestUtils.injectObjects(cartController, "inventoryLedger", inventoryLedger);
+        TestUtils.injectObjects(cartController, "flashSaleSequencer",
+                new FlashSaleSequencer(inventoryLedger, Collections.emptyList(), 100, 1_000));
+    }
+
+    @Test
+    public void testAddToCartReservesStock() {
+        User user = createUser();
+        when(itemRepository.findById(244L)).thenReturn(Optional.ofNullable(user.getCart().getLines().get(0).getItem()));
+        stubIdentity(user);
+        inventoryLedger.restock(244L, 3);
+
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setItemId(244L);
+        modifyCartRequest.setUsername("goofy");
+        modifyCartRequest.setQuantity(2);
+
+        assertEquals(200, cartController.addTocart(modifyCartRequest).getStatusCodeValue());
+        assertEquals(1, inventoryLedger.level(244L).getAvailable());
+        assertEquals(409, cartController.addTocart(modifyCartRequest).getStatusCodeValue());
+        assertEquals(3, user.getCart().getLines().get(0).getQuantity());
+
+        modifyCartRequest.setQuantity(10);
+        assertEquals(200, cartController.removeFromcart(modifyCartRequest).getStatusCodeValue());
+        // the unit already in the cart was added before tracking and held no reservation
+        assertEquals(3, inventoryLedger.level(244L).getAvailable());
+        assertEquals(0, inventoryLedger.level(244L).getReserved());
+    }
+
+    @Test
+    public void testRemovingUnreservedUnitsLeavesOtherCartsReservations() {
+        User user = createUser();
+        when(itemRepository.findById(244L)).thenReturn(Optional.ofNullable(user.getCart().getLines().get(0).getItem()));
+        stubIdentity(user);
+
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setItemId(244L);
+        modifyCartRequest.setUsername("goofy");
+        modifyCartRequest.setQuantity(2);
+        assertEquals(200, cartController.addTocart(modifyCartRequest).getStatusCodeValue());
+        assertEquals(0, user.getCart().getLines().get(0).getReserved());
+
+        // tracking starts and another cart reserves units
+        inventoryLedger.restock(244L, 5);
+        inventoryLedger.reserve(244L, 2);
+        assertEquals(200, cartController.addTocart(modifyCartRequest).getStatusCodeValue());
+        assertEquals(2, user.getCart().getLines().get(0).getReserved());
 
+        modifyCartRequest.setQuantity(4);
+        assertEquals(200, cartController.removeFromcart(modifyCartRequest).getStatusCodeValue());
+        assertEquals(1, user.getCart().getLines().get(0).getQuantity());
+        assertEquals(1, user.getCart().getLines().get(0).getReserved());
+        assertEquals(2, inventoryLedger.level(244L).getAvailable());
+        assertEquals(3, inventoryLedger.level(244L).getReserved());
+
+        modifyCartRequest.setQuantity(1);
+        assertEquals(200, cartController.removeFromcart(modifyCartRequest).getStatusCodeValue());
+        assertEquals(3, inventoryLedger.level(244L).getAvailable());
+        assertEquals(2, inventoryLedger.level(244L).getReserved());
     }
 
     @Test
     public void testAddToCartHappyPath() {
         User user = createUser();
-        when(itemRepository.findById(244L)).thenReturn(Optional.ofNullable(user.getCart().getItems().get(0)));
-        when(userRepository.findByUsername("goofy")).thenReturn(user);
+        when(itemRepository.findById(244L)).thenReturn(Optional.ofNullable(user.getCart().getLines().get(0).getItem()));
+        stubIdentity(user);
 
         ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
         modifyCartRequest.setItemId(244L);
@@ -55,10 +136,35 @@ public class CartControllerTest {
         Cart cart = cartResponse.getBody();
         assertNotNull(cartResponse);
         assertEquals(666L, Objects.requireNonNull(cart).getId().longValue());
-        assertEquals(2, cart.getItems().size());
+        assertEquals(2, cart.getItemCount());
         assertEquals(35.98, cart.getTotal().doubleValue());
     }
 
+    @Test
+    public void testAddAndRemoveBulkQuantityKeepsSingleLine() {
+        User user = createUser();
+        when(itemRepository.findById(244L)).thenReturn(Optional.ofNullable(user.getCart().getLines().get(0).getItem()));
+        stubIdentity(user);
+
+        ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+        modifyCartRequest.setItemId(244L);
+        modifyCartRequest.setUsername("goofy");
+        modifyCartRequest.setQuantity(500);
+
+        Cart cart = cartController.addTocart(modifyCartRequest).getBody();
+        assertNotNull(cart);
+        assertEquals(1, cart.getLines().size());
+        assertEquals(501, cart.getLines().get(0).getQuantity());
+        assertEquals(501, cart.getItemCount());
+        assertEquals(Money.parse("9012.99"), cart.getTotal());
+
+        modifyCartRequest.setQuantity(1000);
+        cart = cartController.removeFromcart(modifyCartRequest).getBody();
+        assertNotNull(cart);
+        assertEquals(0, cart.getLines().size());
+        assertEquals(Money.ZERO, cart.getTotal());
+    }
+
     @Test
     public void testAddToCartUnhappyPath() {
         ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
@@ -70,7 +176,7 @@ public class CartControllerTest {
         assertEquals(404, cartResponse.getStatusCodeValue());
 
         User user = createUser();
-        when(userRepository.findByUsername("goofy")).thenReturn(user);
+        stubIdentity(user);
         cartResponse = cartController.removeFromcart(modifyCartRequest);
         assertEquals(404, cartResponse.getStatusCodeValue());
     }
@@ -78,8 +184,8 @@ public class CartControllerTest {
     @Test
     public void testRemoveFromCartHappyPath() {
         User user = createUser();
-        when(itemRepository.findById(244L)).thenReturn(Optional.ofNullable(user.getCart().getItems().get(0)));
-        when(userRepository.findByUsername("goofy")).thenReturn(user);
+        when(itemRepository.findById(244L)).thenReturn(Optional.ofNullable(user.getCart().getLines().get(0).getItem()));
+        stubIdentity(user);
 
         ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
         modifyCartRequest.setItemId(244L);
@@ -93,7 +199,7 @@ public class CartControllerTest {
         Cart cart = cartResponse.getBody();
         assertNotNull(cartResponse);
         assertEquals(666L, Objects.requireNonNull(cart).getId().longValue());
-        assertEquals(0, cart.getItems().size());
+        assertEquals(0, cart.getItemCount());
         assertEquals(0., cart.getTotal().doubleValue());
     }
 
@@ -108,11 +214,107 @@ public class CartControllerTest {
         assertEquals(404, cartResponse.getStatusCodeValue());
 
         User user = createUser();
-        when(userRepository.findByUsername("goofy")).thenReturn(user);
+        stubIdentity(user);
         cartResponse = cartController.removeFromcart(modifyCartRequest);
         assertEquals(404, cartResponse.getStatusCodeValue());
     }
 
+    @Test
+    public void testBatchUpdateHappyPath() {
+        User user = createUser();
+        Item bauble = user.getCart().getLines().get(0).getItem();
+        Item star = new Item();
+        star.setId(245L);
+        star.setName("Christmas Tree Star");
+        star.setDescription("Gold Star");
+        star.setPrice(Money.parse("5.00"));
+        stubIdentity(user);
+        when(itemRepository.findAllById(anyIterable())).thenReturn(Arrays.asList(bauble, star));
+
+        ModifyCartBatchRequest request = new ModifyCartBatchRequest();
+        request.setUsername("goofy");
+        request.setOperations(Arrays.asList(
+                createOperation(CartOperation.Action.ADD, 245L, 3),
+                createOperation(CartOperation.Action.REMOVE, 244L, 1),
+                createOperation(CartOperation.Action.ADD, 245L, 1)));
+
+        ResponseEntity<Cart> cartResponse = cartController.batchUpdate(request);
+        assertEquals(200, cartResponse.getStatusCodeValue());
+
+        Cart cart = cartResponse.getBody();
+        assertNotNull(cart);
+        assertEquals(1, cart.getLines().size());
+        assertEquals(4, cart.getLines().get(0).getQuantity());
+        assertEquals(Money.parse("20.00"), cart.getTotal());
+        verify(cartRepository, times(1)).save(cart);
+    }
+
+    @Test
+    public void testAddToCartForFlashSaleItem() throws Exception {
+        FlashSaleSequencer flashSaleSequencer =
+                new FlashSaleSequencer(inventoryLedger, Collections.singletonList(244L), 100, 1_000);
+        TestUtils.injectObjects(cartController, "flashSaleSequencer", flashSaleSequencer);
+        flashSaleSequencer.start();
+        try {
+            User user = createUser();
+            when(itemRepository.findById(244L)).thenReturn(Optional.ofNullable(user.getCart().getLines().get(0).getItem()));
+            stubIdentity(user);
+            inventoryLedger.restock(244L, 1);
+
+            ModifyCartRequest modifyCartRequest = new ModifyCartRequest();
+            modifyCartRequest.setItemId(244L);
+            modifyCartRequest.setUsername("goofy");
+            modifyCartRequest.setQuantity(1);
+
+            assertEquals(200, cartController.addTocart(modifyCartRequest).getStatusCodeValue());
+            assertEquals(409, cartController.addTocart(modifyCartRequest).getStatusCodeValue());
+            assertEquals(2, user.getCart().getLines().get(0).getQuantity());
+        } finally {
+            flashSaleSequencer.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchUpdateOutOfStockChangesNothing() {
+        User user = createUser();
+        Item bauble = user.getCart().getLines().get(0).getItem();
+        stubIdentity(user);
+        when(itemRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(bauble));
+        inventoryLedger.restock(244L, 2);
+
+        ModifyCartBatchRequest request = new ModifyCartBatchRequest();
+        request.setUsername("goofy");
+        request.setOperations(Arrays.asList(
+                createOperation(CartOperation.Action.ADD, 244L, 2),
+                createOperation(CartOperation.Action.ADD, 244L, 1)));
+
+        assertEquals(409, cartController.batchUpdate(request).getStatusCodeValue());
+        assertEquals(1, user.getCart().getLines().get(0).getQuantity());
+        assertEquals(2, inventoryLedger.level(244L).getAvailable());
+    }
+
+    @Test
+    public void testBatchUpdateUnhappyPath() {
+        ModifyCartBatchRequest request = new ModifyCartBatchRequest();
+        request.setUsername("goofy");
+        assertEquals(400, cartController.batchUpdate(request).getStatusCodeValue());
+
+        request.setOperations(Collections.singletonList(createOperation(CartOperation.Action.ADD, 999L, 1)));
+        assertEquals(404, cartController.batchUpdate(request).getStatusCodeValue());
+
+        stubIdentity(createUser());
+        when(itemRepository.findAllById(anyIterable())).thenReturn(Collections.emptyList());
+        assertEquals(404, cartController.batchUpdate(request).getStatusCodeValue());
+    }
+
+    private static CartOperation createOperation(CartOperation.Action action, long itemId, int quantity) {
+        CartOperation operation = new CartOperation();
+        operation.setAction(action);
+        operation.setItemId(itemId);
+        operation.setQuantity(quantity);
+        return operation;
+    }
+
     private User createUser() {
         User user = new User();
         user.setId(999L);
@@ -123,7 +325,7 @@ public class CartControllerTest {
         item.setId(244L);
         item.setName("Christmas Tree Bauble");
         item.setDescription("Red and Sparkly Bauble");
-        item.setPrice(BigDecimal.valueOf(17.99));
+        item.setPrice(Money.parse("17.99"));
 
         Cart cart = new Cart();
         cart.setId(666L);
@@ -133,4 +335,11 @@ public class CartControllerTest {
 
         return user;
     }
+
+    private void stubIdentity(User user) {
+        when(userRepository.findIdentityByUsername(user.getUsername()))
+                .thenReturn(new UserIdentity(user.getId(), user.getUsername(), user.getCart().getId()));
+        when(cartRepository.findById(user.getCart().getId())).thenReturn(Optional.of(user.getCart()));
+        userIdentityCache.invalidate(user.getUsername());
+    }
 }
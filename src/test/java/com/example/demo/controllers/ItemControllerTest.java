@@ -1,10 +1,16 @@
 package com.example.demo.controllers;
 
 import com.example.demo.TestUtils;
+import com.example.demo.catalog.CatalogCache;
+import com.example.demo.catalog.ItemChangedEvent;
+import com.example.demo.catalog.ItemSearchIndex;
 import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
 import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.responses.ItemPage;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 
 import java.math.BigDecimal;
@@ -14,30 +20,42 @@ import java.util.Optional;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ItemControllerTest {
 
     private ItemController itemController;
     private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private final ItemSearchIndex itemSearchIndex = new ItemSearchIndex(itemRepository, 5_000);
 
     @Before
     public void setup() throws NoSuchFieldException, IllegalAccessException {
         itemController = new ItemController();
         TestUtils.injectObjects(itemController, "itemRepository", itemRepository);
+        TestUtils.injectObjects(itemController, "catalogCache", new CatalogCache(itemRepository, 100, 60_000));
+        TestUtils.injectObjects(itemController, "itemSearchIndex", itemSearchIndex);
     }
 
     @Test
     public void testGetItems() {
         List<Item> items = createItemList();
-        when(itemRepository.findAll()).thenReturn(items);
+        when(itemRepository.findPageOrderById(eq(Long.MIN_VALUE), eq(Money.ZERO), any(Money.class),
+                eq(PageRequest.of(0, ItemController.DEFAULT_PAGE_SIZE + 1)))).thenReturn(items);
 
-        ResponseEntity<List<Item>> itemsResponse = itemController.getItems();
+        ResponseEntity<ItemPage> itemsResponse = itemController.getItems("id", null, ItemController.DEFAULT_PAGE_SIZE, null, null);
         assertNotNull(itemsResponse);
         assertEquals(200, itemsResponse.getStatusCodeValue());
 
-        List<Item> returnedItems = itemsResponse.getBody();
+        ItemPage page = itemsResponse.getBody();
+        assertNotNull(page);
+        assertNull(page.getNextCursor());
+        List<Item> returnedItems = page.getItems();
         assertNotNull(returnedItems);
 
         Item itemOne = returnedItems.get(0);
@@ -53,6 +71,75 @@ public class ItemControllerTest {
         assertEquals(39.99, itemTwo.getPrice().doubleValue());
     }
 
+    @Test
+    public void testGetItemsPagedByPrice() {
+        List<Item> items = createItemList();
+        when(itemRepository.findPageOrderByPrice(eq(Money.parse("10.00")), eq(Long.MIN_VALUE),
+                eq(Money.parse("10.00")), eq(Money.parse("60.00")), eq(PageRequest.of(0, 2))))
+                .thenReturn(items);
+
+        ItemPage page = itemController.getItems("price", null, 1,
+                new BigDecimal("10.00"), new BigDecimal("60.00")).getBody();
+        assertNotNull(page);
+        assertEquals(1, page.getItems().size());
+        assertEquals("Football", page.getItems().get(0).getName());
+        assertEquals("5099:0", page.getNextCursor());
+
+        when(itemRepository.findPageOrderByPrice(eq(Money.parse("50.99")), eq(0L),
+                any(Money.class), any(Money.class), any(PageRequest.class)))
+                .thenReturn(items.subList(1, 2));
+        page = itemController.getItems("price", page.getNextCursor(), 1,
+                new BigDecimal("10.00"), new BigDecimal("60.00")).getBody();
+        assertNotNull(page);
+        assertEquals("Rugby Ball", page.getItems().get(0).getName());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void testGetItemsRejectsBadParameters() {
+        assertEquals(400, itemController.getItems("name", null, 10, null, null).getStatusCodeValue());
+        assertEquals(400, itemController.getItems("id", null, 0, null, null).getStatusCodeValue());
+        assertEquals(400, itemController.getItems("id", "abc", 10, null, null).getStatusCodeValue());
+        assertEquals(400, itemController.getItems("price", "12", 10, null, null).getStatusCodeValue());
+        assertEquals(400, itemController.getItems("id", null, 10,
+                new BigDecimal("5.00"), new BigDecimal("1.00")).getStatusCodeValue());
+        assertEquals(400, itemController.getItems("id", null, 10,
+                null, new BigDecimal("1e30")).getStatusCodeValue());
+        assertEquals(400, itemController.getItems("price", null, 10,
+                new BigDecimal("-1e30"), null).getStatusCodeValue());
+    }
+
+    @Test
+    public void testGetItemsCapsPageSize() {
+        itemController.getItems("id", "7", 10_000, null, null);
+        verify(itemRepository).findPageOrderById(eq(7L), any(Money.class), any(Money.class),
+                eq(PageRequest.of(0, ItemController.MAX_PAGE_SIZE + 1)));
+    }
+
+    @Test
+    public void testSearch() {
+        createItemList().forEach(itemSearchIndex::index);
+
+        ItemPage page = itemController.search("sign", null, 1).getBody();
+        assertNotNull(page);
+        assertEquals(1, page.getItems().size());
+        assertEquals("Football", page.getItems().get(0).getName());
+        assertEquals("1", page.getNextCursor());
+
+        page = itemController.search("sign", page.getNextCursor(), 1).getBody();
+        assertNotNull(page);
+        assertEquals("Rugby Ball", page.getItems().get(0).getName());
+        assertNull(page.getNextCursor());
+
+        page = itemController.search("ball rug", null, 10).getBody();
+        assertNotNull(page);
+        assertEquals(1, page.getItems().size());
+        assertEquals("Rugby Ball", page.getItems().get(0).getName());
+
+        assertEquals(400, itemController.search(" ", null, 10).getStatusCodeValue());
+        assertEquals(400, itemController.search("ball", "x", 10).getStatusCodeValue());
+    }
+
     @Test
     public void testGetItemsById() {
         List<Item> items = createItemList();
@@ -70,6 +157,22 @@ public class ItemControllerTest {
         assertEquals(50.99, returnedItem.getPrice().doubleValue());
     }
 
+    @Test
+    public void testGetItemByIdIsCachedUntilItemChanges() {
+        List<Item> items = createItemList();
+        when(itemRepository.findById(0L)).thenReturn(Optional.ofNullable(items.get(0)));
+
+        assertEquals(200, itemController.getItemById(0L).getStatusCodeValue());
+        assertEquals(200, itemController.getItemById(0L).getStatusCodeValue());
+        verify(itemRepository, times(1)).findById(0L);
+
+        CatalogCache catalogCache = new CatalogCache(itemRepository, 100, 60_000);
+        catalogCache.findById(0L);
+        catalogCache.onItemChanged(new ItemChangedEvent(items.get(0), ItemChangedEvent.Type.UPDATED));
+        catalogCache.findById(0L);
+        verify(itemRepository, times(3)).findById(0L);
+    }
+
     @Test
     public void testGetItemsByNameHappyPath() {
         List<Item> items = createItemList();
@@ -102,14 +205,14 @@ public class ItemControllerTest {
         itemOne.setId(0L);
         itemOne.setName("Football");
         itemOne.setDescription("Ronaldo Signed Football");
-        itemOne.setPrice(BigDecimal.valueOf(50.99));
+        itemOne.setPrice(Money.parse("50.99"));
         items.add(itemOne);
 
         Item itemTwo = new Item();
         itemTwo.setId(1L);
         itemTwo.setName("Rugby Ball");
         itemTwo.setDescription("Josh Adams Signed Rugby Ball");
-        itemTwo.setPrice(BigDecimal.valueOf(39.99));
+        itemTwo.setPrice(Money.parse("39.99"));
         items.add(itemTwo);
 
         return items;
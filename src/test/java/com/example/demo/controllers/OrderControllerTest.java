@@ -1,22 +1,46 @@
 package com.example.demo.controllers;
 
 import com.example.demo.TestUtils;
+import com.example.demo.cart.DirectCartStore;
+import com.example.demo.inventory.InventoryLedger;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.OrderLine;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.ItemStockRepository;
 import com.example.demo.model.persistence.repositories.OrderRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.OrderPage;
+import com.example.demo.model.responses.OrderSummary;
+import com.example.demo.order.AsyncOrderWriter;
+import com.example.demo.order.IdempotencyStore;
+import com.example.demo.order.OrderSubmission;
+import com.example.demo.user.UserIdentity;
+import com.example.demo.user.UserIdentityCache;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static junit.framework.TestCase.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class OrderControllerTest {
@@ -24,20 +48,66 @@ public class OrderControllerTest {
     private OrderController orderController;
     private final UserRepository userRepository = mock(UserRepository.class);
     private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private final InventoryLedger inventoryLedger =
+            new InventoryLedger(mock(ItemStockRepository.class), mock(JdbcTemplate.class), 500);
 
     @Before
     public void setUp() throws NoSuchFieldException, IllegalAccessException {
         orderController = new OrderController();
-        TestUtils.injectObjects(orderController, "userRepository", userRepository);
+        TestUtils.injectObjects(orderController, "userIdentityCache", new UserIdentityCache(userRepository, 100, 60_000));
         TestUtils.injectObjects(orderController, "orderRepository", orderRepository);
+        TestUtils.injectObjects(orderController, "cartStore", new DirectCartStore(cartRepository, mock(PlatformTransactionManager.class)));
+        TestUtils.injectObjects(orderController, "idempotencyStore", new IdempotencyStore(100, 60_000));
+        TestUtils.injectObjects(orderController, "inventoryLedger", inventoryLedger);
+    }
+
+    @Test
+    public void testSubmitEmptiesCartAndCommitsStock() {
+        User user = createUser();
+        stubIdentity(user);
+        inventoryLedger.restock(244L, 5);
+        inventoryLedger.reserve(244L, 1);
+        user.getCart().getLines().get(0).setReserved(1);
+
+        UserOrder userOrder = orderController.submit("goofy", null).getBody();
+        assertNotNull(userOrder);
+        assertEquals(1, userOrder.getLines().size());
+        assertTrue(user.getCart().getLines().isEmpty());
+        assertEquals(Money.ZERO, user.getCart().getTotal());
+        assertEquals(4, inventoryLedger.level(244L).getAvailable());
+        assertEquals(0, inventoryLedger.level(244L).getReserved());
+        verify(cartRepository, times(1)).save(user.getCart());
+    }
+
+    @Test
+    public void testSubmitRestoresCartWhenOrderCannotBeSaved() {
+        User user = createUser();
+        stubIdentity(user);
+        inventoryLedger.restock(244L, 5);
+        inventoryLedger.reserve(244L, 1);
+        user.getCart().getLines().get(0).setReserved(1);
+        when(orderRepository.save(any(UserOrder.class))).thenThrow(new IllegalStateException("database down"));
+
+        try {
+            orderController.submit("goofy", null);
+            fail("expected the failed save to surface");
+        } catch (IllegalStateException expected) {
+            // the order is written after the cart's lock is released
+        }
+        assertEquals(1, user.getCart().getLines().size());
+        assertEquals(1, user.getCart().getLines().get(0).getReserved());
+        assertEquals(Money.parse("17.99"), user.getCart().getTotal());
+        assertEquals(4, inventoryLedger.level(244L).getAvailable());
+        assertEquals(1, inventoryLedger.level(244L).getReserved());
     }
 
     @Test
     public void testSubmitHappyPath() {
         User user = createUser();
-        when(userRepository.findByUsername("goofy")).thenReturn(user);
+        stubIdentity(user);
 
-        ResponseEntity<UserOrder> userOrderResponse = orderController.submit("goofy");
+        ResponseEntity<UserOrder> userOrderResponse = orderController.submit("goofy", null);
         assertNotNull(userOrderResponse);
         assertEquals(200, userOrderResponse.getStatusCodeValue());
 
@@ -52,35 +122,39 @@ public class OrderControllerTest {
         assertEquals("goofy", returnedUser.getUsername());
         assertEquals("goofy_password", returnedUser.getPassword());
 
-        List<Item> items = userOrder.getItems();
-        assertEquals(1, items.size());
-        Item item = items.get(0);
-        assertEquals(244L, item.getId().longValue());
-        assertEquals("Christmas Tree Bauble", item.getName());
-        assertEquals("Red and Sparkly Bauble", item.getDescription());
-        assertEquals(17.99, item.getPrice().doubleValue());
+        List<OrderLine> lines = userOrder.getLines();
+        assertEquals(1, lines.size());
+        OrderLine line = lines.get(0);
+        assertEquals(244L, line.getItemId().longValue());
+        assertEquals("Christmas Tree Bauble", line.getItemName());
+        assertEquals(1, line.getQuantity());
+        assertEquals(17.99, line.getUnitPrice().doubleValue());
     }
 
     @Test
     public void testSubmitUnhappyPath() {
-        ResponseEntity<UserOrder> orderResponse = orderController.submit("I_Don't_Exist");
+        ResponseEntity<UserOrder> orderResponse = orderController.submit("I_Don't_Exist", null);
         assertEquals(404, orderResponse.getStatusCodeValue());
     }
 
     @Test
     public void testGetOrdersForUserHappyPath() {
         User user = createUser();
-        when(userRepository.findByUsername("goofy")).thenReturn(user);
+        stubIdentity(user);
         List<UserOrder> userOrders = new ArrayList<>();
         userOrders.add(UserOrder.createFromCart(user.getCart()));
-        when(orderRepository.findByUser(user)).thenReturn(userOrders);
+        when(orderRepository.findIdPage(eq(999L), eq(Long.MAX_VALUE), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(1L));
+        when(orderRepository.findAllWithLinesByIdIn(Collections.singletonList(1L))).thenReturn(userOrders);
 
-        ResponseEntity<List<UserOrder>> listUserOrderResponse = orderController.getOrdersForUser("goofy");
-        assertNotNull(listUserOrderResponse);
-        assertEquals(200, listUserOrderResponse.getStatusCodeValue());
+        ResponseEntity<OrderPage> orderPageResponse = orderController.getOrdersForUser("goofy", null, 20);
+        assertNotNull(orderPageResponse);
+        assertEquals(200, orderPageResponse.getStatusCodeValue());
 
-        List<UserOrder> returnedUserOrders = listUserOrderResponse.getBody();
-        assertNotNull(returnedUserOrders);
+        OrderPage orderPage = orderPageResponse.getBody();
+        assertNotNull(orderPage);
+        assertNull(orderPage.getNextCursor());
+        List<UserOrder> returnedUserOrders = orderPage.getOrders();
         assertEquals(1, returnedUserOrders.size());
 
         UserOrder userOrder = returnedUserOrders.get(0);
@@ -94,19 +168,142 @@ public class OrderControllerTest {
         assertEquals("goofy", returnedUser.getUsername());
         assertEquals("goofy_password", returnedUser.getPassword());
 
-        List<Item> items = userOrder.getItems();
-        assertEquals(1, items.size());
-        Item item = items.get(0);
-        assertEquals(244L, item.getId().longValue());
-        assertEquals("Christmas Tree Bauble", item.getName());
-        assertEquals("Red and Sparkly Bauble", item.getDescription());
-        assertEquals(17.99, item.getPrice().doubleValue());
+        List<OrderLine> lines = userOrder.getLines();
+        assertEquals(1, lines.size());
+        OrderLine line = lines.get(0);
+        assertEquals(244L, line.getItemId().longValue());
+        assertEquals("Christmas Tree Bauble", line.getItemName());
+        assertEquals(1, line.getQuantity());
+        assertEquals(17.99, line.getUnitPrice().doubleValue());
+    }
+
+    @Test
+    public void testGetOrdersForUserPaging() {
+        User user = createUser();
+        stubIdentity(user);
+        when(orderRepository.findIdPage(eq(999L), eq(50L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(40L, 30L, 20L));
+        when(orderRepository.findAllWithLinesByIdIn(Arrays.asList(40L, 30L)))
+                .thenReturn(Arrays.asList(new UserOrder(), new UserOrder()));
+
+        OrderPage orderPage = orderController.getOrdersForUser("goofy", "50", 2).getBody();
+        assertNotNull(orderPage);
+        assertEquals(2, orderPage.getOrders().size());
+        assertEquals("30", orderPage.getNextCursor());
     }
 
     @Test
     public void testGetOrdersForUserUnhappyPath() {
-        ResponseEntity<List<UserOrder>> orderListResponse =  orderController.getOrdersForUser("I_Don't_Exist");
-        assertEquals(404, orderListResponse.getStatusCodeValue());
+        ResponseEntity<OrderPage> orderPageResponse = orderController.getOrdersForUser("I_Don't_Exist", null, 20);
+        assertEquals(404, orderPageResponse.getStatusCodeValue());
+
+        assertEquals(400, orderController.getOrdersForUser("goofy", "not_a_cursor", 20).getStatusCodeValue());
+        assertEquals(400, orderController.getOrdersForUser("goofy", null, 0).getStatusCodeValue());
+    }
+
+    @Test
+    public void testGetOrderSummary() {
+        stubIdentity(createUser());
+        OrderRepository.Totals totals = mock(OrderRepository.Totals.class);
+        when(totals.getOrderCount()).thenReturn(3L);
+        when(totals.getTotalSpent()).thenReturn(new BigDecimal("53.97"));
+        when(orderRepository.summarize(999L)).thenReturn(totals);
+
+        OrderSummary summary = orderController.getOrderSummary("goofy").getBody();
+        assertNotNull(summary);
+        assertEquals(3L, summary.getOrderCount());
+        assertEquals(Money.parse("53.97"), summary.getTotalSpent());
+
+        assertEquals(404, orderController.getOrderSummary("I_Don't_Exist").getStatusCodeValue());
+    }
+
+    @Test
+    public void testSubmitWithRepeatedIdempotencyKeyReturnsOriginalOrder() {
+        stubIdentity(createUser());
+
+        UserOrder first = orderController.submit("goofy", "retry-1").getBody();
+        UserOrder second = orderController.submit("goofy", "retry-1").getBody();
+        assertNotNull(first);
+        assertSame(first, second);
+        verify(orderRepository, times(1)).save(any(UserOrder.class));
+
+        orderController.submit("goofy", "retry-2");
+        verify(orderRepository, times(2)).save(any(UserOrder.class));
+
+        assertEquals(400, orderController.submit("goofy", "").getStatusCodeValue());
+    }
+
+    @Test
+    public void testSubmitStoresOneLinePerDistinctItem() {
+        User user = createUser();
+        Item bauble = user.getCart().getLines().get(0).getItem();
+        user.getCart().addItem(bauble, 499);
+        stubIdentity(user);
+
+        UserOrder userOrder = orderController.submit("goofy", null).getBody();
+        assertNotNull(userOrder);
+        assertEquals(1, userOrder.getLines().size());
+        assertEquals(500, userOrder.getLines().get(0).getQuantity());
+        assertEquals(Money.parse("8995.00"), userOrder.getTotal());
+
+        bauble.setPrice(Money.parse("1.00"));
+        bauble.setName("Renamed Bauble");
+        assertEquals(Money.parse("17.99"), userOrder.getLines().get(0).getUnitPrice());
+        assertEquals("Christmas Tree Bauble", userOrder.getLines().get(0).getItemName());
+    }
+
+    @Test
+    public void testAsyncSubmitCommitsStockOnceWritten() throws Exception {
+        User user = createUser();
+        stubIdentity(user);
+        inventoryLedger.restock(244L, 5);
+        inventoryLedger.reserve(244L, 1);
+        user.getCart().getLines().get(0).setReserved(1);
+        AsyncOrderWriter writer = injectAsyncWriter();
+
+        OrderSubmission submission = orderController.submitAsync("goofy").getBody();
+        assertNotNull(submission);
+        assertTrue(user.getCart().getLines().isEmpty());
+        assertEquals(1, inventoryLedger.level(244L).getReserved());
+
+        writer.start();
+        writer.shutdown();
+        assertEquals(OrderSubmission.Status.WRITTEN, submission.getStatus());
+        assertEquals(4, inventoryLedger.level(244L).getAvailable());
+        assertEquals(0, inventoryLedger.level(244L).getReserved());
+    }
+
+    @Test
+    public void testAsyncSubmitRestoresCartWhenWriteFails() throws Exception {
+        User user = createUser();
+        stubIdentity(user);
+        inventoryLedger.restock(244L, 5);
+        inventoryLedger.reserve(244L, 1);
+        user.getCart().getLines().get(0).setReserved(1);
+        when(orderRepository.saveAll(anyIterable())).thenThrow(new IllegalStateException("database down"));
+        when(orderRepository.save(any(UserOrder.class))).thenThrow(new IllegalStateException("database down"));
+        AsyncOrderWriter writer = injectAsyncWriter();
+
+        OrderSubmission submission = orderController.submitAsync("goofy").getBody();
+        assertNotNull(submission);
+        assertTrue(user.getCart().getLines().isEmpty());
+
+        writer.start();
+        writer.shutdown();
+        assertEquals(OrderSubmission.Status.FAILED, submission.getStatus());
+        assertEquals(1, user.getCart().getLines().size());
+        assertEquals(1, user.getCart().getLines().get(0).getQuantity());
+        assertEquals(Money.parse("17.99"), user.getCart().getTotal());
+        // the restored line still holds its reservation; nothing was sold
+        assertEquals(4, inventoryLedger.level(244L).getAvailable());
+        assertEquals(1, inventoryLedger.level(244L).getReserved());
+    }
+
+    private AsyncOrderWriter injectAsyncWriter() throws NoSuchFieldException, IllegalAccessException {
+        AsyncOrderWriter writer = new AsyncOrderWriter(orderRepository, mock(PlatformTransactionManager.class),
+                10, 10, 10, 60_000);
+        TestUtils.injectObjects(orderController, "asyncOrderWriter", writer);
+        return writer;
     }
 
     private User createUser() {
@@ -119,7 +316,7 @@ public class OrderControllerTest {
         item.setId(244L);
         item.setName("Christmas Tree Bauble");
         item.setDescription("Red and Sparkly Bauble");
-        item.setPrice(BigDecimal.valueOf(17.99));
+        item.setPrice(Money.parse("17.99"));
 
         Cart cart = new Cart();
         cart.setId(666L);
@@ -129,4 +326,10 @@ public class OrderControllerTest {
 
         return user;
     }
+
+    private void stubIdentity(User user) {
+        when(userRepository.findIdentityByUsername(user.getUsername()))
+                .thenReturn(new UserIdentity(user.getId(), user.getUsername(), user.getCart().getId()));
+        when(cartRepository.findById(user.getCart().getId())).thenReturn(Optional.of(user.getCart()));
+    }
 }
@@ -0,0 +1,70 @@
+package com.example.demo.controllers;
+
+import com.example.demo.TestUtils;
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.ItemSales;
+import com.example.demo.model.responses.UserSpend;
+import com.example.demo.report.SalesRollups;
+import com.example.demo.user.UserIdentity;
+import com.example.demo.user.UserIdentityCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReportControllerTest {
+
+    private ReportController reportController;
+    private final SalesRollups salesRollups = mock(SalesRollups.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    @Before
+    public void setUp() throws NoSuchFieldException, IllegalAccessException {
+        reportController = new ReportController();
+        TestUtils.injectObjects(reportController, "salesRollups", salesRollups);
+        TestUtils.injectObjects(reportController, "userIdentityCache", new UserIdentityCache(userRepository, 100, 60_000));
+    }
+
+    @Test
+    public void testItemReports() {
+        ItemSales bauble = new ItemSales(244L, "Christmas Tree Bauble", 3, Money.parse("53.97"));
+        when(salesRollups.itemSales(244L)).thenReturn(bauble);
+        when(salesRollups.topItems(ReportController.MAX_TOP_ITEMS)).thenReturn(Collections.singletonList(bauble));
+
+        ResponseEntity<ItemSales> itemResponse = reportController.getItemSales(244L);
+        assertEquals(200, itemResponse.getStatusCodeValue());
+        assertEquals(3, itemResponse.getBody().getUnitsSold());
+        assertEquals(404, reportController.getItemSales(245L).getStatusCodeValue());
+
+        List<ItemSales> top = reportController.getTopItems(1_000).getBody();
+        assertNotNull(top);
+        assertEquals(1, top.size());
+        assertEquals(400, reportController.getTopItems(0).getStatusCodeValue());
+    }
+
+    @Test
+    public void testUserReport() {
+        when(userRepository.findIdentityByUsername("goofy")).thenReturn(new UserIdentity(999L, "goofy", 666L));
+        when(salesRollups.userSpend(999L)).thenReturn(new UserSpend(999L, "goofy", 2, Money.parse("35.98")));
+
+        ResponseEntity<UserSpend> spendResponse = reportController.getUserSpend("goofy");
+        assertEquals(200, spendResponse.getStatusCodeValue());
+        assertEquals(2, spendResponse.getBody().getOrderCount());
+        assertEquals(404, reportController.getUserSpend("I_Don't_Exist").getStatusCodeValue());
+    }
+
+    @Test
+    public void testRebuild() {
+        assertEquals(204, reportController.rebuild().getStatusCodeValue());
+        verify(salesRollups).rebuild();
+    }
+}
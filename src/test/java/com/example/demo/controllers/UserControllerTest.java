@@ -6,10 +6,12 @@ import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.user.UserIdentity;
+import com.example.demo.user.UserIdentityCache;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
 
@@ -22,7 +24,7 @@ public class UserControllerTest {
     private UserController userController;
     private final UserRepository userRepository = mock(UserRepository.class);
     private final CartRepository cartRepository = mock(CartRepository.class);
-    private final BCryptPasswordEncoder bCryptPasswordEncoder = mock(BCryptPasswordEncoder.class);
+    private final PasswordEncoder bCryptPasswordEncoder = mock(PasswordEncoder.class);
 
     @Before
     public void setUp() throws NoSuchFieldException, IllegalAccessException {
@@ -30,6 +32,7 @@ public class UserControllerTest {
         TestUtils.injectObjects(userController, "userRepository", userRepository);
         TestUtils.injectObjects(userController, "cartRepository", cartRepository);
         TestUtils.injectObjects(userController, "bCryptPasswordEncoder", bCryptPasswordEncoder);
+        TestUtils.injectObjects(userController, "userIdentityCache", new UserIdentityCache(userRepository, 100, 60_000));
     }
 
     @Test
@@ -94,7 +97,8 @@ public class UserControllerTest {
     @Test
     public void findByUserNameHappyPathTest() {
         User user = createUser();
-        when(userRepository.findByUsername("username")).thenReturn(user);
+        when(userRepository.findIdentityByUsername("username")).thenReturn(new UserIdentity(666L, "username", null));
+        when(userRepository.findById(666L)).thenReturn(Optional.of(user));
 
         ResponseEntity<User> userResponse = userController.findByUserName("username");
 
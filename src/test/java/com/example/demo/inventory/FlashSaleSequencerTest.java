@@ -0,0 +1,102 @@
+package com.example.demo.inventory;
+
+import com.example.demo.inventory.FlashSaleSequencer.Admission;
+import com.example.demo.model.persistence.repositories.ItemStockRepository;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class FlashSaleSequencerTest {
+
+    private final InventoryLedger ledger = new InventoryLedger(mock(ItemStockRepository.class), mock(JdbcTemplate.class), 500);
+    private final FlashSaleSequencer sequencer =
+            new FlashSaleSequencer(ledger, Collections.singletonList(1L), 1_000, 5_000);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        sequencer.shutdown();
+    }
+
+    @Test
+    public void testGrantsUntilSoldOut() {
+        sequencer.start();
+        ledger.restock(1L, 3);
+
+        assertTrue(sequencer.handles(1L));
+        assertFalse(sequencer.handles(2L));
+        assertEquals(Admission.GRANTED, sequencer.reserve(1L, 2));
+        assertEquals(Admission.SOLD_OUT, sequencer.reserve(1L, 2));
+        assertEquals(Admission.GRANTED, sequencer.reserve(1L, 1));
+        assertEquals(Admission.SOLD_OUT, sequencer.reserve(1L, 1));
+
+        ledger.release(1L, 1);
+        assertEquals(Admission.GRANTED, sequencer.reserve(1L, 1));
+    }
+
+    @Test
+    public void testConcurrentBuyersNeverOversell() throws Exception {
+        sequencer.start();
+        ledger.restock(1L, 50);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<Admission>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 500; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return sequencer.reserve(1L, 1);
+                }));
+            }
+            start.countDown();
+            int granted = 0;
+            for (Future<Admission> result : results) {
+                Admission admission = result.get(10, TimeUnit.SECONDS);
+                assertFalse(admission == Admission.BUSY);
+                if (admission == Admission.GRANTED) {
+                    granted++;
+                }
+            }
+            assertEquals(50, granted);
+            assertEquals(0, ledger.level(1L).getAvailable());
+            assertEquals(50, ledger.level(1L).getReserved());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUntrackedItemIsSoldOutUntilRestocked() {
+        sequencer.start();
+
+        assertEquals(Admission.SOLD_OUT, sequencer.reserve(1L, 1));
+        assertEquals(null, ledger.level(1L));
+
+        ledger.restock(1L, 1);
+        assertEquals(Admission.GRANTED, sequencer.reserve(1L, 1));
+    }
+
+    @Test
+    public void testBusyWhenQueueIsNotDrained() {
+        // lane threads are not started, so the request times out unclaimed
+        FlashSaleSequencer stopped = new FlashSaleSequencer(ledger, Collections.singletonList(1L), 1, 50);
+        ledger.restock(1L, 5);
+
+        assertEquals(Admission.BUSY, stopped.reserve(1L, 1));
+        assertEquals(Admission.BUSY, stopped.reserve(1L, 1));
+        assertEquals(5, ledger.level(1L).getAvailable());
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.demo.inventory;
+
+import com.example.demo.model.persistence.ItemStock;
+import com.example.demo.model.persistence.repositories.ItemStockRepository;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InventoryLedgerTest {
+
+    private final ItemStockRepository itemStockRepository = mock(ItemStockRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final InventoryLedger ledger = new InventoryLedger(itemStockRepository, jdbcTemplate, 500);
+
+    @Test
+    public void testUntrackedItemsAreUnlimited() {
+        assertTrue(ledger.reserve(1L, 1_000_000));
+        assertNull(ledger.level(1L));
+    }
+
+    @Test
+    public void testReserveReleaseAndCommit() {
+        ledger.restock(1L, 5);
+
+        assertTrue(ledger.reserve(1L, 3));
+        assertFalse(ledger.reserve(1L, 3));
+        assertStock(1L, 2, 3);
+
+        ledger.release(1L, 1);
+        assertStock(1L, 3, 2);
+
+        ledger.commit(1L, 2);
+        assertStock(1L, 3, 0);
+    }
+
+    @Test
+    public void testReleasingMoreThanReservedCreatesNoStock() {
+        // units added to carts before the item was tracked hold no reservation
+        ledger.restock(1L, 5);
+        ledger.release(1L, 4);
+        assertStock(1L, 5, 0);
+
+        assertTrue(ledger.reserve(1L, 2));
+        ledger.release(1L, 10);
+        assertStock(1L, 5, 0);
+
+        assertTrue(ledger.reserve(1L, 2));
+        ledger.commit(1L, 10);
+        assertStock(1L, 3, 0);
+    }
+
+    @Test
+    public void testHoldReportsUnitsActuallyReserved() {
+        assertEquals(0, ledger.hold(1L, 3));
+        ledger.restock(1L, 5);
+        assertEquals(3, ledger.hold(1L, 3));
+        assertEquals(-1, ledger.hold(1L, 3));
+        assertStock(1L, 2, 3);
+    }
+
+    @Test
+    public void testLoadsStockFromRepository() {
+        when(itemStockRepository.findAll()).thenReturn(Arrays.asList(new ItemStock(1L, 2, 1)));
+        ledger.load();
+
+        assertStock(1L, 2, 1);
+        assertFalse(ledger.reserve(1L, 3));
+    }
+
+    @Test
+    public void testFlushWritesChangedItemsOnce() {
+        ledger.restock(1L, 10);
+        ledger.reserve(1L, 1);
+        ledger.reserve(1L, 1);
+
+        ledger.flush();
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+
+        ledger.flush();
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    public void testConcurrentReservationsNeverOversell() throws Exception {
+        ledger.restock(1L, 100);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            for (int i = 0; i < 400; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (ledger.reserve(1L, 1)) {
+                        granted.incrementAndGet();
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertEquals(100, granted.get());
+        assertStock(1L, 0, 100);
+    }
+
+    @Test
+    public void testNothingToFlush() {
+        ledger.flush();
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    private void assertStock(long itemId, long available, long reserved) {
+        ItemStock stock = ledger.level(itemId);
+        assertEquals(available, stock.getAvailable());
+        assertEquals(reserved, stock.getReserved());
+    }
+}
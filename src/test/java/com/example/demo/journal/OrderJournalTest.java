@@ -0,0 +1,218 @@
+package com.example.demo.journal;
+
+import com.example.demo.model.persistence.Money;
+import com.example.demo.order.OrderSubmittedEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OrderJournalTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testRestoresLatestSnapshotAndReplaysTheRest() throws Exception {
+        CountingProjection first = new CountingProjection(0);
+        OrderJournal journal = open(first, 1 << 20);
+        journal.onOrderSubmitted(event(1));
+        journal.onOrderSubmitted(event(2));
+        awaitApplied(first, 2);
+        journal.requestSnapshot();
+        awaitSnapshots(1);
+        journal.onOrderSubmitted(event(3));
+        awaitApplied(first, 3);
+        journal.close();
+
+        // close() snapshots at the end; drop that one so the restart has to replay
+        List<Path> snapshots = listSnapshots();
+        assertEquals(2, snapshots.size());
+        Files.delete(snapshots.get(1));
+
+        CountingProjection second = new CountingProjection(0);
+        OrderJournal reopened = open(second, 1 << 20);
+        assertEquals(2, second.restored);
+        assertEquals(3, second.orders);
+        List<Long> orderIds = new ArrayList<>();
+        reopened.replay(0, (offset, event) -> orderIds.add(event.getOrderId()));
+        assertEquals(Arrays.asList(1L, 2L, 3L), orderIds);
+        reopened.close();
+    }
+
+    @Test
+    public void testUnwritableBatchStopsJournalingAndForcesRebuild() throws Exception {
+        CountingProjection first = new CountingProjection(0);
+        // one-byte segments: every batch after the first rolls to a new segment
+        OrderJournal journal = open(first, 1);
+        journal.onOrderSubmitted(event(1));
+        awaitApplied(first, 1);
+        Path blocker = directory.resolve("segments").resolve(String.format("%020d.log", journal.endOffset()));
+        Files.createDirectory(blocker);
+
+        journal.onOrderSubmitted(event(2));
+        awaitApplied(first, 2);
+        assertTrue(journal.isStopped());
+        journal.close();
+        Files.delete(blocker);
+        assertTrue(Files.exists(directory.resolve("rebuild-required")));
+
+        CountingProjection second = new CountingProjection(2);
+        open(second, 1).close();
+        assertTrue(second.rebuilt);
+        assertEquals(2, second.orders);
+        assertFalse(Files.exists(directory.resolve("rebuild-required")));
+
+        CountingProjection third = new CountingProjection(0);
+        open(third, 1).close();
+        assertFalse(third.rebuilt);
+        assertEquals(2, third.restored);
+        assertEquals(2, third.orders);
+    }
+
+    @Test
+    public void testFullQueueStopsJournalingInsteadOfBlocking() throws Exception {
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountingProjection stalled = new CountingProjection(0) {
+            @Override
+            public void apply(OrderSubmittedEvent event) {
+                applying.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.apply(event);
+            }
+        };
+        OrderJournal journal = open(stalled, 1 << 20, 1);
+        journal.onOrderSubmitted(event(1));
+        assertTrue(applying.await(5, TimeUnit.SECONDS));
+        journal.onOrderSubmitted(event(2));
+
+        long start = System.nanoTime();
+        journal.onOrderSubmitted(event(3));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+        assertTrue(journal.isStopped());
+        assertTrue(Files.exists(directory.resolve("rebuild-required")));
+
+        release.countDown();
+        awaitApplied(stalled, 2);
+        journal.close();
+    }
+
+    private OrderJournal open(JournalProjection projection, long segmentBytes) throws IOException {
+        return open(projection, segmentBytes, 100);
+    }
+
+    @SuppressWarnings("unchecked")
+    private OrderJournal open(JournalProjection projection, long segmentBytes, int queueCapacity) throws IOException {
+        ObjectProvider<JournalProjection> projections = mock(ObjectProvider.class);
+        when(projections.orderedStream()).thenReturn(Stream.of(projection));
+        OrderJournal journal = new OrderJournal(new ObjectMapper(), projections, directory.toString(),
+                segmentBytes, queueCapacity, 100, 3, 50);
+        journal.open();
+        return journal;
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve("snapshots"))) {
+            return files.filter(file -> file.toString().endsWith(".json")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private void awaitSnapshots(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (listSnapshots().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, listSnapshots().size());
+    }
+
+    private static void awaitApplied(CountingProjection projection, long orders) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (projection.orders < orders && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(orders, projection.orders);
+    }
+
+    private static OrderSubmittedEvent event(long orderId) {
+        return new OrderSubmittedEvent(orderId, 7L, "goofy", 0L, Money.parse("17.99"),
+                Collections.singletonList(new OrderSubmittedEvent.Line(244L, "Christmas Tree Bauble", 1, Money.parse("17.99"))));
+    }
+
+    private static class CountingProjection implements JournalProjection {
+
+        private final long ordersInDatabase;
+        private volatile long orders;
+        private volatile long restored = -1;
+        private volatile boolean rebuilt;
+
+        CountingProjection(long ordersInDatabase) {
+            this.ordersInDatabase = ordersInDatabase;
+        }
+
+        @Override
+        public String name() {
+            return "orders";
+        }
+
+        @Override
+        public void apply(OrderSubmittedEvent event) {
+            orders++;
+        }
+
+        @Override
+        public Object snapshot() {
+            return Collections.singletonMap("orders", orders);
+        }
+
+        @Override
+        public void restore(JsonNode snapshot) {
+            orders = snapshot.get("orders").asLong();
+            restored = orders;
+        }
+
+        @Override
+        public void rebuild() {
+            orders = ordersInDatabase;
+            rebuilt = true;
+        }
+    }
+}
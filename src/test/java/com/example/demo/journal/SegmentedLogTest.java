@@ -0,0 +1,122 @@
+package com.example.demo.journal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+public class SegmentedLogTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testReplayFromOffsetAcrossSegments() throws IOException {
+        long resumeAt;
+        try (SegmentedLog log = new SegmentedLog(directory, 64)) {
+            log.append(records("first", "second"));
+            resumeAt = log.endOffset();
+            log.append(records("third", "fourth", "fifth"));
+        }
+        assertEquals(true, listSegments().size() > 1);
+
+        try (SegmentedLog log = new SegmentedLog(directory, 64)) {
+            assertEquals(Arrays.asList("first", "second", "third", "fourth", "fifth"), readAll(log, 0));
+            assertEquals(Arrays.asList("third", "fourth", "fifth"), readAll(log, resumeAt));
+
+            log.append(records("sixth"));
+            assertEquals(Arrays.asList("third", "fourth", "fifth", "sixth"), readAll(log, resumeAt));
+        }
+    }
+
+    @Test
+    public void testTornRecordIsTruncatedOnOpen() throws IOException {
+        long end;
+        try (SegmentedLog log = new SegmentedLog(directory, 1 << 20)) {
+            log.append(records("first", "second"));
+            end = log.endOffset();
+        }
+        Path segment = listSegments().get(0);
+        Files.write(segment, new byte[] { 0, 0, 0, 42, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        try (SegmentedLog log = new SegmentedLog(directory, 1 << 20)) {
+            assertEquals(end, log.endOffset());
+            log.append(records("third"));
+            assertEquals(Arrays.asList("first", "second", "third"), readAll(log, 0));
+        }
+    }
+
+    @Test
+    public void testFailedAppendIsUndoneAcrossSegments() throws IOException {
+        try (SegmentedLog log = new SegmentedLog(directory, 64)) {
+            log.append(records("first"));
+            long end = log.endOffset();
+            // "second" fits; the long record rolls into a segment that cannot be created
+            Path blocker = directory.resolve(String.format("%020d.log", end + SegmentedLog.HEADER_BYTES + 6));
+            Files.createDirectory(blocker);
+            String large = new String(new char[40]).replace('\0', 'x');
+            try {
+                log.append(records("second", large));
+                fail("append should fail");
+            } catch (IOException expected) {
+                // rolled back
+            }
+            assertEquals(end, log.endOffset());
+            assertEquals(Arrays.asList("first"), readAll(log, 0));
+
+            Files.delete(blocker);
+            log.append(records("second", large));
+            assertEquals(Arrays.asList("first", "second", large), readAll(log, 0));
+        }
+        try (SegmentedLog log = new SegmentedLog(directory, 64)) {
+            assertEquals(3, readAll(log, 0).size());
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<byte[]> records(String... values) {
+        List<byte[]> records = new ArrayList<>();
+        for (String value : values) {
+            records.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return records;
+    }
+
+    private static List<String> readAll(SegmentedLog log, long fromOffset) throws IOException {
+        List<String> values = new ArrayList<>();
+        log.replay(fromOffset, (offset, record) -> values.add(new String(record, StandardCharsets.UTF_8)));
+        return values;
+    }
+}
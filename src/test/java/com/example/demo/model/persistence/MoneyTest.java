@@ -0,0 +1,48 @@
+package com.example.demo.model.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertSame;
+
+public class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testArithmetic() {
+        Money price = Money.parse("17.99");
+        assertEquals(1799L, price.getMinorUnits());
+        assertEquals(Money.parse("8995.00"), price.times(500));
+        assertEquals(Money.parse("20.98"), price.plus(Money.parse("2.99")));
+        assertEquals(Money.ZERO, price.minus(price));
+        assertSame(Money.ZERO, Money.ofMinor(0));
+        assertEquals(17.99, price.doubleValue());
+        assertEquals(Money.parse("0.01"), Money.of(new BigDecimal("0.005")));
+    }
+
+    @Test
+    public void testJsonMatchesBigDecimal() throws Exception {
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("Round Widget");
+        item.setDescription("A widget that is round");
+        item.setPrice(Money.parse("2.99"));
+
+        String json = objectMapper.writeValueAsString(item);
+        assertEquals("{\"id\":1,\"name\":\"Round Widget\",\"price\":2.99,\"description\":\"A widget that is round\"}", json);
+        assertEquals(Money.parse("2.99"), objectMapper.readValue(json, Item.class).getPrice());
+        assertEquals(objectMapper.writeValueAsString(new BigDecimal("35.98")),
+                objectMapper.writeValueAsString(Money.parse("35.98")));
+    }
+
+    @Test
+    public void testConverterRoundTrip() {
+        MoneyConverter converter = new MoneyConverter();
+        assertEquals(new BigDecimal("2.99"), converter.convertToDatabaseColumn(Money.parse("2.99")));
+        assertEquals(Money.parse("1.99"), converter.convertToEntityAttribute(new BigDecimal("1.99")));
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.demo.order;
+
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AsyncOrderWriterTest {
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final AtomicLong ids = new AtomicLong();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testQueuedOrdersAreWrittenOnShutdown() throws InterruptedException {
+        when(orderRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            for (UserOrder order : (Iterable<UserOrder>) invocation.getArgument(0)) {
+                order.setId(ids.incrementAndGet());
+            }
+            return null;
+        });
+        AsyncOrderWriter writer = createWriter(100);
+
+        List<OrderSubmission> submissions = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            submissions.add(writer.submit(new UserOrder()));
+        }
+        writer.start();
+        writer.shutdown();
+
+        for (OrderSubmission submission : submissions) {
+            assertEquals(OrderSubmission.Status.WRITTEN, submission.getStatus());
+            assertNotNull(submission.getOrderId());
+            assertEquals(submission, writer.status(submission.getId()));
+        }
+        assertNull(writer.submit(new UserOrder()));
+    }
+
+    @Test
+    public void testFullQueueRejectsSubmission() throws InterruptedException {
+        AsyncOrderWriter writer = createWriter(1);
+
+        assertNotNull(writer.submit(new UserOrder()));
+        assertNull(writer.submit(new UserOrder()));
+
+        writer.start();
+        writer.shutdown();
+        assertEquals(0, writer.getQueueDepth());
+    }
+
+    @Test
+    public void testFailedBatchFallsBackToSingleWrites() throws InterruptedException {
+        UserOrder good = new UserOrder();
+        UserOrder bad = new UserOrder();
+        when(orderRepository.saveAll(anyIterable())).thenThrow(new IllegalStateException("constraint violation"));
+        when(orderRepository.save(good)).thenAnswer(invocation -> {
+            good.setId(ids.incrementAndGet());
+            return good;
+        });
+        when(orderRepository.save(bad)).thenThrow(new IllegalStateException("constraint violation"));
+        AsyncOrderWriter writer = createWriter(10);
+
+        OrderSubmission goodSubmission = writer.submit(good);
+        OrderSubmission badSubmission = writer.submit(bad);
+        writer.start();
+        writer.shutdown();
+
+        assertEquals(OrderSubmission.Status.WRITTEN, goodSubmission.getStatus());
+        assertEquals(OrderSubmission.Status.FAILED, badSubmission.getStatus());
+    }
+
+    @Test
+    public void testOutcomeIsReportedBeforeStatusChanges() throws InterruptedException {
+        UserOrder good = new UserOrder();
+        UserOrder bad = new UserOrder();
+        when(orderRepository.saveAll(anyIterable())).thenThrow(new IllegalStateException("constraint violation"));
+        when(orderRepository.save(good)).thenReturn(good);
+        when(orderRepository.save(bad)).thenThrow(new IllegalStateException("constraint violation"));
+        AsyncOrderWriter writer = createWriter(10);
+        List<String> seen = new ArrayList<>();
+        OrderSubmission[] submissions = new OrderSubmission[2];
+        AsyncOrderWriter.Outcome outcome = new AsyncOrderWriter.Outcome() {
+            @Override
+            public void written(UserOrder order) {
+                seen.add("written " + submissions[0].getStatus());
+            }
+
+            @Override
+            public void failed(UserOrder order) {
+                seen.add("failed " + submissions[1].getStatus());
+            }
+        };
+
+        submissions[0] = writer.submit(good, outcome);
+        submissions[1] = writer.submit(bad, outcome);
+        writer.start();
+        writer.shutdown();
+
+        assertEquals(Arrays.asList("written QUEUED", "failed QUEUED"), seen);
+        assertEquals(OrderSubmission.Status.WRITTEN, submissions[0].getStatus());
+        assertEquals(OrderSubmission.Status.FAILED, submissions[1].getStatus());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSubmissionWaitingForRoomIsWrittenDespiteShutdown() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            for (UserOrder order : (Iterable<UserOrder>) invocation.getArgument(0)) {
+                order.setId(ids.incrementAndGet());
+            }
+            return null;
+        });
+        AsyncOrderWriter writer = new AsyncOrderWriter(orderRepository, mock(PlatformTransactionManager.class),
+                1, 10, 5_000, 60_000);
+        writer.start();
+        assertNotNull(writer.submit(new UserOrder()));
+        awaitDepth(writer, 0);
+        assertNotNull(writer.submit(new UserOrder()));
+
+        OrderSubmission[] waiting = new OrderSubmission[1];
+        Thread submitter = new Thread(() -> waiting[0] = writer.submit(new UserOrder()));
+        submitter.start();
+        awaitState(submitter, Thread.State.TIMED_WAITING);
+        Thread stopper = new Thread(() -> {
+            try {
+                writer.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopper.start();
+        awaitState(stopper, Thread.State.WAITING);
+
+        release.countDown();
+        submitter.join(5_000);
+        stopper.join(5_000);
+        assertNotNull(waiting[0]);
+        assertEquals(OrderSubmission.Status.WRITTEN, waiting[0].getStatus());
+    }
+
+    private static void awaitDepth(AsyncOrderWriter writer, int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (writer.getQueueDepth() != depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, writer.getQueueDepth());
+    }
+
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (thread.getState() != state && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(state, thread.getState());
+    }
+
+    private AsyncOrderWriter createWriter(int queueCapacity) {
+        return new AsyncOrderWriter(orderRepository, mock(PlatformTransactionManager.class),
+                queueCapacity, 10, 10, 60_000);
+    }
+}
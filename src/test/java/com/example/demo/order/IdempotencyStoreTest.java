@@ -0,0 +1,70 @@
+package com.example.demo.order;
+
+import com.example.demo.model.persistence.UserOrder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotSame;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.fail;
+
+public class IdempotencyStoreTest {
+
+    private final IdempotencyStore store = new IdempotencyStore(100, 60_000);
+
+    @Test
+    public void testConcurrentDuplicatesRunOnce() throws Exception {
+        AtomicInteger submissions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<UserOrder>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return store.execute("goofy", "key", () -> {
+                        submissions.incrementAndGet();
+                        return new UserOrder();
+                    });
+                }));
+            }
+            start.countDown();
+            UserOrder first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<UserOrder> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, submissions.get());
+    }
+
+    @Test
+    public void testKeysAreScopedPerUser() {
+        UserOrder goofy = store.execute("goofy", "key", UserOrder::new);
+        UserOrder pluto = store.execute("pluto", "key", UserOrder::new);
+        assertNotSame(goofy, pluto);
+    }
+
+    @Test
+    public void testFailedSubmissionCanBeRetried() {
+        try {
+            store.execute("goofy", "key", () -> {
+                throw new IllegalStateException("database down");
+            });
+            fail("failure was swallowed");
+        } catch (IllegalStateException expected) {
+        }
+        UserOrder order = new UserOrder();
+        assertSame(order, store.execute("goofy", "key", () -> order));
+    }
+}
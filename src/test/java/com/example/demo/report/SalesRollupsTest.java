@@ -0,0 +1,132 @@
+package com.example.demo.report;
+
+import com.example.demo.model.persistence.Money;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.responses.ItemSales;
+import com.example.demo.model.responses.UserSpend;
+import com.example.demo.order.OrderSubmittedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SalesRollupsTest {
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final SalesRollups rollups = new SalesRollups(orderRepository, new ObjectMapper(), false);
+
+    @Test
+    public void testCommittedOrdersAreRolledUp() {
+        rollups.onOrderSubmitted(order(1L, 7L, "goofy", line(244L, "Bauble", 2, "17.99"), line(245L, "Star", 1, "5.00")));
+        rollups.onOrderSubmitted(order(2L, 7L, "goofy", line(245L, "Star", 4, "5.00")));
+        rollups.onOrderSubmitted(order(3L, 8L, "pluto", line(244L, "Bauble", 1, "17.99")));
+
+        ItemSales star = rollups.itemSales(245L);
+        assertEquals(5, star.getUnitsSold());
+        assertEquals(Money.parse("25.00"), star.getRevenue());
+
+        UserSpend goofy = rollups.userSpend(7L);
+        assertEquals(2, goofy.getOrderCount());
+        assertEquals(Money.parse("60.98"), goofy.getTotalSpent());
+
+        List<ItemSales> top = rollups.topItems(1);
+        assertEquals(1, top.size());
+        assertEquals(245L, top.get(0).getItemId());
+        assertNull(rollups.itemSales(999L));
+    }
+
+    @Test
+    public void testRebuildReplacesRollupsWithSqlTotals() {
+        rollups.onOrderSubmitted(order(1L, 7L, "goofy", line(244L, "Bauble", 2, "17.99")));
+
+        OrderRepository.ItemSalesRow item = mock(OrderRepository.ItemSalesRow.class);
+        when(item.getItemId()).thenReturn(245L);
+        when(item.getItemName()).thenReturn("Star");
+        when(item.getUnitsSold()).thenReturn(3L);
+        when(item.getRevenue()).thenReturn(new BigDecimal("15.00"));
+        when(orderRepository.sumSalesByItem()).thenReturn(Collections.singletonList(item));
+        OrderRepository.UserSpendRow user = mock(OrderRepository.UserSpendRow.class);
+        when(user.getUserId()).thenReturn(8L);
+        when(user.getUsername()).thenReturn("pluto");
+        when(user.getOrderCount()).thenReturn(1L);
+        when(user.getTotalSpent()).thenReturn(new BigDecimal("15.00"));
+        when(orderRepository.sumSpendByUser()).thenReturn(Collections.singletonList(user));
+
+        rollups.rebuild();
+
+        assertNull(rollups.itemSales(244L));
+        assertEquals(3, rollups.itemSales(245L).getUnitsSold());
+        assertNull(rollups.userSpend(7L));
+        assertEquals(Money.parse("15.00"), rollups.userSpend(8L).getTotalSpent());
+    }
+
+    @Test
+    public void testJournaledRollupsIgnoreDirectEvents() {
+        SalesRollups journaled = new SalesRollups(orderRepository, new ObjectMapper(), true);
+        OrderSubmittedEvent event = order(1L, 7L, "goofy", line(244L, "Bauble", 2, "17.99"));
+
+        journaled.onOrderSubmitted(event);
+        assertNull(journaled.itemSales(244L));
+
+        journaled.apply(event);
+        assertEquals(2, journaled.itemSales(244L).getUnitsSold());
+    }
+
+    @Test
+    public void testTopItemsFollowUnitsSold() {
+        rollups.onOrderSubmitted(order(1L, 7L, "goofy", line(244L, "Bauble", 2, "17.99"), line(245L, "Star", 2, "5.00")));
+        rollups.onOrderSubmitted(order(2L, 7L, "goofy", line(246L, "Tinsel", 1, "2.00")));
+        assertEquals(Arrays.asList(244L, 245L), itemIds(rollups.topItems(2)));
+
+        rollups.onOrderSubmitted(order(3L, 8L, "pluto", line(246L, "Tinsel", 3, "2.00")));
+        List<ItemSales> top = rollups.topItems(10);
+        assertEquals(Arrays.asList(246L, 244L, 245L), itemIds(top));
+        assertEquals(4, top.get(0).getUnitsSold());
+        assertEquals(Money.parse("8.00"), top.get(0).getRevenue());
+    }
+
+    @Test
+    public void testRebuildsOnStartupOnlyWithoutJournal() {
+        when(orderRepository.sumSalesByItem()).thenReturn(Collections.emptyList());
+        when(orderRepository.sumSpendByUser()).thenReturn(Collections.emptyList());
+
+        new SalesRollups(orderRepository, new ObjectMapper(), true).rebuildOnStartup();
+        verify(orderRepository, never()).sumSalesByItem();
+
+        rollups.rebuildOnStartup();
+        verify(orderRepository, times(1)).sumSalesByItem();
+        verify(orderRepository, times(1)).sumSpendByUser();
+    }
+
+    private static List<Long> itemIds(List<ItemSales> sales) {
+        List<Long> ids = new ArrayList<>();
+        for (ItemSales item : sales) {
+            ids.add(item.getItemId());
+        }
+        return ids;
+    }
+
+    private static OrderSubmittedEvent order(long orderId, long userId, String username, OrderSubmittedEvent.Line... lines) {
+        Money total = Money.ZERO;
+        for (OrderSubmittedEvent.Line line : lines) {
+            total = total.plus(line.getUnitPrice().times(line.getQuantity()));
+        }
+        return new OrderSubmittedEvent(orderId, userId, username, System.currentTimeMillis(), total, Arrays.asList(lines));
+    }
+
+    private static OrderSubmittedEvent.Line line(long itemId, String name, int quantity, String unitPrice) {
+        return new OrderSubmittedEvent.Line(itemId, name, quantity, Money.parse(unitPrice));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.security;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private BoundedPasswordEncoder encoder;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        if (encoder != null) {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    public void testHashesOnThePool() {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(false), 10, 1, 1, 1_000);
+
+        assertEquals("hashed:secret", encoder.encode("secret"));
+        assertTrue(encoder.matches("secret", "hashed:secret"));
+    }
+
+    @Test
+    public void testSaturatedPoolRejectsAtOnce() throws Exception {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(true), 10, 1, 1, 10_000);
+        callers.submit(() -> encoder.encode("running"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> encoder.encode("queued"));
+        waitForQueued();
+
+        long start = System.nanoTime();
+        try {
+            encoder.encode("rejected");
+            fail("encode ran although the pool and queue were full");
+        } catch (PasswordEncoderBusyException expected) {
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    public void testSlowHashTimesOut() throws Exception {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(true), 10, 1, 1, 50);
+        try {
+            encoder.matches("secret", "hashed:secret");
+            fail("matches waited past max-wait-ms");
+        } catch (PasswordEncoderBusyException expected) {
+        }
+    }
+
+    @Test
+    public void testCalibrationPicksStrongestWithinTarget() {
+        // 10 ms at strength 8, doubling per step: 80 ms at 11, 160 ms at 12
+        long target = TimeUnit.MILLISECONDS.toNanos(100);
+
+        assertEquals(11, BoundedPasswordEncoder.calibrate(this::simulatedHashNanos, target, 8, 16));
+    }
+
+    @Test
+    public void testCalibrationStaysWithinBounds() {
+        assertEquals(10, BoundedPasswordEncoder.calibrate(this::simulatedHashNanos, TimeUnit.SECONDS.toNanos(10), 8, 10));
+        assertEquals(8, BoundedPasswordEncoder.calibrate(this::simulatedHashNanos, 1, 8, 10));
+    }
+
+    @Test
+    public void testOnlyWeakerHashesNeedUpgrading() {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(false), 12, 1, 1, 1_000);
+
+        assertFalse(encoder.upgradeEncoding("$2a$12$abcdefghijklmnopqrstuuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0"));
+        assertTrue(encoder.upgradeEncoding("$2a$10$abcdefghijklmnopqrstuuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0"));
+        assertFalse(encoder.upgradeEncoding("$2b$14$abcdefghijklmnopqrstuuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0"));
+        assertFalse(encoder.upgradeEncoding("not a bcrypt hash"));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+
+    private long simulatedHashNanos(int strength) {
+        return TimeUnit.MILLISECONDS.toNanos(10) << (strength - 8);
+    }
+
+    private void waitForQueued() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (encoder.getQueueDepth() < 1) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("second hash never queued");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private class BlockingEncoder implements PasswordEncoder {
+        private final boolean block;
+
+        private BlockingEncoder(boolean block) {
+            this.block = block;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            await();
+            return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            await();
+            return encodedPassword.equals("hashed:" + rawPassword);
+        }
+
+        private void await() {
+            started.countDown();
+            if (block) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
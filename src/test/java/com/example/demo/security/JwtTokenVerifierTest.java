@@ -0,0 +1,85 @@
+package com.example.demo.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class JwtTokenVerifierTest {
+
+    private final JwtTokenVerifier verifier = new JwtTokenVerifier(100);
+    private final JwtTokenIssuer issuer = new JwtTokenIssuer();
+
+    @Test
+    public void testVerifiedTokenIsServedFromCache() {
+        String token = createToken("goofy", System.currentTimeMillis() + 60_000, SecurityConstants.SECRET);
+
+        assertEquals("goofy", verifier.verify(token).getSubject());
+        assertEquals("goofy", verifier.verify(token).getSubject());
+    }
+
+    @Test
+    public void testForgedTokenIsRejected() {
+        String token = createToken("goofy", System.currentTimeMillis() + 60_000, "not_our_secret");
+        try {
+            verifier.verify(token);
+            fail("forged token was accepted");
+        } catch (JWTVerificationException expected) {
+        }
+    }
+
+    @Test
+    public void testExpiredTokenIsRejected() {
+        String token = createToken("goofy", System.currentTimeMillis() - 60_000, SecurityConstants.SECRET);
+        try {
+            verifier.verify(token);
+            fail("expired token was accepted");
+        } catch (JWTVerificationException expected) {
+        }
+    }
+
+    @Test
+    public void testIssuedTokensCarryIdAndExpiry() {
+        VerifiedToken token = verifier.verify(issuer.issueAccessToken("goofy"));
+
+        assertEquals("goofy", token.getSubject());
+        assertNotNull(token.getId());
+        assertTrue(token.getExpiresAt() > System.currentTimeMillis());
+        assertFalse(token.getId().equals(verifier.verify(issuer.issueAccessToken("goofy")).getId()));
+    }
+
+    @Test
+    public void testRefreshTokenIsNotAnAccessToken() {
+        String refreshToken = issuer.issueRefreshToken("goofy");
+        try {
+            verifier.verify(refreshToken);
+            fail("refresh token was accepted as an access token");
+        } catch (JWTVerificationException expected) {
+        }
+        assertEquals("goofy", verifier.verifyRefresh(refreshToken).getSubject());
+    }
+
+    @Test
+    public void testAccessTokenIsNotARefreshToken() {
+        try {
+            verifier.verifyRefresh(issuer.issueAccessToken("goofy"));
+            fail("access token was accepted as a refresh token");
+        } catch (JWTVerificationException expected) {
+        }
+    }
+
+    private static String createToken(String subject, long expiresAt, String secret) {
+        return JWT.create()
+                .withSubject(subject)
+                .withExpiresAt(new Date(expiresAt))
+                .sign(HMAC512(secret.getBytes()));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.security;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(123_456_789L);
+
+    @Test
+    public void testBurstThenSteadyRate() {
+        // 10 per second: one request every 100 ms, 5 at once
+        RateLimiter limiter = new RateLimiter(true, 10, 5, Collections.emptyList(), 100, clock::get);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.acquire("user:goofy", "/api/item"));
+        }
+        long wait = limiter.acquire("user:goofy", "/api/item");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);
+
+        clock.addAndGet(wait);
+        assertEquals(0, limiter.acquire("user:goofy", "/api/item"));
+        assertTrue(limiter.acquire("user:goofy", "/api/item") > 0);
+    }
+
+    @Test
+    public void testClientsAndRoutesHaveTheirOwnBuckets() {
+        RateLimiter limiter = new RateLimiter(true, 10, 1,
+                Arrays.asList("/api/cart=1/1", " /api/cart/addToCart=2/2"), 100, clock::get);
+
+        assertEquals(0, limiter.acquire("user:goofy", "/api/cart/addToCart"));
+        assertEquals(0, limiter.acquire("user:goofy", "/api/cart/addToCart"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), limiter.acquire("user:goofy", "/api/cart/addToCart"));
+
+        assertEquals(0, limiter.acquire("user:goofy", "/api/cart/removeFromCart"));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), limiter.acquire("user:goofy", "/api/cart/removeFromCart"));
+
+        assertEquals(0, limiter.acquire("user:goofy", "/api/item"));
+        assertEquals(0, limiter.acquire("ip:10.0.0.1", "/api/cart/addToCart"));
+    }
+
+    @Test
+    public void testIdleBucketsAreEvictedAndKeysBounded() {
+        RateLimiter limiter = new RateLimiter(true, 10, 1, Collections.emptyList(), 2, clock::get);
+        limiter.acquire("ip:10.0.0.1", "/api/item");
+        limiter.acquire("ip:10.0.0.2", "/api/item");
+
+        // no room for a third: it shares the overflow bucket with any other newcomer
+        assertEquals(0, limiter.acquire("ip:10.0.0.3", "/api/item"));
+        assertTrue(limiter.acquire("ip:10.0.0.4", "/api/item") > 0);
+        assertEquals(2, limiter.size());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        limiter.evictIdle();
+        assertEquals(0, limiter.size());
+        assertEquals(0, limiter.acquire("ip:10.0.0.4", "/api/item"));
+        assertEquals(1, limiter.size());
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.security;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.web.util.matcher.NegatedRequestMatcher;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+
+public class RateLimitingFilterTest {
+
+    private final AtomicLong clock = new AtomicLong(123_456_789L);
+    private final RateLimiter rateLimiter = new RateLimiter(true, 1, 2, Collections.emptyList(), 100, clock::get);
+
+    @Test
+    public void testLoginIsLimitedPerAddress() throws Exception {
+        LoginRateLimitingFilter filter = new LoginRateLimitingFilter(rateLimiter);
+
+        assertEquals(200, login(filter, "10.0.0.1").getStatus());
+        assertEquals(200, login(filter, "10.0.0.1").getStatus());
+        MockHttpServletResponse refused = login(filter, "10.0.0.1");
+        assertEquals(429, refused.getStatus());
+        assertEquals("1", refused.getHeader("Retry-After"));
+
+        assertEquals(200, login(filter, "10.0.0.2").getStatus());
+    }
+
+    @Test
+    public void testRefusedLoginNeverReachesAuthentication() throws Exception {
+        LoginRateLimitingFilter filter = new LoginRateLimitingFilter(rateLimiter);
+        login(filter, "10.0.0.1");
+        login(filter, "10.0.0.1");
+
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(loginRequest("10.0.0.1"), new MockHttpServletResponse(), chain);
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    public void testEachRequestIsLimitedByOneFilter() throws Exception {
+        LoginRateLimitingFilter loginFilter = new LoginRateLimitingFilter(rateLimiter);
+        RateLimitingFilter userFilter = new RateLimitingFilter(rateLimiter,
+                new NegatedRequestMatcher(LoginRateLimitingFilter.CREDENTIAL_REQUESTS));
+
+        for (int i = 0; i < 5; i++) {
+            MockFilterChain chain = new MockFilterChain();
+            userFilter.doFilter(loginRequest("10.0.0.1"), new MockHttpServletResponse(), chain);
+            assertNotNull(chain.getRequest());
+        }
+        for (int i = 0; i < 5; i++) {
+            MockFilterChain chain = new MockFilterChain();
+            loginFilter.doFilter(new MockHttpServletRequest("GET", "/api/item"), new MockHttpServletResponse(), chain);
+            assertNotNull(chain.getRequest());
+        }
+        assertEquals(200, login(loginFilter, "10.0.0.1").getStatus());
+    }
+
+    private static MockHttpServletResponse login(RateLimitingFilter filter, String remoteAddr) throws Exception {
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        filter.doFilter(loginRequest(remoteAddr), res, new MockFilterChain());
+        return res;
+    }
+
+    private static MockHttpServletRequest loginRequest(String remoteAddr) {
+        MockHttpServletRequest req = new MockHttpServletRequest("POST", SecurityConstants.LOGIN_URL);
+        req.setRemoteAddr(remoteAddr);
+        return req;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.security;
+
+import com.example.demo.model.persistence.RevokedToken;
+import com.example.demo.model.persistence.repositories.RevokedTokenRepository;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TokenRevocationListTest {
+
+    private final RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+    private final TokenRevocationList revocations = new TokenRevocationList(repository, 1_000, 0.01);
+
+    @Test
+    public void testRevokedTokenIsRevokedOnce() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+
+        assertFalse(revocations.isRevoked("jti-1"));
+        assertTrue(revocations.revoke("jti-1", expiresAt));
+        assertTrue(revocations.isRevoked("jti-1"));
+        assertFalse(revocations.isRevoked("jti-2"));
+
+        assertFalse(revocations.revoke("jti-1", expiresAt));
+        verify(repository, times(1)).save(any(RevokedToken.class));
+    }
+
+    @Test
+    public void testTokensWithoutIdOrAlreadyExpiredAreNotStored() {
+        assertFalse(revocations.revoke(null, System.currentTimeMillis() + 60_000));
+        assertFalse(revocations.revoke("jti-1", System.currentTimeMillis() - 1));
+        assertFalse(revocations.isRevoked(null));
+        verify(repository, times(0)).save(any(RevokedToken.class));
+    }
+
+    @Test
+    public void testLoadsUnexpiredRevocations() {
+        when(repository.findByExpiresAtAfter(any(Instant.class))).thenReturn(Collections.singletonList(
+                new RevokedToken("jti-1", Instant.now().plusSeconds(60))));
+
+        revocations.load();
+
+        assertTrue(revocations.isRevoked("jti-1"));
+        assertEquals(1, revocations.size());
+    }
+
+    @Test
+    public void testPurgeForgetsExpiredRevocations() throws InterruptedException {
+        revocations.revoke("short", System.currentTimeMillis() + 20);
+        revocations.revoke("long", System.currentTimeMillis() + 60_000);
+        Thread.sleep(50);
+
+        revocations.purgeExpired();
+
+        assertFalse(revocations.isRevoked("short"));
+        assertTrue(revocations.isRevoked("long"));
+        assertEquals(1, revocations.size());
+        verify(repository).deleteExpired(any(Instant.class));
+    }
+
+    @Test
+    public void testFailedSaveLeavesTokenUsable() {
+        when(repository.save(any(RevokedToken.class))).thenThrow(new IllegalStateException("database down"));
+        try {
+            revocations.revoke("jti-1", System.currentTimeMillis() + 60_000);
+            fail("revocation that was not stored reported success");
+        } catch (IllegalStateException expected) {
+        }
+        assertFalse(revocations.isRevoked("jti-1"));
+    }
+}
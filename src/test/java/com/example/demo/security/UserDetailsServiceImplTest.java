@@ -0,0 +1,61 @@
+package com.example.demo.security;
+
+import com.example.demo.TestUtils;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserDetailsServiceImplTest {
+
+    private final UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl();
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    @Before
+    public void setUp() throws NoSuchFieldException, IllegalAccessException {
+        TestUtils.injectObjects(userDetailsService, "userRepository", userRepository);
+    }
+
+    @Test
+    public void testLoadsOnlyCredentials() {
+        UserRepository.Credentials credentials = mock(UserRepository.Credentials.class);
+        when(credentials.getUsername()).thenReturn("goofy");
+        when(credentials.getPassword()).thenReturn("$2a$10$hash");
+        when(userRepository.findCredentialsByUsername("goofy")).thenReturn(credentials);
+
+        UserDetails user = userDetailsService.loadUserByUsername("goofy");
+
+        assertEquals("goofy", user.getUsername());
+        assertEquals("$2a$10$hash", user.getPassword());
+        verify(userRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    public void testUnknownUserIsRejected() {
+        try {
+            userDetailsService.loadUserByUsername("nobody");
+            fail("unknown user was loaded");
+        } catch (UsernameNotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void testRehashedPasswordIsStored() {
+        UserDetails user = new org.springframework.security.core.userdetails.User("goofy", "$2a$10$old",
+                java.util.Collections.emptyList());
+
+        UserDetails updated = userDetailsService.updatePassword(user, "$2a$12$new");
+
+        assertEquals("$2a$12$new", updated.getPassword());
+        verify(userRepository).updatePassword("goofy", "$2a$12$new");
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.user;
+
+import com.example.demo.model.persistence.repositories.UserRepository;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserIdentityCacheTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserIdentityCache cache = new UserIdentityCache(userRepository, 100, 60_000);
+
+    @Test
+    public void testResolvedIdentityIsCached() {
+        when(userRepository.findIdentityByUsername("goofy")).thenReturn(new UserIdentity(999L, "goofy", 666L));
+
+        assertEquals(666L, cache.resolve("goofy").get().getCartId().longValue());
+        assertEquals(999L, cache.resolve("goofy").get().getId());
+        verify(userRepository, times(1)).findIdentityByUsername("goofy");
+    }
+
+    @Test
+    public void testUnknownUsernameIsCachedUntilInvalidated() {
+        assertFalse(cache.resolve("pluto").isPresent());
+        assertFalse(cache.resolve("pluto").isPresent());
+        verify(userRepository, times(1)).findIdentityByUsername("pluto");
+
+        when(userRepository.findIdentityByUsername("pluto")).thenReturn(new UserIdentity(1L, "pluto", 2L));
+        cache.onUserChanged(new UserChangedEvent("pluto"));
+        assertTrue(cache.resolve("pluto").isPresent());
+        verify(userRepository, times(2)).findIdentityByUsername("pluto");
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneQuery() throws Exception {
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findIdentityByUsername("goofy")).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new UserIdentity(999L, "goofy", 666L);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<Optional<UserIdentity>> first = executor.submit(() -> cache.resolve("goofy"));
+            assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+            Future<?>[] others = new Future<?>[7];
+            for (int i = 0; i < others.length; i++) {
+                others[i] = executor.submit(() -> cache.resolve("goofy"));
+            }
+            Thread.sleep(50);
+            release.countDown();
+
+            assertEquals(999L, first.get(5, TimeUnit.SECONDS).get().getId());
+            for (Future<?> other : others) {
+                assertTrue(((Optional<?>) other.get(5, TimeUnit.SECONDS)).isPresent());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(userRepository, times(1)).findIdentityByUsername("goofy");
+    }
+}
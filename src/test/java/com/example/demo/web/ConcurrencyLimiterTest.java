@@ -0,0 +1,91 @@
+package com.example.demo.web;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class ConcurrencyLimiterTest {
+
+    private static final String SUBMIT = "/api/order/submit/goofy";
+    private static final String BROWSE = "/api/item";
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testSubmitKeepsHeadroomWhenBrowsingIsShed() {
+        ConcurrencyLimiter limiter = limiter(10);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limiter.tryAcquire(BROWSE));
+        }
+        assertFalse(limiter.tryAcquire(BROWSE));
+
+        assertTrue(limiter.tryAcquire(SUBMIT));
+        assertTrue(limiter.tryAcquire(SUBMIT));
+        assertFalse(limiter.tryAcquire(SUBMIT));
+        assertEquals(10, limiter.getInFlight());
+
+        limiter.release(1_000);
+        assertEquals(9, limiter.getInFlight());
+        assertFalse(limiter.tryAcquire(BROWSE));
+        assertTrue(limiter.tryAcquire(SUBMIT));
+    }
+
+    @Test
+    public void testLimitGrowsWhileLatencyHoldsAndItIsUsed() {
+        ConcurrencyLimiter limiter = limiter(20);
+        for (int window = 0; window < 10; window++) {
+            runWindow(limiter, 20, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertTrue("limit " + limiter.getLimit(), limiter.getLimit() > 20);
+    }
+
+    @Test
+    public void testLimitStaysWhenNotUsed() {
+        ConcurrencyLimiter limiter = limiter(20);
+        for (int window = 0; window < 10; window++) {
+            runWindow(limiter, 2, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitShrinksWhenLatencyRises() {
+        ConcurrencyLimiter limiter = limiter(50);
+        runWindow(limiter, 50, TimeUnit.MILLISECONDS.toNanos(10));
+        int before = limiter.getLimit();
+        for (int window = 0; window < 10; window++) {
+            runWindow(limiter, 30, TimeUnit.MILLISECONDS.toNanos(80));
+        }
+        assertTrue("limit " + limiter.getLimit() + " was " + before, limiter.getLimit() < before * 0.6);
+        assertTrue(limiter.getLimit() >= 10);
+    }
+
+    private ConcurrencyLimiter limiter(int initial) {
+        return new ConcurrencyLimiter(initial, 10, 200, 0.2, 1.5, 100,
+                Collections.singletonList("/api/order/submit"), clock::get);
+    }
+
+    /**
+     * Starts {@code concurrent} submit requests at once, finishes the
+     * admitted ones after {@code rttNanos} and closes the window.
+     */
+    private void runWindow(ConcurrencyLimiter limiter, int concurrent, long rttNanos) {
+        int admitted = 0;
+        for (int i = 0; i < concurrent; i++) {
+            if (limiter.tryAcquire(SUBMIT)) {
+                admitted++;
+            }
+        }
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        for (int i = 0; i < admitted; i++) {
+            limiter.release(rttNanos);
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+}